@@ -48,5 +48,144 @@ public class DownloadConfig {
      * 读取超时时间（毫秒）
      */
     private Integer readTimeout = 60000;
-}
 
+    /**
+     * 本地缓存目录（详情页解析结果等跨重启复用的数据）
+     */
+    private String cacheDir = "./downloads/.cache";
+
+    /**
+     * 豆瓣详情页解析结果缓存的最大条目数，超出时淘汰最早写入的条目
+     */
+    private Integer detailCacheMaxEntries = 50000;
+
+    /**
+     * 豆瓣详情页模式：并发抓取详情页的线程数
+     */
+    private Integer detailPageConcurrency = 4;
+
+    /**
+     * 豆瓣详情页模式：每个任务的时间预算（毫秒），超时未解析的图片回退到 /raw/ 改写
+     */
+    private Long detailPageTimeBudget = 60000L;
+
+    /**
+     * URL改写规则的最低成功率，低于该值时优先尝试下一级尺寸
+     */
+    private Double rewriteMinSuccessRate = 0.5;
+
+    /**
+     * 判断改写规则成功率前至少需要的样本数
+     */
+    private Integer rewriteMinSamples = 10;
+
+    /**
+     * 单个HTML页面的最大字节数（解压后），超过则中止抓取
+     */
+    private Long maxPageBytes = 5L * 1024 * 1024;
+
+    /**
+     * 近期页面保留时长（毫秒），期间再次抓取会发送 If-None-Match / If-Modified-Since
+     */
+    private Long recentPageTtl = 600000L;
+
+    /**
+     * 近期页面内容占用的最大字节数
+     */
+    private Long recentPageMaxBytes = 16L * 1024 * 1024;
+
+    /**
+     * 页面解析结果缓存的最大条目数
+     */
+    private Integer pageCacheMaxEntries = 256;
+
+    /**
+     * 页面解析结果缓存的有效期（毫秒），0 表示不缓存
+     */
+    private Long pageCacheTtl = 300000L;
+
+    /**
+     * 默认最小图片宽度（像素），更小的图片在完整下载前跳过，请求未指定时使用，0 表示不过滤
+     */
+    private Integer minImageWidth = 0;
+
+    /**
+     * 默认最小图片高度（像素），0 表示不过滤
+     */
+    private Integer minImageHeight = 0;
+
+    /**
+     * 识别尺寸时预读的字节数
+     */
+    private Integer headerProbeBytes = 16384;
+
+    /**
+     * 预估模式每个页面最多探测的图片数，超过时均匀抽样
+     */
+    private Integer estimateSampleSize = 50;
+
+    /**
+     * 图片转码线程数，0 或未配置时取 CPU 核数
+     */
+    private Integer transcodeThreads = 0;
+
+    /**
+     * 图片转码排队上限，队列满时下载线程等待
+     */
+    private Integer transcodeQueueCapacity = 16;
+
+    /**
+     * 转换为JPEG时的压缩质量（0~1]
+     */
+    private Float jpegQuality = 0.9f;
+
+    /**
+     * 转换为JPEG时是否输出渐进式JPEG
+     */
+    private Boolean jpegProgressive = false;
+
+    /**
+     * 转码允许的最大像素数（宽×高），超过时拒绝解码，0 表示不限制
+     */
+    private Long maxImagePixels = 200000000L;
+
+    /**
+     * 单次解码的最大像素数（实际上限还受 内存预算 / 每像素字节数 限制），超过时输出规格按整数步长降采样解码、跳过存储优化，格式转换跳过（按原格式保存），本地去水印不处理，0 表示只按内存预算限制
+     */
+    private Long maxDecodePixels = 24000000L;
+
+    /**
+     * 全局内存预算（字节），解码与去水印前按预估占用申请额度，单次申请超过预算时拒绝处理该图片，0 表示不限制
+     */
+    private Long memoryBudget = 268435456L;
+
+    /**
+     * 存储优化：重新压缩后与原图的最低结构相似度（SSIM）
+     */
+    private Double optimizeMinSsim = 0.98;
+
+    /**
+     * 存储优化：查找的最低压缩质量
+     */
+    private Float optimizeMinQuality = 0.5f;
+
+    /**
+     * 存储优化：查找的最高压缩质量
+     */
+    private Float optimizeMaxQuality = 0.95f;
+
+    /**
+     * 内存交接阈值（字节）：去水印且不保存原图时，不超过该大小的图片下载后直接在内存中交给去水印阶段，0 表示关闭
+     */
+    private Integer handoffMaxBytes = 8388608;
+
+    /**
+     * 内存交接缓冲区总量上限（字节，含空闲缓冲区），超出时新下载的图片改为写入磁盘
+     */
+    private Long handoffMaxTotalBytes = 67108864L;
+
+    /**
+     * 内存交接缓冲池最多保留的空闲缓冲区数
+     */
+    private Integer handoffPoolSize = 8;
+}
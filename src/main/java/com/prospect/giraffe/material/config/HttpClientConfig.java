@@ -0,0 +1,46 @@
+package com.prospect.giraffe.material.config;
+
+import lombok.Data;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 共享HTTP客户端配置
+ * 所有模块通过 newBuilder() 派生各自的超时设置，共用同一个连接池和调度线程
+ *
+ * @author giraffe
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "material.http")
+public class HttpClientConfig {
+
+    /**
+     * 连接池最大空闲连接数
+     */
+    private Integer maxIdleConnections = 16;
+
+    /**
+     * 空闲连接保活时间（毫秒）
+     */
+    private Long keepAliveDuration = 300000L;
+
+    /**
+     * 共享的 OkHttpClient（线程安全，HTTPS 下优先协商 HTTP/2 多路复用）
+     */
+    @Bean
+    public OkHttpClient sharedHttpClient() {
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveDuration, TimeUnit.MILLISECONDS))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+}
@@ -1,9 +1,14 @@
 package com.prospect.giraffe.material.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 水印去除配置
  *
@@ -20,7 +25,8 @@ public class WatermarkRemovalConfig {
     private Boolean enabled = false;
 
     /**
-     * 默认使用的厂商：aliyun, tencent, baidu, disabled
+     * 默认使用的厂商：aliyun, tencent, baidu, local, auto, disabled
+     * auto 表示在所有可用服务商中按近期延迟与错误率路由，失败时切换到下一个服务商
      */
     private String defaultProvider = "disabled";
 
@@ -39,6 +45,47 @@ public class WatermarkRemovalConfig {
      */
     private Integer maxRetry = 2;
 
+    /**
+     * 去水印并发线程数
+     */
+    private Integer concurrency = 4;
+
+    /**
+     * 去水印排队上限，队列满时下载线程等待
+     */
+    private Integer queueCapacity = 16;
+
+    /**
+     * 去水印结果缓存目录（按输入文件内容 + 服务商缓存）
+     */
+    private String cacheDir = "./downloads/.cache/watermark";
+
+    /**
+     * 去水印结果缓存的最大总字节数，超过时按最近使用淘汰，0 表示不缓存
+     */
+    private Long cacheMaxBytes = 1073741824L;
+
+    /**
+     * 额度台账文件（追加写入每次成功调用，重启后恢复当日 / 当月用量）
+     */
+    private String quotaLedgerFile = "./downloads/.cache/watermark-quota.log";
+
+    /**
+     * 是否强制额度：开启后额度用尽的服务商不再调用（auto 时切换到其他服务商）
+     */
+    private Boolean quotaEnforced = true;
+
+    /**
+     * 额度匀速消耗的余量（占额度的比例）：用量超过 额度 × (已过时间比例 + 余量) 时视为超前，
+     * auto 路由优先使用未超前的服务商
+     */
+    private Double quotaPaceSlack = 0.1;
+
+    /**
+     * 多服务商路由配置（provider=auto 时生效）
+     */
+    private RoutingConfig routing = new RoutingConfig();
+
     /**
      * 阿里云配置
      */
@@ -54,6 +101,11 @@ public class WatermarkRemovalConfig {
      */
     private BaiduConfig baidu = new BaiduConfig();
 
+    /**
+     * 本地去水印配置
+     */
+    private LocalConfig local = new LocalConfig();
+
     /**
      * 阿里云配置
      */
@@ -80,9 +132,24 @@ public class WatermarkRemovalConfig {
         private String endpoint = "imageprocess.cn-shanghai.aliyuncs.com";
 
         /**
-         * 每月免费额度提示
+         * 每月免费额度（0 表示不限制）
          */
         private Integer freeQuota = 1000;
+
+        /**
+         * 额度周期：day 或 month
+         */
+        private String quotaPeriod = "month";
+
+        /**
+         * 请求超时时间（毫秒），为空时使用全局 timeout
+         */
+        private Integer timeout;
+
+        /**
+         * 限流配置
+         */
+        private RateLimitConfig rateLimit = new RateLimitConfig();
     }
 
     /**
@@ -116,9 +183,24 @@ public class WatermarkRemovalConfig {
         private String bucket;
 
         /**
-         * 每月免费额度提示
+         * 每月免费额度（0 表示不限制）
          */
         private Integer freeQuota = 1000;
+
+        /**
+         * 额度周期：day 或 month
+         */
+        private String quotaPeriod = "month";
+
+        /**
+         * 请求超时时间（毫秒），为空时使用全局 timeout
+         */
+        private Integer timeout;
+
+        /**
+         * 限流配置
+         */
+        private RateLimitConfig rateLimit = new RateLimitConfig();
     }
 
     /**
@@ -142,9 +224,155 @@ public class WatermarkRemovalConfig {
         private String secretKey;
 
         /**
-         * 每日免费额度提示
+         * 每日免费额度（0 表示不限制）
          */
         private Integer freeQuota = 500;
+
+        /**
+         * 额度周期：day 或 month
+         */
+        private String quotaPeriod = "day";
+
+        /**
+         * 请求超时时间（毫秒），为空时使用全局 timeout
+         */
+        private Integer timeout;
+
+        /**
+         * 限流配置
+         */
+        private RateLimitConfig rateLimit = new RateLimitConfig();
     }
-}
 
+    /**
+     * 本地去水印配置（模板匹配定位 + 图块修复，不调用网络）
+     */
+    @Data
+    public static class LocalConfig {
+        /**
+         * 是否启用
+         */
+        private Boolean enabled = false;
+
+        /**
+         * 水印模板（按站点配置，处理时依次匹配，取得分最高且达到阈值的模板）
+         */
+        private List<TemplateConfig> templates = new ArrayList<>();
+
+        /**
+         * 修复时比较的图块半径（像素）
+         */
+        private Integer patchRadius = 3;
+
+        /**
+         * 修复时在水印周围搜索相似图块的半径（像素）
+         */
+        private Integer searchRadius = 24;
+
+        /**
+         * 并行修复的分块宽度（像素），各分块在转码线程池中并行处理
+         */
+        private Integer tileWidth = 32;
+
+        /**
+         * 输出 JPEG 的压缩质量
+         */
+        private Float jpegQuality = 0.92f;
+
+        /**
+         * 限流配置（本地处理默认不限制）
+         */
+        private RateLimitConfig rateLimit = new RateLimitConfig(0, 0.0, 1);
+    }
+
+    /**
+     * 水印模板配置
+     */
+    @Data
+    public static class TemplateConfig {
+        /**
+         * 模板名称（一般为站点名，如 douban）
+         */
+        private String name;
+
+        /**
+         * 适用的站点域名（按后缀匹配图片URL或所在页面URL的主机名，如 douban.com、doubanio.com），
+         * 只对来自这些站点的图片匹配该模板；不配置时对所有站点生效
+         */
+        private List<String> sites = new ArrayList<>();
+
+        /**
+         * 模板图片路径：带透明通道的 PNG 取不透明部分作为水印形状
+         */
+        private String path;
+
+        /**
+         * 掩码图片路径（可选，白色为需要修复的区域，尺寸与模板相同），不配置时由模板透明通道生成
+         */
+        private String maskPath;
+
+        /**
+         * 水印出现的位置：top-left, top-right, bottom-left, bottom-right, center, any
+         */
+        private String region = "bottom-right";
+
+        /**
+         * 在该位置搜索的范围（占图片宽高的比例）
+         */
+        private Double searchFraction = 0.3;
+
+        /**
+         * 匹配得分阈值（归一化互相关，-1 ~ 1）
+         */
+        private Double minScore = 0.8;
+
+        /**
+         * 模板对应的图片宽度（可选），配置后按 图片宽度 / 该值 缩放模板，适配按比例加水印的站点
+         */
+        private Integer referenceWidth;
+
+        /**
+         * 掩码向外扩展的像素数，覆盖水印的抗锯齿边缘
+         */
+        private Integer maskDilation = 2;
+    }
+
+    /**
+     * 服务商限流配置
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RateLimitConfig {
+        /**
+         * 最大并发请求数，0 表示不限制
+         */
+        private Integer maxConcurrency = 2;
+
+        /**
+         * 每秒请求数上限，0 表示不限制
+         */
+        private Double qps = 2.0;
+
+        /**
+         * 允许的突发请求数
+         */
+        private Integer burst = 2;
+    }
+
+    /**
+     * 多服务商路由配置
+     */
+    @Data
+    public static class RoutingConfig {
+        /**
+         * 延迟与错误率指数加权移动平均的系数，越大越偏向最近的调用
+         */
+        private Double ewmaAlpha = 0.3;
+
+        /**
+         * 错误率惩罚系数：评分 = 平均延迟 × (1 + 系数 × 错误率)，评分低者优先
+         */
+        private Double errorPenalty = 4.0;
+    }
+}
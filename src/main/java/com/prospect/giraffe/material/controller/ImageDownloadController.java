@@ -5,7 +5,9 @@ import com.prospect.giraffe.material.dto.BatchDownloadRequest;
 import com.prospect.giraffe.material.dto.BatchDownloadResponse;
 import com.prospect.giraffe.material.dto.DownloadRequest;
 import com.prospect.giraffe.material.dto.DownloadResponse;
+import com.prospect.giraffe.material.dto.PageCacheStats;
 import com.prospect.giraffe.material.service.ImageDownloadService;
+import com.prospect.giraffe.material.service.download.PageParseCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,6 +33,9 @@ public class ImageDownloadController {
     @Resource
     private ImageDownloadService imageDownloadService;
 
+    @Resource
+    private PageParseCache pageParseCache;
+
     /**
      * 下载图片接口
      *
@@ -75,6 +80,16 @@ public class ImageDownloadController {
         }
     }
 
+    /**
+     * 页面解析缓存统计接口
+     *
+     * @return 命中/未命中次数等统计
+     */
+    @GetMapping("/cache/stats")
+    public ApiResponse<PageCacheStats> pageCacheStats() {
+        return ApiResponse.success(pageParseCache.getStats());
+    }
+
     /**
      * 健康检查接口
      *
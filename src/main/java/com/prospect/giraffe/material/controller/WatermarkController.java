@@ -0,0 +1,36 @@
+package com.prospect.giraffe.material.controller;
+
+import com.prospect.giraffe.material.dto.ApiResponse;
+import com.prospect.giraffe.material.dto.WatermarkQuotaStatus;
+import com.prospect.giraffe.material.service.WatermarkRemovalService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.List;
+
+/**
+ * 水印去除控制器
+ *
+ * @author giraffe
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/watermark")
+public class WatermarkController {
+
+    @Resource
+    private WatermarkRemovalService watermarkRemovalService;
+
+    /**
+     * 服务商额度查询接口
+     *
+     * @return 各服务商当前周期的用量、剩余额度与重置时间
+     */
+    @GetMapping("/quota")
+    public ApiResponse<List<WatermarkQuotaStatus>> quota() {
+        return ApiResponse.success(watermarkRemovalService.getAllQuotaStatus());
+    }
+}
@@ -58,11 +58,26 @@ public class BatchDownloadResponse {
      */
     private Integer failImages;
 
+    /**
+     * 跳过图片数（尺寸过小）
+     */
+    private Integer skippedImages;
+
+    /**
+     * 存储优化节省的总字节数
+     */
+    private Long bytesSaved;
+
     /**
      * 总耗时（毫秒）
      */
     private Long totalDuration;
 
+    /**
+     * 预估结果汇总（仅 estimateOnly=true 时返回）
+     */
+    private DownloadResponse.DownloadEstimate estimate;
+
     /**
      * 每个页面的下载结果详情
      */
@@ -106,6 +121,16 @@ public class BatchDownloadResponse {
          */
         private Integer failCount;
 
+        /**
+         * 该页面跳过的图片数（尺寸过小）
+         */
+        private Integer skippedCount;
+
+        /**
+         * 该页面存储优化节省的字节数
+         */
+        private Long bytesSaved;
+
         /**
          * 保存路径
          */
@@ -125,6 +150,11 @@ public class BatchDownloadResponse {
          * 水印处理统计
          */
         private DownloadResponse.WatermarkRemovalStats watermarkStats;
+
+        /**
+         * 该页面的预估结果
+         */
+        private DownloadResponse.DownloadEstimate estimate;
     }
 }
 
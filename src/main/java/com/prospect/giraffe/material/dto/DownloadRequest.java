@@ -2,7 +2,10 @@ package com.prospect.giraffe.material.dto;
 
 import lombok.Data;
 
+import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.PositiveOrZero;
+import java.util.List;
 
 /**
  * 下载请求
@@ -78,6 +81,8 @@ public class DownloadRequest {
      * - aliyun: 阿里云
      * - tencent: 腾讯云
      * - baidu: 百度智能云
+     * - local: 本地模板匹配去水印（不调用网络）
+     * - auto: 在可用服务商间按近期延迟与错误率路由，失败时切换
      * - disabled: 禁用
      * - null: 使用全局默认配置
      */
@@ -90,5 +95,46 @@ public class DownloadRequest {
      * - null: 使用全局配置
      */
     private Boolean saveOriginal;
-}
 
+    /**
+     * 是否启用豆瓣详情页超高清模式（默认false）
+     * - true: 并发访问每张图片的详情页解析原图地址（结果会缓存），超出时间预算的回退到 /raw/ 改写
+     * - false: 直接从相册页提取并升级到 /raw/
+     */
+    private Boolean doubanDetailMode = false;
+
+    /**
+     * 是否只预估不下载（默认false）
+     * - true: 正常爬取和提取图片，再用限速的 HEAD 请求探测大小，返回图片数、总字节数和预计耗时
+     * - false: 正常下载
+     */
+    private Boolean estimateOnly = false;
+
+    /**
+     * 是否进行存储优化（默认false）
+     * - true: JPEG 去除元数据，并以不低于 SSIM 阈值的最低质量重新压缩，保留较小的文件
+     * - false: 保存下载或转换后的文件
+     */
+    private Boolean optimizeStorage = false;
+
+    /**
+     * 最小图片宽度（像素，可选）
+     * - 预读图片头，宽或高小于下限的图片在完整下载前中止，计入 skippedCount
+     * - null: 使用全局配置（默认 0，不过滤）
+     */
+    @PositiveOrZero(message = "最小图片宽度不能为负数")
+    private Integer minImageWidth;
+
+    /**
+     * 最小图片高度（像素，可选），null 时使用全局配置
+     */
+    @PositiveOrZero(message = "最小图片高度不能为负数")
+    private Integer minImageHeight;
+
+    /**
+     * 额外输出规格（可选）
+     * 每张图片只解码一次，按规格逐级缩小后写入 原图目录/规格名称/ 子目录
+     */
+    @Valid
+    private List<OutputVariant> outputVariants;
+}
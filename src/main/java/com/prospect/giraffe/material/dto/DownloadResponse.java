@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 下载响应
@@ -43,6 +44,16 @@ public class DownloadResponse {
      */
     private Integer failCount;
 
+    /**
+     * 跳过数（尺寸小于最小宽高的图片，在完整下载前已中止）
+     */
+    private Integer skippedCount;
+
+    /**
+     * 存储优化节省的字节数
+     */
+    private Long bytesSaved;
+
     /**
      * 保存路径
      */
@@ -63,6 +74,11 @@ public class DownloadResponse {
      */
     private WatermarkRemovalStats watermarkStats;
 
+    /**
+     * 预估结果（仅 estimateOnly=true 时返回）
+     */
+    private DownloadEstimate estimate;
+
     /**
      * 水印去除统计信息
      */
@@ -101,10 +117,112 @@ public class DownloadResponse {
          */
         private Long avgProcessTime;
 
+        /**
+         * 命中结果缓存的数量
+         */
+        private Integer cacheHitCount;
+
+        /**
+         * 结果缓存命中率
+         */
+        private Double cacheHitRate;
+
         /**
          * 失败的原因列表
          */
         private List<String> failureReasons;
+
+        /**
+         * 各服务商的路由统计（key 为服务商名称）
+         */
+        private Map<String, ProviderRoutingStats> providerStats;
+
+        /**
+         * 任务开始时的额度提示（剩余额度不足以处理全部图片时）
+         */
+        private String quotaWarning;
     }
-}
 
+    /**
+     * 单个水印服务商的路由统计
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProviderRoutingStats {
+        /**
+         * 本次任务路由到该服务商的调用次数
+         */
+        private Integer routedCount;
+
+        /**
+         * 成功次数
+         */
+        private Integer successCount;
+
+        /**
+         * 失败次数
+         */
+        private Integer failCount;
+
+        /**
+         * 失败后切换到其他服务商的次数
+         */
+        private Integer failoverCount;
+
+        /**
+         * 本次任务成功调用的平均耗时（毫秒）
+         */
+        private Long avgLatency;
+
+        /**
+         * 路由使用的近期平均延迟（EWMA，毫秒）
+         */
+        private Double ewmaLatency;
+
+        /**
+         * 路由使用的近期错误率（EWMA）
+         */
+        private Double ewmaErrorRate;
+    }
+
+    /**
+     * 下载量预估
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DownloadEstimate {
+        /**
+         * 图片数量
+         */
+        private Integer imageCount;
+
+        /**
+         * 实际发送 HEAD 探测的图片数（超过采样数时抽样）
+         */
+        private Integer probedCount;
+
+        /**
+         * 探测不到大小的图片数
+         */
+        private Integer unknownSizeCount;
+
+        /**
+         * 已探测图片的字节数合计
+         */
+        private Long measuredBytes;
+
+        /**
+         * 预计总字节数（按探测样本推算到全部图片）
+         */
+        private Long totalBytes;
+
+        /**
+         * 预计下载耗时（毫秒，按各主机近期吞吐量和请求间隔推算）
+         */
+        private Long projectedDuration;
+    }
+}
@@ -0,0 +1,44 @@
+package com.prospect.giraffe.material.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+
+/**
+ * 输出规格（同一次解码生成的派生图片，如网页尺寸、缩略图）
+ *
+ * @author giraffe
+ */
+@Data
+public class OutputVariant {
+
+    /**
+     * 规格名称，同时作为子目录名，如 "web"、"thumb"
+     */
+    @NotBlank(message = "输出规格名称不能为空")
+    @Pattern(regexp = "^[A-Za-z0-9_-]+$", message = "输出规格名称只能包含字母、数字、下划线和短横线")
+    private String name;
+
+    /**
+     * 最长边像素上限（可选），为空时保持原尺寸
+     */
+    @Positive(message = "最长边像素必须大于0")
+    private Integer maxDimension;
+
+    /**
+     * 输出格式：jpeg 或 png（默认jpeg）
+     */
+    @Pattern(regexp = "(?i)^(jpe?g|png)$", message = "输出格式只支持 jpeg 或 png")
+    private String format = "jpeg";
+
+    /**
+     * JPEG 压缩质量（可选，0~1），为空时使用全局配置
+     */
+    @DecimalMin(value = "0.0", inclusive = false, message = "压缩质量必须大于0")
+    @DecimalMax(value = "1.0", message = "压缩质量不能大于1")
+    private Float quality;
+}
@@ -0,0 +1,48 @@
+package com.prospect.giraffe.material.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 页面解析缓存统计
+ *
+ * @author giraffe
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageCacheStats {
+
+    /**
+     * 当前缓存条目数
+     */
+    private Integer size;
+
+    /**
+     * 命中次数
+     */
+    private Long hitCount;
+
+    /**
+     * 未命中次数（实际解析次数）
+     */
+    private Long missCount;
+
+    /**
+     * 合并到进行中解析的次数
+     */
+    private Long coalescedCount;
+
+    /**
+     * 淘汰次数
+     */
+    private Long evictionCount;
+
+    /**
+     * 命中率（含合并的请求）
+     */
+    private Double hitRate;
+}
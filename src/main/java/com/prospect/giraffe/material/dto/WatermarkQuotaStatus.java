@@ -0,0 +1,63 @@
+package com.prospect.giraffe.material.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 水印服务商额度状态
+ *
+ * @author giraffe
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WatermarkQuotaStatus {
+
+    /**
+     * 服务商名称
+     */
+    private String provider;
+
+    /**
+     * 服务商是否已启用且可用
+     */
+    private Boolean available;
+
+    /**
+     * 额度周期：day 或 month
+     */
+    private String period;
+
+    /**
+     * 周期内额度，0 表示不限制
+     */
+    private Integer quota;
+
+    /**
+     * 周期内已用次数
+     */
+    private Integer used;
+
+    /**
+     * 剩余次数，不限制时为 null
+     */
+    private Integer remaining;
+
+    /**
+     * 按匀速消耗到当前时刻允许的用量
+     */
+    private Integer paceLimit;
+
+    /**
+     * 用量是否超前于匀速消耗（auto 路由会优先使用其他服务商）
+     */
+    private Boolean aheadOfPace;
+
+    /**
+     * 当前周期结束时间（额度重置时间）
+     */
+    private String resetAt;
+}
@@ -5,21 +5,47 @@ import com.prospect.giraffe.material.dto.BatchDownloadRequest;
 import com.prospect.giraffe.material.dto.BatchDownloadResponse;
 import com.prospect.giraffe.material.dto.DownloadRequest;
 import com.prospect.giraffe.material.dto.DownloadResponse;
+import com.prospect.giraffe.material.service.download.DoubanDetailUrlCache;
+import com.prospect.giraffe.material.service.download.DownloadEstimator;
+import com.prospect.giraffe.material.service.download.HostRateLimiter;
+import com.prospect.giraffe.material.service.download.HostThroughputTracker;
+import com.prospect.giraffe.material.service.download.ImageUrlCollector;
+import com.prospect.giraffe.material.service.download.ImageSkippedException;
+import com.prospect.giraffe.material.service.download.ImageUrlVariants;
+import com.prospect.giraffe.material.service.download.PageFetcher;
+import com.prospect.giraffe.material.service.download.PageParseCache;
+import com.prospect.giraffe.material.service.download.PageParseResult;
+import com.prospect.giraffe.material.service.download.RewriteStatsRegistry;
+import com.prospect.giraffe.material.service.download.SrcsetParser;
+import com.prospect.giraffe.material.service.image.ImageBufferPool;
+import com.prospect.giraffe.material.service.image.ImageHeader;
+import com.prospect.giraffe.material.service.image.ImageHeaderSniffer;
+import com.prospect.giraffe.material.service.image.ImagePayload;
+import com.prospect.giraffe.material.service.image.ImageTranscodeService;
+import com.prospect.giraffe.material.service.image.TranscodeResult;
 import com.prospect.giraffe.material.service.watermark.dto.WatermarkRemovalResult;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
-import org.jsoup.Jsoup;
+import org.apache.commons.io.IOUtils;
+import org.jsoup.internal.StringUtil;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.file.Files;
@@ -28,15 +54,25 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 图片下载服务
@@ -53,6 +89,78 @@ public class ImageDownloadService {
     @Resource
     private WatermarkRemovalService watermarkRemovalService;
 
+    @Resource
+    private ImageTranscodeService imageTranscodeService;
+
+    @Resource
+    private HostRateLimiter hostRateLimiter;
+
+    @Resource
+    private DoubanDetailUrlCache doubanDetailUrlCache;
+
+    @Resource
+    private RewriteStatsRegistry rewriteStatsRegistry;
+
+    @Resource
+    private PageFetcher pageFetcher;
+
+    @Resource
+    private PageParseCache pageParseCache;
+
+    @Resource
+    private DownloadEstimator downloadEstimator;
+
+    @Resource
+    private HostThroughputTracker hostThroughputTracker;
+
+    @Resource
+    private ImageBufferPool imageBufferPool;
+
+    /**
+     * 无法校准时的默认每页数量（豆瓣默认每页30张）
+     */
+    private static final int DEFAULT_PAGE_SIZE = 30;
+
+    /**
+     * 未知总数时生成分页URL的上限
+     */
+    private static final int MAX_GENERATED_PAGES = 1000;
+
+    /**
+     * 待转码暂存文件的后缀
+     */
+    private static final String STAGED_SUFFIX = ".part";
+
+    /**
+     * 内存交接时响应未声明长度的初始缓冲区大小，不够时按倍数扩大
+     */
+    private static final int UNKNOWN_LENGTH_BUFFER_BYTES = 256 * 1024;
+
+    private static final Pattern TOTAL_COUNT_PATTERN = Pattern.compile("共(\\d+)");
+
+    private static final Pattern START_PARAM_PATTERN = Pattern.compile("[?&]start=(\\d+)");
+
+    /**
+     * 豆瓣详情页抓取线程池，所有任务和列表页共用
+     */
+    private ExecutorService detailPageExecutor;
+
+    @PostConstruct
+    public void init() {
+        int concurrency = downloadConfig.getDetailPageConcurrency() != null ? downloadConfig.getDetailPageConcurrency() : 4;
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        detailPageExecutor = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+            Thread thread = new Thread(r, "douban-detail-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        detailPageExecutor.shutdownNow();
+    }
+
     /**
      * 下载图片
      *
@@ -68,15 +176,26 @@ public class ImageDownloadService {
 
         try {
             // 1. 解析HTML页面，提取图片URL
-            Set<String> imageUrls;
-            if (request.getCrawlAllPages() != null && request.getCrawlAllPages()) {
-                // 爬取所有分页
-                imageUrls = parseAllPagesImageUrls(request.getUrl(), request.getMaxPages());
-            } else {
-                // 只爬取当前页
-                imageUrls = parseImageUrls(request.getUrl());
+            // 豆瓣详情页模式：整个任务共享一个时间预算，超时未解析的图片回退到 /raw/ 改写
+            Long detailDeadline = null;
+            if (request.getDoubanDetailMode() != null && request.getDoubanDetailMode()) {
+                long budget = downloadConfig.getDetailPageTimeBudget() != null ? downloadConfig.getDetailPageTimeBudget() : 60000L;
+                detailDeadline = startTime + budget;
             }
-            log.info("从页面中提取到 {} 个图片URL", imageUrls.size());
+
+            // 相同页面和解析参数的结果会被缓存，并发的相同请求只解析一次
+            boolean crawlAllPages = request.getCrawlAllPages() != null && request.getCrawlAllPages();
+            Long deadline = detailDeadline;
+            String cacheKey = request.getUrl() + "|crawlAll=" + crawlAllPages
+                    + "|maxPages=" + (crawlAllPages ? request.getMaxPages() : 1)
+                    + "|detail=" + (deadline != null);
+            PageParseResult parseResult = pageParseCache.getOrLoad(cacheKey, () -> crawlAllPages
+                    // 爬取所有分页
+                    ? parseAllPagesImageUrls(request.getUrl(), request.getMaxPages(), deadline)
+                    // 只爬取当前页
+                    : parseImageUrls(request.getUrl(), deadline));
+            Set<String> imageUrls = parseResult.getImageUrls();
+            log.info("从 {} 个页面中提取到 {} 个图片URL", parseResult.getCrawledPages().size(), imageUrls.size());
 
             if (imageUrls.isEmpty()) {
                 return builder
@@ -89,6 +208,20 @@ public class ImageDownloadService {
                         .build();
             }
 
+            // 预估模式：只探测大小和预计耗时，不下载
+            if (request.getEstimateOnly() != null && request.getEstimateOnly()) {
+                DownloadResponse.DownloadEstimate estimate = downloadEstimator.estimate(imageUrls, request.getUrl());
+                return builder
+                        .success(true)
+                        .message("预估完成")
+                        .totalCount(imageUrls.size())
+                        .successCount(0)
+                        .failCount(0)
+                        .estimate(estimate)
+                        .duration(System.currentTimeMillis() - startTime)
+                        .build();
+            }
+
             // 2. 创建目标目录
             String baseSavePath = createTargetDirectory(request);
             
@@ -97,7 +230,13 @@ public class ImageDownloadService {
             String originalPath = baseSavePath;
             String cleanedPath = baseSavePath;
             
+            String quotaWarning = null;
             if (watermarkEnabled) {
+                // 额度不足时提前提示，而不是处理到一半才发现额度用尽
+                quotaWarning = watermarkRemovalService.checkQuota(request.getWatermarkProvider(), imageUrls.size());
+                if (quotaWarning != null) {
+                    log.warn("去水印额度不足: {}", quotaWarning);
+                }
                 originalPath = baseSavePath + File.separator + "original";
                 cleanedPath = baseSavePath + File.separator + "cleaned";
                 Files.createDirectories(Paths.get(originalPath));
@@ -111,17 +250,38 @@ public class ImageDownloadService {
             // 3. 下载图片
             AtomicInteger successCount = new AtomicInteger(0);
             AtomicInteger failCount = new AtomicInteger(0);
+            AtomicInteger skippedCount = new AtomicInteger(0);
 
             // 水印去除统计
             AtomicInteger watermarkProcessedCount = new AtomicInteger(0);
             AtomicInteger watermarkSuccessCount = new AtomicInteger(0);
             AtomicInteger watermarkFailCount = new AtomicInteger(0);
+            AtomicInteger watermarkCacheHitCount = new AtomicInteger(0);
             AtomicLong watermarkTotalTime = new AtomicLong(0);
             List<String> watermarkFailureReasons = new ArrayList<>();
+            List<WatermarkRemovalResult> watermarkResults = new ArrayList<>();
 
             // 失败原因统计
             java.util.Map<String, Integer> failureReasons = new java.util.HashMap<>();
             
+            // 第一阶段：网络下载，需要转码的图片提交到转码线程池、需要去水印的再接到去水印线程池，
+            // 下载线程不等待 CPU 处理和服务商响应，继续下载下一张
+            boolean convertToJpeg = request.getConvertToJpeg() != null && request.getConvertToJpeg();
+            boolean optimizeStorage = request.getOptimizeStorage() != null && request.getOptimizeStorage();
+            boolean needsTranscode = convertToJpeg || optimizeStorage
+                    || (request.getOutputVariants() != null && !request.getOutputVariants().isEmpty());
+            AtomicLong bytesSaved = new AtomicLong(0);
+            Map<String, CompletableFuture<TranscodeResult>> pendingFiles = new LinkedHashMap<>();
+            Map<String, CompletableFuture<WatermarkRemovalResult>> pendingWatermarks = new LinkedHashMap<>();
+            // 内存交接：去水印且不保存原图时，小图下载后留在内存中直接交给后续阶段，原图不写盘
+            boolean handoffInMemory = watermarkEnabled
+                    && !watermarkRemovalService.resolveSaveOriginal(request.getSaveOriginal())
+                    && imageBufferPool.getMaxBufferSize() > 0;
+            // 尺寸预过滤：请求未指定时使用全局配置（默认 0，不过滤）
+            int minWidth = request.getMinImageWidth() != null ? request.getMinImageWidth()
+                    : downloadConfig.getMinImageWidth() != null ? downloadConfig.getMinImageWidth() : 0;
+            int minHeight = request.getMinImageHeight() != null ? request.getMinImageHeight()
+                    : downloadConfig.getMinImageHeight() != null ? downloadConfig.getMinImageHeight() : 0;
             for (String imageUrl : imageUrls) {
                 try {
                     // 添加请求间隔，避免请求过快被限流
@@ -130,23 +290,84 @@ public class ImageDownloadService {
                     }
                     
                     // 下载到原图目录
-                    File downloadedFile = downloadSingleImage(imageUrl, originalPath, request.getUrl(), request.getConvertToJpeg());
+                    ImagePayload downloaded = downloadWithVariants(imageUrl, originalPath, request.getUrl(),
+                            needsTranscode, handoffInMemory, minWidth, minHeight);
+                    CompletableFuture<TranscodeResult> transcodeFuture;
+                    if (needsTranscode) {
+                        String fileName = downloaded.getFileName();
+                        String targetName = convertToJpeg ? removeExtension(fileName) + ".jpg" : fileName;
+                        transcodeFuture = imageTranscodeService.submit(downloaded,
+                                new File(originalPath, targetName), convertToJpeg, optimizeStorage,
+                                request.getOutputVariants());
+                    } else {
+                        transcodeFuture = CompletableFuture.completedFuture(new TranscodeResult(downloaded, 0L));
+                    }
 
-                    // 去除水印（如果启用）
-                    if (watermarkEnabled && downloadedFile != null) {
+                    // 去除水印（如果启用），指定输出到 cleaned 目录
+                    if (watermarkEnabled) {
+                        // 带上图片来源，本地去水印只匹配该站点的水印模板
+                        CompletableFuture<ImagePayload> watermarkInput = transcodeFuture.thenApply(
+                                transcoded -> transcoded.getPayload().fromSource(imageUrl, request.getUrl()));
+                        CompletableFuture<WatermarkRemovalResult> watermarkFuture;
+                        try {
+                            watermarkFuture = watermarkRemovalService.submitRemoveWatermark(
+                                    watermarkInput,
+                                    cleanedPath,
+                                    request.getWatermarkProvider(),
+                                    request.getSaveOriginal());
+                        } catch (InterruptedException | RuntimeException e) {
+                            // 未能提交时同样在转码结束后落盘并归还缓冲区
+                            CompletableFuture<WatermarkRemovalResult> notSubmitted = new CompletableFuture<>();
+                            notSubmitted.completeExceptionally(e);
+                            settleWatermark(watermarkInput, watermarkInput.thenCompose(payload -> notSubmitted),
+                                    originalPath, request.getWatermarkProvider());
+                            throw e;
+                        }
+                        pendingWatermarks.put(imageUrl, settleWatermark(watermarkInput, watermarkFuture,
+                                originalPath, request.getWatermarkProvider()));
+                    }
+                    pendingFiles.put(imageUrl, transcodeFuture);
+                } catch (ImageSkippedException e) {
+                    skippedCount.incrementAndGet();
+                    log.debug("跳过图片: {}, 原因: {}", imageUrl, e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failCount.incrementAndGet();
+                    failedUrls.add(imageUrl);
+                    String reason = "下载被中断";
+                    failureReasons.put(reason, failureReasons.getOrDefault(reason, 0) + 1);
+                    log.error("下载失败: {}, 原因: {}", imageUrl, reason, e);
+                } catch (Exception e) {
+                    failCount.incrementAndGet();
+                    failedUrls.add(imageUrl);
+                    String reason = extractFailureReason(e);
+                    failureReasons.put(reason, failureReasons.getOrDefault(reason, 0) + 1);
+                    log.error("下载失败: {}, 原因: {}, 错误详情", imageUrl, reason, e);
+                }
+            }
+
+            // 第二阶段：等待转码和水印去除完成，汇总统计
+            // 内存中的图片在各自的去水印任务结束时已落盘（失败时）并归还缓冲区，这里只汇总结果
+            for (Map.Entry<String, CompletableFuture<TranscodeResult>> entry : pendingFiles.entrySet()) {
+                String imageUrl = entry.getKey();
+                String stage = "转码";
+                try {
+                    TranscodeResult transcodeResult = entry.getValue().get();
+                    bytesSaved.addAndGet(transcodeResult.getBytesSaved());
+
+                    CompletableFuture<WatermarkRemovalResult> watermarkFuture = pendingWatermarks.get(imageUrl);
+                    if (watermarkFuture != null) {
+                        stage = "去水印";
                         watermarkProcessedCount.incrementAndGet();
-                        
-                        // 调用水印去除服务，指定输出到 cleaned 目录
-                        WatermarkRemovalResult watermarkResult = watermarkRemovalService.removeWatermark(
-                                downloadedFile,
-                                cleanedPath,
-                                request.getWatermarkProvider(),
-                                request.getSaveOriginal()
-                        );
+                        WatermarkRemovalResult watermarkResult = watermarkFuture.get();
+                        watermarkResults.add(watermarkResult);
 
                         if (watermarkResult.getSuccess()) {
                             watermarkSuccessCount.incrementAndGet();
                             watermarkTotalTime.addAndGet(watermarkResult.getDuration());
+                            if (Boolean.TRUE.equals(watermarkResult.getCached())) {
+                                watermarkCacheHitCount.incrementAndGet();
+                            }
                         } else {
                             watermarkFailCount.incrementAndGet();
                             watermarkFailureReasons.add(watermarkResult.getErrorMessage());
@@ -161,13 +382,14 @@ public class ImageDownloadService {
                     failedUrls.add(imageUrl);
                     String reason = "下载被中断";
                     failureReasons.put(reason, failureReasons.getOrDefault(reason, 0) + 1);
-                    log.error("下载失败: {}, 原因: {}", imageUrl, reason, e);
+                    log.error("{}被中断: {}", stage, imageUrl, e);
                 } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
                     failCount.incrementAndGet();
                     failedUrls.add(imageUrl);
-                    String reason = extractFailureReason(e);
+                    String reason = extractFailureReason(cause instanceof Exception ? (Exception) cause : e);
                     failureReasons.put(reason, failureReasons.getOrDefault(reason, 0) + 1);
-                    log.error("下载失败: {}, 原因: {}, 错误详情", imageUrl, reason, e);
+                    log.error("{}失败: {}, 原因: {}, 错误详情", stage, imageUrl, reason, cause);
                 }
             }
             
@@ -180,8 +402,8 @@ public class ImageDownloadService {
             }
 
             long duration = System.currentTimeMillis() - startTime;
-            log.info("下载完成，总数: {}, 成功: {}, 失败: {}, 耗时: {}ms",
-                    imageUrls.size(), successCount.get(), failCount.get(), duration);
+            log.info("下载完成，总数: {}, 成功: {}, 失败: {}, 跳过: {}, 耗时: {}ms",
+                    imageUrls.size(), successCount.get(), failCount.get(), skippedCount.get(), duration);
 
             // 构建水印处理统计
             DownloadResponse.WatermarkRemovalStats watermarkStats = null;
@@ -197,12 +419,17 @@ public class ImageDownloadService {
                         .successCount(watermarkSuccessCount.get())
                         .failCount(watermarkFailCount.get())
                         .avgProcessTime(avgTime)
+                        .cacheHitCount(watermarkCacheHitCount.get())
+                        .cacheHitRate(watermarkProcessedCount.get() > 0
+                                ? (double) watermarkCacheHitCount.get() / watermarkProcessedCount.get() : 0.0)
                         .failureReasons(watermarkFailureReasons)
+                        .providerStats(watermarkRemovalService.summarizeRouting(watermarkResults))
+                        .quotaWarning(quotaWarning)
                         .build();
 
-                log.info("水印去除统计: 处理={}, 成功={}, 失败={}, 平均耗时={}ms",
+                log.info("水印去除统计: 处理={}, 成功={}, 失败={}, 缓存命中={}, 平均耗时={}ms",
                         watermarkProcessedCount.get(), watermarkSuccessCount.get(),
-                        watermarkFailCount.get(), avgTime);
+                        watermarkFailCount.get(), watermarkCacheHitCount.get(), avgTime);
             }
 
             // 返回结果，根据是否启用水印去除返回不同的路径信息
@@ -216,6 +443,8 @@ public class ImageDownloadService {
                     .totalCount(imageUrls.size())
                     .successCount(successCount.get())
                     .failCount(failCount.get())
+                    .skippedCount(skippedCount.get())
+                    .bytesSaved(bytesSaved.get())
                     .savePath(resultPath)
                     .failedUrls(failedUrls)
                     .duration(duration)
@@ -238,83 +467,182 @@ public class ImageDownloadService {
 
     /**
      * 爬取所有分页的图片URL
+     * 优先逐页跟随"下一页"链接；否则按分页器链接或校准后的偏移量生成分页，
+     * 任一页没有贡献新图片即停止，避免抓取末尾的空页
      *
-     * @param firstPageUrl 第一页URL
-     * @param maxPages     最大页数
-     * @return 所有图片URL集合
+     * @param firstPageUrl   第一页URL
+     * @param maxPages       最大页数
+     * @param detailDeadline 豆瓣详情页模式的截止时间（null 表示不启用）
+     * @return 所有图片URL集合及实际抓取的分页
      * @throws IOException IO异常
      */
-    private Set<String> parseAllPagesImageUrls(String firstPageUrl, Integer maxPages) throws IOException {
-        Set<String> allImageUrls = new HashSet<>();
-        Set<String> visitedPages = new HashSet<>();
+    private PageParseResult parseAllPagesImageUrls(String firstPageUrl, Integer maxPages, Long detailDeadline) throws IOException {
+        // 按图片身份去重：跨页出现的同一张图片（不同镜像/尺寸写法）只保留最清晰的一个
+        ImageUrlCollector allImageUrls = new ImageUrlCollector();
+        Set<String> visitedPages = new LinkedHashSet<>();
+        // 任一分页抓取失败或被中断时结果不完整，不进入页面解析缓存
+        boolean complete = true;
         
         // 获取第一页
         log.info("开始爬取第 1 页: {}", firstPageUrl);
-        Document firstDoc = Jsoup.connect(firstPageUrl)
-                .userAgent(downloadConfig.getUserAgent())
-                .timeout(downloadConfig.getTimeout())
-                .get();
+        Document firstDoc = pageFetcher.fetch(firstPageUrl);
         
         // 提取第一页的图片
-        Set<String> firstPageImages = extractImagesFromDocument(firstDoc, firstPageUrl);
+        Set<String> firstPageImages = extractImagesFromDocument(firstDoc, firstPageUrl, detailDeadline);
         allImageUrls.addAll(firstPageImages);
         visitedPages.add(firstPageUrl);
         log.info("第 1 页找到 {} 个图片", firstPageImages.size());
         
-        // 查找所有分页链接
-        List<String> pageUrls = extractPaginationUrls(firstDoc, firstPageUrl);
-        log.info("找到 {} 个分页链接", pageUrls.size());
-        
         // 限制最大页数
         int actualMaxPages = maxPages != null ? maxPages : 50;
         int pageCount = 1;
         
-        // 爬取其他页面
-        for (String pageUrl : pageUrls) {
-            if (pageCount >= actualMaxPages) {
-                log.warn("已达到最大页数限制: {}", actualMaxPages);
-                break;
-            }
-            
-            if (visitedPages.contains(pageUrl)) {
-                continue;
-            }
-            
-            try {
-                pageCount++;
-                log.info("开始爬取第 {} 页: {}", pageCount, pageUrl);
+        String nextPageUrl = extractNextPageUrl(firstDoc, firstPageUrl);
+        if (nextPageUrl != null) {
+            // 方式1: 逐页跟随"下一页"链接，不预先枚举
+            log.info("检测到下一页链接，逐页跟随爬取");
+            while (nextPageUrl != null && !visitedPages.contains(nextPageUrl)) {
+                if (pageCount >= actualMaxPages) {
+                    log.warn("已达到最大页数限制: {}", actualMaxPages);
+                    break;
+                }
                 
-                // 添加延迟，避免请求过快
-                Thread.sleep(1000);
+                String pageUrl = nextPageUrl;
+                Document doc;
+                try {
+                    pageCount++;
+                    log.info("开始爬取第 {} 页: {}", pageCount, pageUrl);
+                    doc = fetchPaginatedPage(pageUrl);
+                    visitedPages.add(pageUrl);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("分页爬取被中断");
+                    complete = false;
+                    break;
+                } catch (Exception e) {
+                    log.error("爬取页面失败: {}, 错误: {}", pageUrl, e.getMessage());
+                    complete = false;
+                    break;
+                }
                 
-                Document doc = Jsoup.connect(pageUrl)
-                        .userAgent(downloadConfig.getUserAgent())
-                        .timeout(downloadConfig.getTimeout())
-                        .get();
+                int newCount = collectNewImages(doc, pageUrl, allImageUrls, detailDeadline);
+                log.info("第 {} 页新增 {} 个图片，累计 {} 个", pageCount, newCount, allImageUrls.size());
+                if (newCount == 0) {
+                    log.info("第 {} 页没有新图片，停止翻页", pageCount);
+                    break;
+                }
                 
-                Set<String> pageImages = extractImagesFromDocument(doc, pageUrl);
-                allImageUrls.addAll(pageImages);
-                visitedPages.add(pageUrl);
+                nextPageUrl = extractNextPageUrl(doc, pageUrl);
+            }
+        } else {
+            // 方式2: 分页器链接 / 按校准后的每页数量生成分页URL
+            List<String> pageUrls = extractPaginationUrls(firstDoc, firstPageUrl, firstPageImages.size());
+            log.info("找到 {} 个分页链接", pageUrls.size());
+            
+            for (String pageUrl : pageUrls) {
+                if (pageCount >= actualMaxPages) {
+                    log.warn("已达到最大页数限制: {}", actualMaxPages);
+                    break;
+                }
                 
-                log.info("第 {} 页找到 {} 个图片，累计 {} 个", pageCount, pageImages.size(), allImageUrls.size());
+                if (visitedPages.contains(pageUrl)) {
+                    continue;
+                }
                 
-            } catch (Exception e) {
-                log.error("爬取页面失败: {}, 错误: {}", pageUrl, e.getMessage());
+                try {
+                    pageCount++;
+                    log.info("开始爬取第 {} 页: {}", pageCount, pageUrl);
+                    
+                    Document doc = fetchPaginatedPage(pageUrl);
+                    visitedPages.add(pageUrl);
+                    
+                    int newCount = collectNewImages(doc, pageUrl, allImageUrls, detailDeadline);
+                    log.info("第 {} 页新增 {} 个图片，累计 {} 个", pageCount, newCount, allImageUrls.size());
+                    if (newCount == 0) {
+                        log.info("第 {} 页没有新图片，停止翻页", pageCount);
+                        break;
+                    }
+                    
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("分页爬取被中断");
+                    complete = false;
+                    break;
+                } catch (Exception e) {
+                    log.error("爬取页面失败: {}, 错误: {}", pageUrl, e.getMessage());
+                    complete = false;
+                }
             }
         }
         
         log.info("所有分页爬取完成，共爬取 {} 页，总计 {} 个图片", pageCount, allImageUrls.size());
-        return allImageUrls;
+        return new PageParseResult(Collections.unmodifiableSet(allImageUrls.toSet()),
+                new ArrayList<>(visitedPages), complete);
     }
     
     /**
-     * 提取分页链接
+     * 获取分页页面（带翻页间隔）
+     *
+     * @param pageUrl 分页URL
+     * @return 文档对象
+     * @throws IOException          IO异常
+     * @throws InterruptedException 等待被中断
+     */
+    private Document fetchPaginatedPage(String pageUrl) throws IOException, InterruptedException {
+        // 添加延迟，避免请求过快
+        Thread.sleep(1000);
+        
+        return pageFetcher.fetch(pageUrl);
+    }
+    
+    /**
+     * 提取页面图片并合并到结果集
+     *
+     * @param doc            文档对象
+     * @param pageUrl        页面URL
+     * @param allImageUrls   已收集的图片URL（按图片身份去重）
+     * @param detailDeadline 豆瓣详情页模式的截止时间（null 表示不启用）
+     * @return 本页新增的图片数
+     */
+    private int collectNewImages(Document doc, String pageUrl, ImageUrlCollector allImageUrls, Long detailDeadline) {
+        return allImageUrls.addAll(extractImagesFromDocument(doc, pageUrl, detailDeadline));
+    }
+    
+    /**
+     * 提取"下一页"链接
      *
      * @param doc     文档对象
-     * @param baseUrl 基础URL
+     * @param baseUrl 当前页URL
+     * @return 下一页URL，不存在时返回null
+     */
+    private String extractNextPageUrl(Document doc, String baseUrl) {
+        String[] nextSelectors = {
+                "link[rel=next]",
+                "a[rel=next]",
+                "span.next a",               // 豆瓣风格
+                "a.next"
+        };
+        
+        for (String selector : nextSelectors) {
+            for (Element link : doc.select(selector)) {
+                String href = link.absUrl("href");
+                if (href != null && href.startsWith("http") && !href.equals(baseUrl)) {
+                    return href;
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 提取分页链接
+     *
+     * @param doc           文档对象
+     * @param baseUrl       基础URL
+     * @param firstPageSize 第一页实际提取到的图片数（用于校准每页数量）
      * @return 分页URL列表
      */
-    private List<String> extractPaginationUrls(Document doc, String baseUrl) {
+    private List<String> extractPaginationUrls(Document doc, String baseUrl, int firstPageSize) {
         List<String> pageUrls = new ArrayList<>();
         Set<String> uniqueUrls = new HashSet<>();
         
@@ -327,7 +655,6 @@ public class ImageDownloadService {
 //                "div.pages a",
 //                "a[href*=page]",
 //                "a[href*=start]",
-//                "a.next",                    // 下一页链接
                 ".page-link"
         };
         
@@ -346,7 +673,7 @@ public class ImageDownloadService {
         
         // 方法2: 智能生成分页URL（针对豆瓣等网站）
         if (pageUrls.isEmpty()) {
-            pageUrls.addAll(generatePaginationUrls(doc, baseUrl));
+            pageUrls.addAll(generatePaginationUrls(doc, baseUrl, firstPageSize));
         }
         
         return pageUrls;
@@ -354,110 +681,103 @@ public class ImageDownloadService {
     
     /**
      * 智能生成分页URL
+     * 每页数量优先取分页链接中的 start 步长，其次用第一页实际数量校准；
+     * "共N张" 只作为上限，实际以空页为止
      *
-     * @param doc     文档对象
-     * @param baseUrl 基础URL
+     * @param doc           文档对象
+     * @param baseUrl       基础URL
+     * @param firstPageSize 第一页实际提取到的图片数
      * @return 分页URL列表
      */
-    private List<String> generatePaginationUrls(Document doc, String baseUrl) {
+    private List<String> generatePaginationUrls(Document doc, String baseUrl, int firstPageSize) {
         List<String> urls = new ArrayList<>();
         
         // 尝试从HTML中获取总页数或总数量
         Elements paginator = doc.select("div.paginator, div.pagination");
-        if (!paginator.isEmpty()) {
-            String text = paginator.text();
-            // 尝试提取数字，比如 "共243张"
-            java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("共(\\d+)");
-            java.util.regex.Matcher matcher = pattern.matcher(text);
-            if (matcher.find()) {
-                int total = Integer.parseInt(matcher.group(1));
-                int perPage = 30; // 豆瓣默认每页30张
-                int totalPages = (int) Math.ceil(total / (double) perPage);
-                
-                log.info("检测到总图片数: {}, 预计页数: {}", total, totalPages);
-                
-                // 生成分页URL
-                for (int i = 1; i < totalPages; i++) {
-                    String pageUrl;
-                    if (baseUrl.contains("?")) {
-                        pageUrl = baseUrl + "&start=" + (i * perPage);
-                    } else {
-                        pageUrl = baseUrl + "?start=" + (i * perPage);
-                    }
-                    urls.add(pageUrl);
-                }
+        if (paginator.isEmpty()) {
+            return urls;
+        }
+        
+        int perPage = detectPageStep(paginator);
+        if (perPage <= 0) {
+            perPage = firstPageSize > 0 ? firstPageSize : DEFAULT_PAGE_SIZE;
+        }
+        
+        // 尝试提取数字，比如 "共243张"
+        int totalPages = -1;
+        Matcher matcher = TOTAL_COUNT_PATTERN.matcher(paginator.text());
+        if (matcher.find()) {
+            int total = Integer.parseInt(matcher.group(1));
+            totalPages = (int) Math.ceil(total / (double) perPage);
+            log.info("检测到总图片数: {}, 每页: {}, 预计页数: {}", total, perPage, totalPages);
+        } else {
+            log.info("未检测到总图片数，每页: {}，爬取到空页为止", perPage);
+        }
+        
+        // 生成分页URL（只是候选，实际抓取遇到空页即停止）
+        int pageLimit = totalPages > 0 ? totalPages : Integer.MAX_VALUE;
+        for (int i = 1; i < pageLimit && i < MAX_GENERATED_PAGES; i++) {
+            String pageUrl;
+            if (baseUrl.contains("?")) {
+                pageUrl = baseUrl + "&start=" + (i * perPage);
+            } else {
+                pageUrl = baseUrl + "?start=" + (i * perPage);
             }
+            urls.add(pageUrl);
         }
         
         return urls;
     }
     
+    /**
+     * 从分页链接的 start 参数中推断每页数量（最小的正偏移量）
+     *
+     * @param paginator 分页器元素
+     * @return 每页数量，无法推断时返回-1
+     */
+    private int detectPageStep(Elements paginator) {
+        int step = -1;
+        for (Element link : paginator.select("a[href]")) {
+            Matcher matcher = START_PARAM_PATTERN.matcher(link.attr("href"));
+            if (matcher.find()) {
+                int start = Integer.parseInt(matcher.group(1));
+                if (start > 0 && (step < 0 || start < step)) {
+                    step = start;
+                }
+            }
+        }
+        return step;
+    }
+    
     /**
      * 从Document中提取图片URL（优先提取高清图）
      *
-     * @param doc     文档对象
-     * @param pageUrl 页面URL
+     * @param doc            文档对象
+     * @param pageUrl        页面URL
+     * @param detailDeadline 豆瓣详情页模式的截止时间（null 表示不启用）
      * @return 图片URL集合
      */
-    private Set<String> extractImagesFromDocument(Document doc, String pageUrl) {
-        Set<String> imageUrls = new HashSet<>();
-        
-        // V2.x 详情页提取已禁用
-        // 原因：虽然访问详情页看起来能获取更高清的图片，但实际测试发现：
-        // 1. 清晰度没有提升（详情页的图片最终也是升级到 /raw/ 路径）
-        // 2. 失败率更高（某些图片的 /raw/ 版本返回404）
-        // 3. 耗时增加 2-3 倍（需要额外访问每个详情页）
-        // 4. 复杂度增加（更容易出错）
-        // 
-        // 结论：回退到 V1.0 的简单模式，直接从相册页提取图片并升级到 /raw/
-        //
-        // 如需启用详情页提取，请取消下面代码的注释：
-        /*
-        boolean isDoubanAlbum = pageUrl.contains("douban.com") && 
-                               (pageUrl.contains("/photos") || pageUrl.contains("/all_photos"));
+    private Set<String> extractImagesFromDocument(Document doc, String pageUrl, Long detailDeadline) {
+        // 按图片身份去重：同一张图片的多个URL写法只保留最清晰的一个
+        ImageUrlCollector imageUrls = new ImageUrlCollector();
         
-        if (isDoubanAlbum) {
-            log.info("检测到豆瓣相册页面: {}", pageUrl);
-            Set<String> detailPageUrls = extractDoubanPhotoDetailUrls(doc);
+        // 优先级1: 豆瓣详情页模式（按请求开启）
+        // 默认关闭：逐个访问详情页耗时高，且多数情况下与直接升级到 /raw/ 的结果一致。
+        // 开启后详情页并发抓取（受主机限速约束），解析结果持久化缓存，超出时间预算的回退到 /raw/ 改写
+        if (detailDeadline != null && isDoubanAlbumPage(pageUrl)) {
+            log.info("检测到豆瓣相册页面，启用详情页模式: {}", pageUrl);
+            Map<String, String> detailPages = extractDoubanPhotoDetailUrls(doc);
             
-            if (!detailPageUrls.isEmpty()) {
-                log.info("找到 {} 个图片详情页，开始提取超高清图", detailPageUrls.size());
-                int successCount = 0;
-                
-                for (String detailUrl : detailPageUrls) {
-                    try {
-                        Thread.sleep(500);
-                        String ultraHdUrl = extractUltraHdImageFromDoubanDetail(detailUrl);
-                        
-                        if (ultraHdUrl != null && !ultraHdUrl.isEmpty()) {
-                            if (isValidImageUrl(ultraHdUrl)) {
-                                imageUrls.add(ultraHdUrl);
-                                successCount++;
-                                log.debug("✓ 从详情页提取到超高清图: {}", ultraHdUrl);
-                            } else {
-                                log.warn("✗ 提取的不是图片URL: {}", ultraHdUrl);
-                            }
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        log.error("线程被中断: {}", e.getMessage());
-                        break;
-                    } catch (Exception e) {
-                        log.warn("✗ 从详情页提取图片失败: {}, 错误: {}", detailUrl, e.getMessage());
-                    }
-                }
-                
+            if (!detailPages.isEmpty()) {
+                imageUrls.addAll(resolveDoubanDetailImages(detailPages, detailDeadline));
                 if (!imageUrls.isEmpty()) {
-                    log.info("成功从 {} 个详情页提取到超高清图", successCount);
-                    return imageUrls;
+                    return imageUrls.toSet();
                 }
-                
                 log.warn("从详情页提取失败（成功0个），回退到普通模式");
             } else {
                 log.warn("未能提取到详情页链接，回退到普通模式");
             }
         }
-        */
         
         // 优先级2: 提取 img 标签的高清属性（data-rawurl, data-highres 等）
         Elements imgElements = doc.select("img");
@@ -483,7 +803,17 @@ public class ImageDownloadService {
                 }
             }
             
-            // 如果没有找到高清版本，尝试从普通src中升级为高清
+            // 其次使用页面声明的最大候选（srcset / <picture><source>），无需猜测URL
+            if (!foundHighRes) {
+                String declaredUrl = selectLargestDeclaredCandidate(img);
+                if (declaredUrl != null && isValidImageUrl(declaredUrl)) {
+                    imageUrls.add(declaredUrl);
+                    log.debug("提取到srcset声明的最大图片: {}", declaredUrl);
+                    foundHighRes = true;
+                }
+            }
+            
+            // 如果没有找到高清版本，尝试从普通src中升级为高清（改写规则只作为兜底）
             if (!foundHighRes) {
                 String src = img.absUrl("src");
                 if (src != null && !src.isEmpty() && isValidImageUrl(src)) {
@@ -499,6 +829,9 @@ public class ImageDownloadService {
         // 优先级3: 提取所有data-src属性（懒加载图片）
         Elements lazyImgElements = doc.select("img[data-src]");
         for (Element img : lazyImgElements) {
+            if (hasDeclaredCandidates(img)) {
+                continue;  // 已使用 srcset 声明的候选
+            }
             String dataSrc = img.absUrl("data-src");
             if (dataSrc != null && !dataSrc.isEmpty() && isValidImageUrl(dataSrc)) {
                 String upgradedUrl = upgradeToHighResolution(dataSrc);
@@ -509,6 +842,9 @@ public class ImageDownloadService {
         // 优先级4: 提取所有data-original属性（另一种懒加载方式）
         Elements originalImgElements = doc.select("img[data-original]");
         for (Element img : originalImgElements) {
+            if (hasDeclaredCandidates(img)) {
+                continue;  // 已使用 srcset 声明的候选
+            }
             String dataOriginal = img.absUrl("data-original");
             if (dataOriginal != null && !dataOriginal.isEmpty() && isValidImageUrl(dataOriginal)) {
                 String upgradedUrl = upgradeToHighResolution(dataOriginal);
@@ -535,7 +871,49 @@ public class ImageDownloadService {
         }
         
         log.info("提取到 {} 个图片URL（已优先使用高清版本）", imageUrls.size());
-        return imageUrls;
+        return imageUrls.toSet();
+    }
+    
+    /**
+     * 从 srcset / data-srcset 以及外层 <picture> 的 <source> 中选出声明尺寸最大的图片
+     * <source> 的 type 不能被 ImageIO 解码时跳过（例如 avif）
+     *
+     * @param img img 元素
+     * @return 最大候选的绝对URL，没有声明候选时返回null
+     */
+    private String selectLargestDeclaredCandidate(Element img) {
+        List<SrcsetParser.Candidate> candidates = new ArrayList<>();
+        candidates.addAll(SrcsetParser.parse(img.attr("srcset")));
+        candidates.addAll(SrcsetParser.parse(img.attr("data-srcset")));
+        
+        Element parent = img.parent();
+        if (parent != null && "picture".equals(parent.tagName())) {
+            for (Element source : parent.select("> source")) {
+                String type = source.attr("type");
+                if (!type.isEmpty() && !ImageIO.getImageReadersByMIMEType(type).hasNext()) {
+                    continue;
+                }
+                candidates.addAll(SrcsetParser.parse(source.attr("srcset")));
+                candidates.addAll(SrcsetParser.parse(source.attr("data-srcset")));
+            }
+        }
+        
+        SrcsetParser.Candidate largest = SrcsetParser.largest(candidates);
+        if (largest == null) {
+            return null;
+        }
+        String url = StringUtil.resolve(img.baseUri(), largest.getUrl());
+        return url.isEmpty() ? null : url;
+    }
+    
+    /**
+     * 是否声明了 srcset 候选
+     *
+     * @param img img 元素
+     * @return 是否有候选
+     */
+    private boolean hasDeclaredCandidates(Element img) {
+        return selectLargestDeclaredCandidate(img) != null;
     }
     
     /**
@@ -624,14 +1002,25 @@ public class ImageDownloadService {
         return lowerUrl.matches(".*\\.(jpg|jpeg|png|webp|gif|bmp)(\\?.*)?$");
     }
     
+    /**
+     * 判断是否为豆瓣相册页面
+     *
+     * @param pageUrl 页面URL
+     * @return 是否为豆瓣相册页
+     */
+    private boolean isDoubanAlbumPage(String pageUrl) {
+        return pageUrl.contains("douban.com") &&
+               (pageUrl.contains("/photos") || pageUrl.contains("/all_photos"));
+    }
+    
     /**
      * 从豆瓣相册页面提取图片详情页URL
      *
      * @param doc 文档对象
-     * @return 详情页URL集合
+     * @return 详情页URL -> 回退URL（相册缩略图升级后的 /raw/ 地址，可能为null）
      */
-    private Set<String> extractDoubanPhotoDetailUrls(Document doc) {
-        Set<String> detailUrls = new HashSet<>();
+    private Map<String, String> extractDoubanPhotoDetailUrls(Document doc) {
+        Map<String, String> detailUrls = new LinkedHashMap<>();
         
         // 豆瓣相册页面的图片详情链接格式：
         // <a href="/photos/photo/2541307071/" ...>
@@ -659,7 +1048,15 @@ public class ImageDownloadService {
                 
                 // 确保是图片详情页（以数字ID结尾）
                 if (href.matches(".*\\/photos\\/photo\\/\\d+\\/?$")) {
-                    detailUrls.add(href);
+                    // 链接内的缩略图作为超时回退
+                    String fallbackUrl = null;
+                    Element thumb = link.selectFirst("img[src]");
+                    if (thumb != null && isValidImageUrl(thumb.absUrl("src"))) {
+                        fallbackUrl = upgradeToHighResolution(thumb.absUrl("src"));
+                    }
+                    if (fallbackUrl != null || !detailUrls.containsKey(href)) {
+                        detailUrls.put(href, fallbackUrl);
+                    }
                     log.debug("提取到详情页链接: {}", href);
                 }
             }
@@ -669,6 +1066,80 @@ public class ImageDownloadService {
         return detailUrls;
     }
     
+    /**
+     * 并发解析豆瓣详情页中的超高清图
+     * 先查持久化缓存；未命中的详情页在主机限速下并发抓取；截止时间内未解析的使用回退URL
+     *
+     * @param detailPages 详情页URL -> 回退URL
+     * @param deadline    截止时间（毫秒时间戳）
+     * @return 图片URL集合
+     */
+    private Set<String> resolveDoubanDetailImages(Map<String, String> detailPages, long deadline) {
+        Set<String> imageUrls = new HashSet<>();
+        Map<String, Future<String>> pending = new LinkedHashMap<>();
+        int cacheHits = 0;
+        int resolved = 0;
+        int fallbacks = 0;
+        
+        try {
+            for (String detailUrl : detailPages.keySet()) {
+                String cachedUrl = doubanDetailUrlCache.get(detailUrl);
+                if (cachedUrl != null) {
+                    imageUrls.add(cachedUrl);
+                    cacheHits++;
+                    continue;
+                }
+                
+                pending.put(detailUrl, detailPageExecutor.submit(() -> {
+                    if (!hostRateLimiter.acquire(detailUrl, deadline)) {
+                        return null;
+                    }
+                    String ultraHdUrl = extractUltraHdImageFromDoubanDetail(detailUrl);
+                    if (ultraHdUrl != null && isValidImageUrl(ultraHdUrl)) {
+                        doubanDetailUrlCache.put(detailUrl, ultraHdUrl);
+                        return ultraHdUrl;
+                    }
+                    return null;
+                }));
+            }
+            
+            for (Map.Entry<String, Future<String>> entry : pending.entrySet()) {
+                String ultraHdUrl = null;
+                try {
+                    long remaining = deadline - System.currentTimeMillis();
+                    ultraHdUrl = entry.getValue().get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    entry.getValue().cancel(true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    entry.getValue().cancel(true);
+                } catch (Exception e) {
+                    log.warn("✗ 从详情页提取图片失败: {}, 错误: {}", entry.getKey(), e.getMessage());
+                }
+                
+                if (ultraHdUrl != null) {
+                    imageUrls.add(ultraHdUrl);
+                    resolved++;
+                } else {
+                    String fallbackUrl = detailPages.get(entry.getKey());
+                    if (fallbackUrl != null) {
+                        imageUrls.add(fallbackUrl);
+                        fallbacks++;
+                    }
+                }
+            }
+        } finally {
+            // 线程池是共用的，只取消本页尚未完成的任务
+            for (Future<String> future : pending.values()) {
+                future.cancel(true);
+            }
+        }
+        
+        log.info("详情页模式完成: 缓存命中={}, 实时解析={}, 回退/raw/={}, 共 {} 个图片",
+                cacheHits, resolved, fallbacks, imageUrls.size());
+        return imageUrls;
+    }
+    
     /**
      * 从豆瓣图片详情页提取超高清图URL
      *
@@ -679,11 +1150,7 @@ public class ImageDownloadService {
     private String extractUltraHdImageFromDoubanDetail(String detailPageUrl) throws IOException {
         log.debug("正在访问详情页: {}", detailPageUrl);
         
-        Document detailDoc = Jsoup.connect(detailPageUrl)
-                .userAgent(downloadConfig.getUserAgent())
-                .timeout(downloadConfig.getTimeout())
-                .referrer(detailPageUrl)  // 添加 Referer
-                .get();
+        Document detailDoc = pageFetcher.fetch(detailPageUrl, detailPageUrl);  // 添加 Referer
         
         // 策略1: 查找最大的 img 标签（通常在 div.photo-wp 中）
         Elements mainImages = detailDoc.select("div.photo-wp img, div.mainphoto img, img#mainpic, img.view_photo");
@@ -821,18 +1288,17 @@ public class ImageDownloadService {
     /**
      * 解析HTML页面，提取图片URL
      *
-     * @param pageUrl 页面URL
+     * @param pageUrl        页面URL
+     * @param detailDeadline 豆瓣详情页模式的截止时间（null 表示不启用）
      * @return 图片URL集合
      * @throws IOException IO异常
      */
-    private Set<String> parseImageUrls(String pageUrl) throws IOException {
-        // 使用Jsoup解析HTML
-        Document doc = Jsoup.connect(pageUrl)
-                .userAgent(downloadConfig.getUserAgent())
-                .timeout(downloadConfig.getTimeout())
-                .get();
-
-        return extractImagesFromDocument(doc, pageUrl);
+    private PageParseResult parseImageUrls(String pageUrl, Long detailDeadline) throws IOException {
+        // 抓取并解析HTML
+        Document doc = pageFetcher.fetch(pageUrl);
+
+        return new PageParseResult(Collections.unmodifiableSet(extractImagesFromDocument(doc, pageUrl, detailDeadline)),
+                Collections.singletonList(pageUrl), true);
     }
 
     /**
@@ -931,17 +1397,60 @@ public class ImageDownloadService {
         return path;
     }
 
+    /**
+     * 下载图片，改写后的地址 404 时按尺寸阶梯回退
+     * 候选顺序参考各主机改写规则的历史成功率，并记录本次结果
+     *
+     * @param imageUrl      图片URL
+     * @param savePath      保存路径
+     * @param refererUrl    来源URL（用于设置Referer请求头）
+     * @param stageForTranscode 是否写入暂存文件，由调用方提交转码
+     * @param inMemory      是否优先保存在内存缓冲区（超过阈值时仍写入文件）
+     * @param minWidth      最小宽度（像素），0 表示不过滤
+     * @param minHeight     最小高度（像素），0 表示不过滤
+     * @return 下载的图片
+     * @throws IOException IO异常
+     */
+    private ImagePayload downloadWithVariants(String imageUrl, String savePath, String refererUrl,
+                                              boolean stageForTranscode, boolean inMemory,
+                                              int minWidth, int minHeight) throws IOException {
+        List<ImageUrlVariants.Variant> variants = rewriteStatsRegistry.order(ImageUrlVariants.of(imageUrl));
+        
+        FileNotFoundException lastNotFound = null;
+        for (ImageUrlVariants.Variant variant : variants) {
+            try {
+                ImagePayload payload = downloadSingleImage(variant.getUrl(), savePath, refererUrl, stageForTranscode, inMemory,
+                        minWidth, minHeight);
+                rewriteStatsRegistry.record(variant.getUrl(), variant.getRule(), true);
+                if (!variant.getUrl().equals(imageUrl)) {
+                    log.info("使用回退尺寸下载成功: {} -> {}", imageUrl, variant.getUrl());
+                }
+                return payload;
+            } catch (FileNotFoundException e) {
+                rewriteStatsRegistry.record(variant.getUrl(), variant.getRule(), false);
+                lastNotFound = e;
+                log.debug("候选地址不存在，尝试下一级: {}", variant.getUrl());
+            }
+        }
+        throw lastNotFound != null ? lastNotFound : new FileNotFoundException("HTTP 404 资源不存在: " + imageUrl);
+    }
+
     /**
      * 下载单个图片
      *
      * @param imageUrl      图片URL
      * @param savePath      保存路径
      * @param refererUrl    来源URL（用于设置Referer请求头）
-     * @param convertToJpeg 是否转换为JPEG
-     * @return 下载的文件
+     * @param stageForTranscode 是否写入暂存文件，由调用方提交转码
+     * @param inMemory      是否优先保存在内存缓冲区（超过阈值时仍写入文件）
+     * @param minWidth      最小宽度（像素），0 表示不过滤
+     * @param minHeight     最小高度（像素），0 表示不过滤
+     * @return 下载的图片
      * @throws IOException IO异常
      */
-    private File downloadSingleImage(String imageUrl, String savePath, String refererUrl, Boolean convertToJpeg) throws IOException {
+    private ImagePayload downloadSingleImage(String imageUrl, String savePath, String refererUrl,
+                                             boolean stageForTranscode, boolean inMemory,
+                                             int minWidth, int minHeight) throws IOException {
         int retryCount = 0;
         Exception lastException = null;
         int connectTimeout = downloadConfig.getConnectTimeout() != null ? downloadConfig.getConnectTimeout() : 10000;
@@ -954,6 +1463,7 @@ public class ImageDownloadService {
                 String fileName = extractFileName(imageUrl);
 
                 // 创建连接
+                long transferStart = System.currentTimeMillis();
                 URL url = new URL(imageUrl);
                 connection = (HttpURLConnection) url.openConnection();
                 
@@ -989,7 +1499,8 @@ public class ImageDownloadService {
                         log.debug("图片URL重定向: {} -> {}", imageUrl, redirectUrl);
                         connection.disconnect();
                         // 递归下载重定向后的URL
-                        return downloadSingleImage(redirectUrl, savePath, refererUrl, convertToJpeg);
+                        return downloadSingleImage(redirectUrl, savePath, refererUrl, stageForTranscode, inMemory,
+                                minWidth, minHeight);
                     }
                 }
                 
@@ -1008,6 +1519,10 @@ public class ImageDownloadService {
                     connection.disconnect();
                     Thread.sleep(waitSeconds * 1000L);
                     throw new IOException("HTTP 429 请求过多，需要等待");
+                } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                    // 404 重试无意义，直接交给调用方回退到其他尺寸
+                    connection.disconnect();
+                    throw new FileNotFoundException("HTTP 404 资源不存在: " + imageUrl);
                 } else if (responseCode != HttpURLConnection.HTTP_OK) {
                     connection.disconnect();
                     throw new IOException("HTTP响应码: " + responseCode);
@@ -1019,34 +1534,43 @@ public class ImageDownloadService {
                     log.warn("URL返回的不是图片类型: {}, Content-Type: {}", imageUrl, contentType);
                 }
 
-                // 下载并保存
+                // 先读取图片头，尺寸过小的图片（占位图、缩略图）在完整传输前中止
+                InputStream rawStream = connection.getInputStream();
+                byte[] headerBytes = new byte[headerProbeBytes()];
+                int headerLength = IOUtils.read(rawStream, headerBytes);
+                ImageHeader header = ImageHeaderSniffer.sniff(headerBytes, headerLength);
+                if (isBelowMinDimensions(header, minWidth, minHeight)) {
+                    rawStream.close();
+                    connection.disconnect();
+                    throw new ImageSkippedException(String.format("图片尺寸过小: %dx%d", header.getWidth(), header.getHeight()));
+                }
+                InputStream imageStream = new SequenceInputStream(
+                        new ByteArrayInputStream(headerBytes, 0, headerLength), rawStream);
+
+                // 下载并保存（需要转码时先写暂存文件，解码/编码交给转码线程池）
                 File outputFile;
-                if (convertToJpeg != null && convertToJpeg) {
-                    // 转换为JPEG格式
-                    try (InputStream inputStream = connection.getInputStream()) {
-                        BufferedImage image = ImageIO.read(inputStream);
-                        if (image != null) {
-                            // 移除原扩展名，添加.jpg
-                            String jpegFileName = removeExtension(fileName) + ".jpg";
-                            outputFile = new File(savePath, jpegFileName);
-
-                            // 保存为JPEG
-                            ImageIO.write(image, "JPEG", outputFile);
-                        } else {
-                            connection.disconnect();
-                            throw new IOException("无法读取图片内容，可能不是有效的图片格式");
-                        }
-                    }
+                if (stageForTranscode) {
+                    outputFile = new File(savePath, fileName + STAGED_SUFFIX);
                 } else {
-                    // 直接保存原格式
-                    try (InputStream inputStream = connection.getInputStream()) {
-                        outputFile = new File(savePath, fileName);
+                    outputFile = new File(savePath, fileName);
+                }
+                long contentLength = connection.getContentLengthLong();
+                ImagePayload payload;
+                try (InputStream inputStream = imageStream) {
+                    if (inMemory && contentLength <= imageBufferPool.getMaxBufferSize()) {
+                        payload = bufferOrSpill(inputStream, fileName, outputFile, contentLength);
+                    } else {
                         FileUtils.copyInputStreamToFile(inputStream, outputFile);
+                        payload = ImagePayload.ofFile(outputFile, fileName);
                     }
                 }
 
                 connection.disconnect();
-                return outputFile; // 成功，返回下载的文件
+
+                // 记录主机吞吐量（用于预估模式推算耗时）
+                long transferredBytes = contentLength > 0 ? contentLength : payload.size();
+                hostThroughputTracker.record(imageUrl, transferredBytes, System.currentTimeMillis() - transferStart);
+                return payload; // 成功，返回下载的图片
 
             } catch (InterruptedException e) {
                 if (connection != null) {
@@ -1054,6 +1578,11 @@ public class ImageDownloadService {
                 }
                 Thread.currentThread().interrupt();
                 throw new IOException("下载被中断", e);
+            } catch (FileNotFoundException | ImageSkippedException e) {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+                throw e;
             } catch (java.net.SocketTimeoutException e) {
                 if (connection != null) {
                     connection.disconnect();
@@ -1105,6 +1634,116 @@ public class ImageDownloadService {
                 (lastException != null ? lastException.getMessage() : "未知错误"), lastException);
     }
     
+    /**
+     * 去水印任务结束时立即处理它的输入：内存中的图片在去水印失败或异常时写入原图目录，避免丢图，随后归还缓冲区；
+     * 去水印阶段的异常转换为失败结果，按去水印失败统计（转码失败由转码结果单独统计）
+     *
+     * @param input           去水印的输入（转码结果）
+     * @param watermarkFuture 去水印任务（在输入完成之后结束）
+     * @param originalPath    原图目录
+     * @param provider        请求指定的服务商
+     * @return 去水印结果
+     */
+    private CompletableFuture<WatermarkRemovalResult> settleWatermark(CompletableFuture<ImagePayload> input,
+                                                                      CompletableFuture<WatermarkRemovalResult> watermarkFuture,
+                                                                      String originalPath, String provider) {
+        return watermarkFuture.handle((result, error) -> {
+            WatermarkRemovalResult settled = result;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                settled = WatermarkRemovalResult.builder()
+                        .success(false)
+                        .provider(provider)
+                        .errorMessage(cause.getMessage())
+                        .duration(0L)
+                        .build();
+            }
+            ImagePayload payload = input.isCompletedExceptionally() ? null : input.join();
+            if (payload != null && payload.isInMemory()) {
+                try {
+                    if (!Boolean.TRUE.equals(settled.getSuccess())) {
+                        File originalFile = new File(originalPath, payload.getFileName());
+                        payload.writeTo(originalFile);
+                        log.info("去水印失败，原图已保存: {}", originalFile);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("去水印失败且原图保存失败: " + e.getMessage(), e);
+                } finally {
+                    payload.release();
+                }
+            }
+            return settled;
+        });
+    }
+
+    /**
+     * 读入池化缓冲区：缓冲区按 Content-Length 分配，长度未知时从小缓冲区开始按需扩大；
+     * 内容超过单张上限或缓冲池总量已满时，把已读部分和剩余内容一起写入文件
+     */
+    private ImagePayload bufferOrSpill(InputStream inputStream, String fileName, File spillFile,
+                                       long contentLength) throws IOException {
+        int maxBytes = imageBufferPool.getMaxBufferSize();
+        int initialSize = contentLength > 0 ? (int) contentLength : Math.min(maxBytes, UNKNOWN_LENGTH_BUFFER_BYTES);
+        byte[] buffer = imageBufferPool.acquire(initialSize);
+        if (buffer == null) {
+            FileUtils.copyInputStreamToFile(inputStream, spillFile);
+            return ImagePayload.ofFile(spillFile, fileName);
+        }
+        try {
+            int length = 0;
+            while (true) {
+                length += IOUtils.read(inputStream, buffer, length, buffer.length - length);
+                int next = length < buffer.length ? -1 : inputStream.read();
+                if (next == -1) {
+                    ImagePayload payload = ImagePayload.ofBytes(fileName, buffer, length, imageBufferPool);
+                    buffer = null;
+                    return payload;
+                }
+                byte[] larger = buffer.length < maxBytes
+                        ? imageBufferPool.acquire((int) Math.min(maxBytes, (long) buffer.length * 2)) : null;
+                if (larger == null) {
+                    try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(spillFile.toPath()))) {
+                        output.write(buffer, 0, length);
+                        output.write(next);
+                        IOUtils.copy(inputStream, output);
+                    }
+                    return ImagePayload.ofFile(spillFile, fileName);
+                }
+                System.arraycopy(buffer, 0, larger, 0, length);
+                larger[length++] = (byte) next;
+                imageBufferPool.release(buffer);
+                buffer = larger;
+            }
+        } finally {
+            if (buffer != null) {
+                imageBufferPool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * 图片头预读字节数
+     */
+    private int headerProbeBytes() {
+        return downloadConfig.getHeaderProbeBytes() != null && downloadConfig.getHeaderProbeBytes() > 0
+                ? downloadConfig.getHeaderProbeBytes() : 16384;
+    }
+
+    /**
+     * 是否小于最小尺寸（无法识别尺寸时不过滤）
+     *
+     * @param header    图片头信息
+     * @param minWidth  最小宽度（像素）
+     * @param minHeight 最小高度（像素）
+     * @return 是否过小
+     */
+    private boolean isBelowMinDimensions(ImageHeader header, int minWidth, int minHeight) {
+        if (!header.hasDimensions()) {
+            return false;
+        }
+        return header.getWidth() < minWidth || header.getHeight() < minHeight;
+    }
+
     /**
      * 提取失败原因
      *
@@ -1126,6 +1765,8 @@ public class ImageDownloadService {
             return "连接超时";
         } else if (e instanceof java.net.ConnectException) {
             return "连接失败";
+        } else if (message.contains("HTTP 404")) {
+            return "HTTP 404 资源不存在";
         } else if (message.contains("HTTP 403")) {
             return "HTTP 403 禁止访问";
         } else if (message.contains("HTTP 429")) {
@@ -1136,6 +1777,8 @@ public class ImageDownloadService {
             return message;
         } else if (message.contains("无法读取图片内容")) {
             return "图片格式无效";
+        } else if (message.contains("像素数超过上限")) {
+            return "图片像素数超过上限";
         } else if (message.contains("超时")) {
             return "请求超时";
         } else if (message.contains("连接")) {
@@ -1216,6 +1859,12 @@ public class ImageDownloadService {
                 .filter(r -> r.getSuccess() != null && r.getSuccess())
                 .count();
         int failPages = pageResults.size() - successPages;
+        int skippedImages = pageResults.stream()
+                .mapToInt(r -> r.getSkippedCount() != null ? r.getSkippedCount() : 0)
+                .sum();
+        long bytesSaved = pageResults.stream()
+                .mapToLong(r -> r.getBytesSaved() != null ? r.getBytesSaved() : 0L)
+                .sum();
 
         // 汇总统计
         boolean overallSuccess = failPages == 0;
@@ -1233,11 +1882,64 @@ public class ImageDownloadService {
                 .totalImages(totalImages.get())
                 .successImages(successImages.get())
                 .failImages(failImages.get())
+                .skippedImages(skippedImages)
+                .bytesSaved(bytesSaved)
+                .estimate(request.getEstimateOnly() != null && request.getEstimateOnly()
+                        ? aggregateEstimates(request, pageResults) : null)
                 .totalDuration(totalDuration)
                 .pageResults(pageResults)
                 .build();
     }
 
+    /**
+     * 汇总各页面的预估结果
+     * 并发模式下耗时按并发数摊分，但不少于耗时最长的单个页面
+     *
+     * @param request     批量下载请求
+     * @param pageResults 各页面结果
+     * @return 汇总后的预估
+     */
+    private DownloadResponse.DownloadEstimate aggregateEstimates(
+            BatchDownloadRequest request,
+            List<BatchDownloadResponse.PageDownloadResult> pageResults) {
+        int imageCount = 0;
+        int probedCount = 0;
+        int unknownSizeCount = 0;
+        long measuredBytes = 0;
+        long totalBytes = 0;
+        long sumDuration = 0;
+        long maxDuration = 0;
+        
+        for (BatchDownloadResponse.PageDownloadResult result : pageResults) {
+            DownloadResponse.DownloadEstimate estimate = result.getEstimate();
+            if (estimate == null) {
+                continue;
+            }
+            imageCount += estimate.getImageCount();
+            probedCount += estimate.getProbedCount();
+            unknownSizeCount += estimate.getUnknownSizeCount();
+            measuredBytes += estimate.getMeasuredBytes();
+            totalBytes += estimate.getTotalBytes();
+            sumDuration += estimate.getProjectedDuration();
+            maxDuration = Math.max(maxDuration, estimate.getProjectedDuration());
+        }
+        
+        long projectedDuration = sumDuration;
+        if (request.getConcurrent() != null && request.getConcurrent()) {
+            int concurrency = request.getMaxConcurrency() != null ? Math.max(1, request.getMaxConcurrency()) : 3;
+            projectedDuration = Math.max(maxDuration, sumDuration / concurrency);
+        }
+        
+        return DownloadResponse.DownloadEstimate.builder()
+                .imageCount(imageCount)
+                .probedCount(probedCount)
+                .unknownSizeCount(unknownSizeCount)
+                .measuredBytes(measuredBytes)
+                .totalBytes(totalBytes)
+                .projectedDuration(projectedDuration)
+                .build();
+    }
+
     /**
      * 并发下载多个页面
      *
@@ -1372,6 +2074,12 @@ public class ImageDownloadService {
             singleRequest.setRemoveWatermark(batchRequest.getRemoveWatermark());
             singleRequest.setWatermarkProvider(batchRequest.getWatermarkProvider());
             singleRequest.setSaveOriginal(batchRequest.getSaveOriginal());
+            singleRequest.setDoubanDetailMode(batchRequest.getDoubanDetailMode());
+            singleRequest.setEstimateOnly(batchRequest.getEstimateOnly());
+            singleRequest.setOptimizeStorage(batchRequest.getOptimizeStorage());
+            singleRequest.setMinImageWidth(batchRequest.getMinImageWidth());
+            singleRequest.setMinImageHeight(batchRequest.getMinImageHeight());
+            singleRequest.setOutputVariants(batchRequest.getOutputVariants());
 
             // 调用单个页面下载方法
             DownloadResponse response = downloadImages(singleRequest);
@@ -1396,10 +2104,13 @@ public class ImageDownloadService {
                     .totalCount(response.getTotalCount())
                     .successCount(response.getSuccessCount())
                     .failCount(response.getFailCount())
+                    .skippedCount(response.getSkippedCount())
+                    .bytesSaved(response.getBytesSaved())
                     .savePath(response.getSavePath())
                     .failedUrls(response.getFailedUrls())
                     .duration(pageDuration)
                     .watermarkStats(response.getWatermarkStats())
+                    .estimate(response.getEstimate())
                     .build();
 
         } catch (Exception e) {
@@ -0,0 +1,120 @@
+package com.prospect.giraffe.material.service;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局内存预算
+ * 解码、去水印等会在堆上持有整张图片的阶段，在执行前按预估占用申请额度，
+ * 额度不足时等待，使并发批量任务下的堆占用保持平稳
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class MemoryBudget {
+
+    /**
+     * 额度按 KB 计，避免超出 Semaphore 的 int 范围
+     */
+    private static final long UNIT_BYTES = 1024L;
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    private Semaphore permits;
+
+    private int totalPermits;
+
+    /**
+     * 因超过总预算被拒绝的申请次数
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        long budget = downloadConfig.getMemoryBudget() != null ? downloadConfig.getMemoryBudget() : 0L;
+        if (budget <= 0) {
+            log.info("内存预算未启用");
+            return;
+        }
+        totalPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1L, budget / UNIT_BYTES));
+        permits = new Semaphore(totalPermits, true);
+        log.info("内存预算已启用: {} MB", budget / UNIT_BYTES / UNIT_BYTES);
+    }
+
+    /**
+     * 申请额度，不足时阻塞等待
+     * 超过总预算的申请直接拒绝（等待也无法满足），不按总预算放行，否则预算不再限制堆占用峰值
+     *
+     * @param bytes 预估占用字节数
+     * @return 额度凭证，使用完毕后关闭以归还
+     * @throws MemoryBudgetExceededException 申请超过总预算
+     * @throws InterruptedException          等待被中断
+     */
+    public Reservation reserve(long bytes) throws MemoryBudgetExceededException, InterruptedException {
+        if (permits == null || bytes <= 0) {
+            return new Reservation(0);
+        }
+        long units = Math.max(1L, (bytes + UNIT_BYTES - 1) / UNIT_BYTES);
+        if (units > totalPermits) {
+            rejectedCount.incrementAndGet();
+            log.warn("申请的内存超过全局预算，拒绝: 申请 {} MB, 预算 {} MB", units / UNIT_BYTES, totalPermits / UNIT_BYTES);
+            throw new MemoryBudgetExceededException(String.format("所需内存超过全局预算: %d MB > %d MB",
+                    units / UNIT_BYTES, totalPermits / UNIT_BYTES));
+        }
+        int requested = (int) units;
+        if (!permits.tryAcquire(requested)) {
+            log.debug("内存预算不足，等待释放: 申请 {} KB, 剩余 {} KB", requested, permits.availablePermits());
+            permits.acquire(requested);
+        }
+        return new Reservation(requested);
+    }
+
+    /**
+     * 总预算（字节），未启用时返回 -1
+     */
+    public long totalBytes() {
+        return permits != null ? totalPermits * UNIT_BYTES : -1L;
+    }
+
+    /**
+     * 因超过总预算被拒绝的申请次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 剩余额度（字节），未启用时返回 -1
+     */
+    public long availableBytes() {
+        return permits != null ? permits.availablePermits() * UNIT_BYTES : -1L;
+    }
+
+    /**
+     * 额度凭证
+     */
+    public class Reservation implements AutoCloseable {
+
+        private int reserved;
+
+        private Reservation(int reserved) {
+            this.reserved = reserved;
+        }
+
+        @Override
+        public void close() {
+            if (reserved > 0) {
+                permits.release(reserved);
+                reserved = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.prospect.giraffe.material.service;
+
+import java.io.IOException;
+
+/**
+ * 申请的内存额度超过全局内存预算，等待也无法满足，调用方应跳过或改用其他方式处理
+ *
+ * @author giraffe
+ */
+public class MemoryBudgetExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MemoryBudgetExceededException(String message) {
+        super(message);
+    }
+}
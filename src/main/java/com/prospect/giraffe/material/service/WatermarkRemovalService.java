@@ -1,15 +1,40 @@
 package com.prospect.giraffe.material.service;
 
 import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import com.prospect.giraffe.material.dto.DownloadResponse;
+import com.prospect.giraffe.material.dto.WatermarkQuotaStatus;
+import com.prospect.giraffe.material.service.image.ImagePayload;
 import com.prospect.giraffe.material.service.watermark.dto.WatermarkRemovalResult;
 import com.prospect.giraffe.material.service.watermark.IWatermarkRemovalAdapter;
+import com.prospect.giraffe.material.service.watermark.ProviderRateLimiter;
+import com.prospect.giraffe.material.service.watermark.ProviderRouter;
+import com.prospect.giraffe.material.service.watermark.QuotaLedger;
+import com.prospect.giraffe.material.service.watermark.WatermarkResultCache;
+import com.prospect.giraffe.material.service.watermark.WatermarkThrottledException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -21,14 +46,107 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Service
 public class WatermarkRemovalService {
 
+    /**
+     * 限流重试的最大次数（不计入 maxRetry）
+     */
+    private static final int MAX_THROTTLE_RETRIES = 10;
+
+    /**
+     * 自动路由：在所有可用服务商中选择
+     */
+    private static final String AUTO_PROVIDER = "auto";
+
+    /**
+     * 有额度配置的服务商
+     */
+    private static final List<String> QUOTA_PROVIDERS = Arrays.asList("aliyun", "tencent", "baidu");
+
+    private static final int QUOTA_ON_PACE = 0;
+
+    private static final int QUOTA_AHEAD_OF_PACE = 1;
+
+    private static final int QUOTA_EXHAUSTED = 2;
+
     @Autowired
     private WatermarkRemovalConfig config;
 
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private ProviderRateLimiter providerRateLimiter;
+
+    @Autowired
+    private WatermarkResultCache watermarkResultCache;
+
+    @Autowired
+    private ProviderRouter providerRouter;
+
+    @Autowired
+    private QuotaLedger quotaLedger;
+
     @Autowired(required = false)
     private Map<String, IWatermarkRemovalAdapter> adapters = new ConcurrentHashMap<>();
 
-    // 使用量统计
-    private final Map<String, AtomicInteger> usageCount = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 限制 执行中 + 排队 的任务总数
+     */
+    private Semaphore slots;
+
+    @PostConstruct
+    public void init() {
+        int threads = config.getConcurrency() != null && config.getConcurrency() > 0 ? config.getConcurrency() : 4;
+        int queueCapacity = config.getQueueCapacity() != null && config.getQueueCapacity() > 0 ? config.getQueueCapacity() : 16;
+
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "watermark-removal-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        slots = new Semaphore(threads + queueCapacity);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 异步去除水印：输入就绪后在去水印线程池中处理，下载不必等待服务商响应
+     * 排队任务已满时阻塞等待
+     *
+     * @param inputFuture  待处理图片（例如转码结果，可以是内存中的图片）
+     * @param outputDir    输出目录
+     * @param provider     指定的服务商（可选）
+     * @param saveOriginal 是否保存原图（可选）
+     * @return 处理结果；输入文件失败时以相同异常结束
+     * @throws InterruptedException 等待队列时被中断
+     */
+    public CompletableFuture<WatermarkRemovalResult> submitRemoveWatermark(CompletableFuture<ImagePayload> inputFuture, String outputDir,
+                                                                           String provider, Boolean saveOriginal)
+            throws InterruptedException {
+        slots.acquire();
+        try {
+            return inputFuture
+                    .thenApplyAsync(input -> removeWatermark(input, outputDir, provider, saveOriginal), executor)
+                    .whenComplete((result, e) -> slots.release());
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 是否保存原图：请求未指定时使用全局配置
+     */
+    public boolean resolveSaveOriginal(Boolean saveOriginal) {
+        return saveOriginal != null ? saveOriginal : Boolean.TRUE.equals(config.getSaveOriginal());
+    }
 
     /**
      * 去除水印
@@ -36,10 +154,24 @@ public class WatermarkRemovalService {
      * @param inputFile     输入文件
      * @param outputDir     输出目录（去水印后的图片保存位置）
      * @param provider      指定的服务商（可选）
-     * @param saveOriginal  是否保存原图（可选，此参数已不使用，原图由调用方管理）
+     * @param saveOriginal  是否保存原图（可选，为 false 时去水印成功后删除输入文件）
      * @return 处理结果
      */
     public WatermarkRemovalResult removeWatermark(File inputFile, String outputDir, String provider, Boolean saveOriginal) {
+        return removeWatermark(ImagePayload.ofFile(inputFile), outputDir, provider, saveOriginal);
+    }
+
+    /**
+     * 去除水印
+     *
+     * @param input         输入图片（文件或内存中的图片）
+     * @param outputDir     输出目录（去水印后的图片保存位置）
+     * @param provider      指定的服务商（可选）
+     * @param saveOriginal  是否保存原图（可选，为 false 时去水印成功后删除输入文件；内存中的图片不受影响）
+     * @return 处理结果；去水印失败时输入文件保留，内存中的图片由调用方决定是否落盘
+     */
+    public WatermarkRemovalResult removeWatermark(ImagePayload input, String outputDir, String provider, Boolean saveOriginal) {
+        File inputFile = input.getFile();
         long startTime = System.currentTimeMillis();
 
         // 检查是否启用
@@ -69,9 +201,33 @@ public class WatermarkRemovalService {
                     .build();
         }
 
-        // 获取适配器
-        IWatermarkRemovalAdapter adapter = getAdapter(actualProvider);
-        if (adapter == null) {
+        // 确定候选服务商：auto 时按额度状态与近期延迟、错误率排序，否则只使用指定的服务商
+        // 强制额度时跳过额度已用尽的服务商
+        List<String> candidates;
+        if (AUTO_PROVIDER.equals(actualProvider)) {
+            candidates = providerRouter.rank(availableProviders(), this::quotaTier);
+        } else if (getAdapter(actualProvider) != null) {
+            candidates = Collections.singletonList(actualProvider);
+        } else {
+            candidates = Collections.emptyList();
+        }
+        if (Boolean.TRUE.equals(config.getQuotaEnforced()) && !candidates.isEmpty()) {
+            List<String> withQuota = new ArrayList<>(candidates);
+            withQuota.removeIf(candidate -> quotaTier(candidate) == QUOTA_EXHAUSTED);
+            if (withQuota.isEmpty()) {
+                log.warn("服务商额度已用尽: {}", candidates);
+                return WatermarkRemovalResult.builder()
+                        .success(false)
+                        .resultFile(inputFile)
+                        .originalFile(inputFile)
+                        .provider(actualProvider)
+                        .errorMessage("服务商额度已用尽: " + String.join(", ", candidates))
+                        .duration(System.currentTimeMillis() - startTime)
+                        .build();
+            }
+            candidates = withQuota;
+        }
+        if (candidates.isEmpty()) {
             log.warn("未找到服务商 {} 的适配器或服务未启用", actualProvider);
             return WatermarkRemovalResult.builder()
                     .success(false)
@@ -83,36 +239,109 @@ public class WatermarkRemovalService {
                     .build();
         }
 
+        List<WatermarkRemovalResult.ProviderAttempt> attempts = new ArrayList<>();
+        String lastProvider = candidates.get(0);
         try {
-            // 去除水印（带重试）- 传入输出目录
-            File resultFile = removeWatermarkWithRetry(adapter, inputFile, outputDir);
+            // 相同内容 + 服务商的结果已缓存时直接复用，不调用服务商
+            String digest = watermarkResultCache.digestOf(input);
+            for (String candidate : candidates) {
+                File cachedFile = watermarkResultCache.restore(watermarkResultCache.keyOf(digest, candidate),
+                        new File(outputDir, input.getFileName()));
+                if (cachedFile != null) {
+                    log.info("水印去除命中缓存: provider={}, file={}", candidate, input.getFileName());
+                    return WatermarkRemovalResult.builder()
+                            .success(true)
+                            .resultFile(cachedFile)
+                            .originalFile(discardOriginal(inputFile, cachedFile, saveOriginal))
+                            .provider(candidate)
+                            .cached(true)
+                            .attempts(attempts)
+                            .duration(System.currentTimeMillis() - startTime)
+                            .build();
+                }
+            }
+
+            // 去除水印 - 传入输出目录
+            // 每个服务商调用前按其内存估算申请额度（本地适配器按像素数估算，远大于文件大小），
+            // 所需内存超过全局预算时跳过该服务商，不计入路由错误率
+            File resultFile = null;
+            Exception lastException = null;
+            for (int i = 0; i < candidates.size() && resultFile == null; i++) {
+                lastProvider = candidates.get(i);
+                // 后面还有候选服务商时失败立即切换，不等待重试退避；最后一个服务商按正常重试
+                boolean failFast = i < candidates.size() - 1;
+                IWatermarkRemovalAdapter adapter = getAdapter(lastProvider);
+                long attemptStart = System.currentTimeMillis();
+                MemoryBudget.Reservation reservation;
+                try {
+                    reservation = memoryBudget.reserve(adapter.memoryEstimate(input));
+                } catch (MemoryBudgetExceededException e) {
+                    attempts.add(new WatermarkRemovalResult.ProviderAttempt(lastProvider, false, 0L));
+                    lastException = e;
+                    log.warn("服务商 {} 所需内存超过预算，跳过: {}", lastProvider, e.getMessage());
+                    continue;
+                }
+                try {
+                    resultFile = removeWatermarkWithRetry(adapter, lastProvider, input, outputDir, failFast);
+                    long latency = System.currentTimeMillis() - attemptStart;
+                    providerRouter.record(lastProvider, latency, true);
+                    attempts.add(new WatermarkRemovalResult.ProviderAttempt(lastProvider, true, latency));
+                } catch (Exception e) {
+                    long latency = System.currentTimeMillis() - attemptStart;
+                    providerRouter.record(lastProvider, latency, false);
+                    attempts.add(new WatermarkRemovalResult.ProviderAttempt(lastProvider, false, latency));
+                    lastException = e;
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                    if (failFast) {
+                        log.warn("服务商 {} 去水印失败，切换到 {}: {}", lastProvider, candidates.get(i + 1), e.getMessage());
+                    }
+                } finally {
+                    reservation.close();
+                }
+            }
+            if (resultFile == null) {
+                throw lastException;
+            }
 
             // 记录使用量
-            recordUsage(actualProvider);
+            recordUsage(lastProvider);
+            // 结果改了扩展名（本地适配器改写为 PNG）时不缓存，命中时按输入文件名恢复会得到错误的扩展名
+            if (resultFile.getName().equals(input.getFileName())) {
+                watermarkResultCache.store(watermarkResultCache.keyOf(digest, lastProvider), resultFile);
+            }
+            File originalFile = discardOriginal(inputFile, resultFile, saveOriginal);
 
             long duration = System.currentTimeMillis() - startTime;
             log.info("水印去除成功: provider={}, file={}, duration={}ms",
-                    actualProvider, inputFile.getName(), duration);
+                    lastProvider, input.getFileName(), duration);
 
             return WatermarkRemovalResult.builder()
                     .success(true)
                     .resultFile(resultFile)
-                    .originalFile(inputFile)
-                    .provider(actualProvider)
+                    .originalFile(originalFile)
+                    .provider(lastProvider)
+                    .cached(false)
+                    .attempts(attempts)
                     .duration(duration)
                     .build();
 
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             long duration = System.currentTimeMillis() - startTime;
             log.error("水印去除失败: provider={}, file={}, error={}",
-                    actualProvider, inputFile.getName(), e.getMessage());
+                    lastProvider, input.getFileName(), e.getMessage());
 
             return WatermarkRemovalResult.builder()
                     .success(false)
                     .resultFile(inputFile)
                     .originalFile(inputFile)
-                    .provider(actualProvider)
+                    .provider(lastProvider)
                     .errorMessage(e.getMessage())
+                    .attempts(attempts)
                     .duration(duration)
                     .build();
         }
@@ -120,34 +349,53 @@ public class WatermarkRemovalService {
 
     /**
      * 带重试的水印去除
+     * 调用前按服务商限流配置获取许可；服务商返回限流时反馈给限流器降速后重试，不计入普通重试次数
+     *
+     * @param failFast 是否只调用一次（还有其他服务商可切换时），限流也直接失败
      */
-    private File removeWatermarkWithRetry(IWatermarkRemovalAdapter adapter, File inputFile, String outputDir) throws Exception {
+    private File removeWatermarkWithRetry(IWatermarkRemovalAdapter adapter, String provider,
+                                          ImagePayload input, String outputDir, boolean failFast) throws Exception {
+        int maxRetry = failFast ? 0 : config.getMaxRetry();
         int retryCount = 0;
+        int throttleCount = 0;
         Exception lastException = null;
 
-        while (retryCount <= config.getMaxRetry()) {
+        while (retryCount <= maxRetry) {
             try {
-                // 调用适配器去除水印
-                File tempResultFile = adapter.removeWatermark(inputFile);
-                
-                // 将结果文件移动到指定的输出目录
-                File finalResultFile = new File(outputDir, inputFile.getName());
-                if (!tempResultFile.equals(finalResultFile)) {
-                    org.apache.commons.io.FileUtils.copyFile(tempResultFile, finalResultFile);
-                    // 删除临时文件
-                    if (tempResultFile.getParent().equals(inputFile.getParent())) {
-                        tempResultFile.delete();
-                    }
+                // 调用适配器去除水印，结果直接写到输出目录
+                File finalResultFile = new File(outputDir, input.getFileName());
+                ProviderRateLimiter.Permit permit = providerRateLimiter.acquire(provider, rateLimitOf(provider));
+                try {
+                    finalResultFile = adapter.removeWatermark(input, finalResultFile.toPath());
+                } finally {
+                    permit.close();
                 }
-                
+                providerRateLimiter.onSuccess(provider);
+
                 return finalResultFile;
+            } catch (WatermarkThrottledException e) {
+                lastException = e;
+                providerRateLimiter.onThrottled(provider, e.getRetryAfterMillis());
+                if (failFast) {
+                    throw e;
+                }
+                if (++throttleCount > MAX_THROTTLE_RETRIES) {
+                    throw new Exception("服务商持续限流，已等待" + MAX_THROTTLE_RETRIES + "次", e);
+                }
+                log.debug("服务商 {} 限流，降速后重试 ({}/{})", provider, throttleCount, MAX_THROTTLE_RETRIES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new Exception("水印去除被中断", e);
             } catch (Exception e) {
                 lastException = e;
                 retryCount++;
 
-                if (retryCount <= config.getMaxRetry()) {
+                if (failFast) {
+                    throw e;
+                }
+                if (retryCount <= maxRetry) {
                     log.warn("水印去除失败，正在重试 ({}/{}): {}",
-                            retryCount, config.getMaxRetry(), e.getMessage());
+                            retryCount, maxRetry, e.getMessage());
                     try {
                         Thread.sleep(2000); // 等待2秒后重试
                     } catch (InterruptedException ie) {
@@ -158,7 +406,214 @@ public class WatermarkRemovalService {
             }
         }
 
-        throw new Exception("水印去除失败，已重试" + config.getMaxRetry() + "次", lastException);
+        // 按实际调用次数报告（failFast 时不重试，限流等待不计入）
+        throw new Exception("水印去除失败，已尝试" + retryCount + "次", lastException);
+    }
+
+    /**
+     * 不保存原图时，去水印成功后删除输入文件
+     *
+     * @return 保留下来的原图，已删除或不存在时返回 null
+     */
+    private File discardOriginal(File inputFile, File resultFile, Boolean saveOriginal) {
+        if (inputFile == null || resolveSaveOriginal(saveOriginal) || inputFile.equals(resultFile)) {
+            return inputFile;
+        }
+        try {
+            Files.deleteIfExists(inputFile.toPath());
+            return null;
+        } catch (IOException e) {
+            log.warn("删除原图失败: {}, 原因: {}", inputFile, e.getMessage());
+            return inputFile;
+        }
+    }
+
+    /**
+     * 获取服务商的限流配置
+     */
+    private WatermarkRemovalConfig.RateLimitConfig rateLimitOf(String provider) {
+        switch (provider) {
+            case "aliyun":
+                return config.getAliyun().getRateLimit();
+            case "tencent":
+                return config.getTencent().getRateLimit();
+            case "baidu":
+                return config.getBaidu().getRateLimit();
+            case "local":
+                return config.getLocal().getRateLimit();
+            default:
+                return new WatermarkRemovalConfig.RateLimitConfig();
+        }
+    }
+
+    /**
+     * 已启用且可用的服务商
+     */
+    private List<String> availableProviders() {
+        List<String> providers = new ArrayList<>();
+        adapters.forEach((beanName, adapter) -> {
+            if (adapter.isAvailable()) {
+                providers.add(adapter.getProviderName());
+            }
+        });
+        Collections.sort(providers);
+        return providers;
+    }
+
+    /**
+     * 服务商的额度分组：0 用量未超前，1 超前于匀速消耗，2 已用尽
+     */
+    private int quotaTier(String provider) {
+        WatermarkQuotaStatus status = getQuotaStatus(provider);
+        if (status.getRemaining() != null && status.getRemaining() <= 0) {
+            return QUOTA_EXHAUSTED;
+        }
+        return Boolean.TRUE.equals(status.getAheadOfPace()) ? QUOTA_AHEAD_OF_PACE : QUOTA_ON_PACE;
+    }
+
+    /**
+     * 获取服务商的额度状态（用量来自额度台账）
+     * 匀速用量 = 额度 × min(1, 周期内已过时间比例 + quotaPaceSlack)
+     *
+     * @param provider 服务商
+     * @return 额度状态
+     */
+    public WatermarkQuotaStatus getQuotaStatus(String provider) {
+        Integer quota = freeQuotaOf(provider);
+        boolean daily = "day".equalsIgnoreCase(quotaPeriodOf(provider));
+        int used = daily ? quotaLedger.usedToday(provider) : quotaLedger.usedThisMonth(provider);
+
+        LocalDateTime now = quotaLedger.now();
+        LocalDateTime windowStart = daily ? now.toLocalDate().atStartOfDay()
+                : now.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        LocalDateTime windowEnd = daily ? windowStart.plusDays(1) : windowStart.plusMonths(1);
+
+        WatermarkQuotaStatus.WatermarkQuotaStatusBuilder builder = WatermarkQuotaStatus.builder()
+                .provider(provider)
+                .available(getAdapter(provider) != null)
+                .period(daily ? "day" : "month")
+                .quota(quota != null ? quota : 0)
+                .used(used)
+                .aheadOfPace(false)
+                .resetAt(windowEnd.toString());
+        if (quota == null || quota <= 0) {
+            return builder.build();
+        }
+
+        double elapsed = (double) Duration.between(windowStart, now).toMillis()
+                / Duration.between(windowStart, windowEnd).toMillis();
+        double slack = config.getQuotaPaceSlack() != null ? config.getQuotaPaceSlack() : 0.1;
+        int paceLimit = (int) Math.ceil(quota * Math.min(1.0, elapsed + slack));
+        return builder
+                .remaining(Math.max(0, quota - used))
+                .paceLimit(paceLimit)
+                .aheadOfPace(used >= paceLimit)
+                .build();
+    }
+
+    /**
+     * 获取所有已配置服务商的额度状态
+     */
+    public List<WatermarkQuotaStatus> getAllQuotaStatus() {
+        List<WatermarkQuotaStatus> statuses = new ArrayList<>();
+        for (String provider : QUOTA_PROVIDERS) {
+            statuses.add(getQuotaStatus(provider));
+        }
+        return statuses;
+    }
+
+    /**
+     * 任务开始前检查额度是否足够处理全部图片
+     *
+     * @param provider   指定的服务商（可选）
+     * @param imageCount 待处理图片数
+     * @return 额度不足时返回提示，否则返回 null
+     */
+    public String checkQuota(String provider, int imageCount) {
+        String actualProvider = provider != null ? provider : config.getDefaultProvider();
+        if ("disabled".equals(actualProvider)) {
+            return null;
+        }
+        List<String> providers = AUTO_PROVIDER.equals(actualProvider)
+                ? availableProviders() : Collections.singletonList(actualProvider);
+        long remaining = 0;
+        for (String candidate : providers) {
+            Integer candidateRemaining = getQuotaStatus(candidate).getRemaining();
+            if (candidateRemaining == null) {
+                return null;
+            }
+            remaining += candidateRemaining;
+        }
+        if (remaining >= imageCount) {
+            return null;
+        }
+        return String.format("服务商 %s 剩余额度 %d，少于待处理图片数 %d", actualProvider, remaining, imageCount);
+    }
+
+    private Integer freeQuotaOf(String provider) {
+        switch (provider) {
+            case "aliyun":
+                return config.getAliyun().getFreeQuota();
+            case "tencent":
+                return config.getTencent().getFreeQuota();
+            case "baidu":
+                return config.getBaidu().getFreeQuota();
+            default:
+                return null;
+        }
+    }
+
+    private String quotaPeriodOf(String provider) {
+        switch (provider) {
+            case "aliyun":
+                return config.getAliyun().getQuotaPeriod();
+            case "tencent":
+                return config.getTencent().getQuotaPeriod();
+            case "baidu":
+                return config.getBaidu().getQuotaPeriod();
+            default:
+                return "month";
+        }
+    }
+
+    /**
+     * 汇总一次任务中各服务商的路由情况
+     *
+     * @param results 本次任务的去水印结果
+     * @return 服务商名称 -> 路由统计
+     */
+    public Map<String, DownloadResponse.ProviderRoutingStats> summarizeRouting(List<WatermarkRemovalResult> results) {
+        Map<String, DownloadResponse.ProviderRoutingStats> summary = new TreeMap<>();
+        Map<String, Long> successLatency = new HashMap<>();
+        for (WatermarkRemovalResult result : results) {
+            List<WatermarkRemovalResult.ProviderAttempt> attempts = result.getAttempts();
+            if (attempts == null) {
+                continue;
+            }
+            for (int i = 0; i < attempts.size(); i++) {
+                WatermarkRemovalResult.ProviderAttempt attempt = attempts.get(i);
+                DownloadResponse.ProviderRoutingStats stats = summary.computeIfAbsent(attempt.getProvider(),
+                        k -> new DownloadResponse.ProviderRoutingStats(0, 0, 0, 0, 0L, null, null));
+                stats.setRoutedCount(stats.getRoutedCount() + 1);
+                if (Boolean.TRUE.equals(attempt.getSuccess())) {
+                    stats.setSuccessCount(stats.getSuccessCount() + 1);
+                    successLatency.merge(attempt.getProvider(), attempt.getDuration(), Long::sum);
+                } else {
+                    stats.setFailCount(stats.getFailCount() + 1);
+                    if (i < attempts.size() - 1) {
+                        stats.setFailoverCount(stats.getFailoverCount() + 1);
+                    }
+                }
+            }
+        }
+        summary.forEach((provider, stats) -> {
+            if (stats.getSuccessCount() > 0) {
+                stats.setAvgLatency(successLatency.get(provider) / stats.getSuccessCount());
+            }
+            stats.setEwmaLatency(providerRouter.latencyOf(provider));
+            stats.setEwmaErrorRate(providerRouter.errorRateOf(provider));
+        });
+        return summary;
     }
 
     /**
@@ -176,26 +631,27 @@ public class WatermarkRemovalService {
     }
 
     /**
-     * 记录使用量
+     * 记录使用量（写入额度台账）
      */
     private void recordUsage(String provider) {
-        usageCount.computeIfAbsent(provider, k -> new AtomicInteger(0)).incrementAndGet();
+        quotaLedger.record(provider);
     }
 
     /**
-     * 获取使用量统计
+     * 获取使用量统计（当前额度周期内）
      */
     public int getUsageCount(String provider) {
-        return usageCount.getOrDefault(provider, new AtomicInteger(0)).get();
+        return getQuotaStatus(provider).getUsed();
     }
 
     /**
-     * 获取所有服务商的使用量统计
+     * 获取所有服务商的使用量统计（当前额度周期内）
      */
     public Map<String, Integer> getAllUsageCount() {
         Map<String, Integer> result = new ConcurrentHashMap<>();
-        usageCount.forEach((k, v) -> result.put(k, v.get()));
+        for (String provider : QUOTA_PROVIDERS) {
+            result.put(provider, getUsageCount(provider));
+        }
         return result;
     }
 }
-
@@ -0,0 +1,150 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 豆瓣详情页解析结果缓存（详情页URL -> 原图URL）
+ * 以追加写的 TSV 文件持久化，重启后重复任务无需再次访问详情页；
+ * 条目数有上限（超出时淘汰最早写入的），加载时和文件行数超过上限两倍时按内存内容重写文件
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class DoubanDetailUrlCache {
+
+    private static final String CACHE_FILE_NAME = "douban-detail-urls.tsv";
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    /**
+     * 按写入顺序排列，超出上限时淘汰最早的条目
+     */
+    private final Map<String, String> cache = new LinkedHashMap<String, String>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private int maxEntries = 50000;
+
+    private Path cacheFile;
+
+    /**
+     * 缓存文件当前行数
+     */
+    private int fileLines;
+
+    @PostConstruct
+    public void init() {
+        if (downloadConfig.getDetailCacheMaxEntries() != null && downloadConfig.getDetailCacheMaxEntries() > 0) {
+            maxEntries = downloadConfig.getDetailCacheMaxEntries();
+        }
+        cacheFile = Paths.get(downloadConfig.getCacheDir(), CACHE_FILE_NAME);
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(cacheFile, StandardCharsets.UTF_8);
+            synchronized (this) {
+                for (String line : lines) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0 && tab < line.length() - 1) {
+                        String detailUrl = line.substring(0, tab);
+                        // 重复的详情页以最后一次写入为准，并移到最新位置
+                        cache.remove(detailUrl);
+                        cache.put(detailUrl, line.substring(tab + 1));
+                    }
+                }
+                fileLines = lines.size();
+                if (fileLines > cache.size()) {
+                    rewrite();
+                }
+            }
+            log.info("已加载豆瓣详情页缓存 {} 条: {}", cache.size(), cacheFile);
+        } catch (IOException e) {
+            log.warn("读取豆瓣详情页缓存失败: {}, 错误: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param detailUrl 详情页URL
+     * @return 原图URL，未命中返回null
+     */
+    public synchronized String get(String detailUrl) {
+        return cache.get(detailUrl);
+    }
+
+    /**
+     * 写入缓存（同时追加到磁盘）
+     *
+     * @param detailUrl 详情页URL
+     * @param imageUrl  解析出的原图URL
+     */
+    public synchronized void put(String detailUrl, String imageUrl) {
+        if (imageUrl == null || imageUrl.equals(cache.get(detailUrl))) {
+            return;
+        }
+        cache.remove(detailUrl);
+        cache.put(detailUrl, imageUrl);
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            if (fileLines >= 2 * maxEntries) {
+                rewrite();
+                return;
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(detailUrl + "\t" + imageUrl);
+                writer.newLine();
+            }
+            fileLines++;
+        } catch (IOException e) {
+            log.warn("写入豆瓣详情页缓存失败: {}, 错误: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存条目数
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * 按内存中的条目重写缓存文件（去掉重复和已淘汰的行），写入临时文件后替换
+     */
+    private void rewrite() throws IOException {
+        Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : cache.entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        fileLines = cache.size();
+    }
+}
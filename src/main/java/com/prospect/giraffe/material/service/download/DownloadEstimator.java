@@ -0,0 +1,155 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import com.prospect.giraffe.material.dto.DownloadResponse;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下载量预估
+ * 对提取到的图片（超过采样数时均匀抽样）发送限速的 HEAD 请求汇总 Content-Length，
+ * 再按各主机近期吞吐量推算下载耗时，不下载任何图片
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class DownloadEstimator {
+
+    /**
+     * 没有吞吐量记录时假定的速度（字节/秒）
+     */
+    private static final double DEFAULT_BYTES_PER_SECOND = 1024 * 1024;
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    @Resource
+    private OkHttpClient sharedHttpClient;
+
+    @Resource
+    private HostRateLimiter hostRateLimiter;
+
+    @Resource
+    private HostThroughputTracker hostThroughputTracker;
+
+    private OkHttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        int connectTimeout = downloadConfig.getConnectTimeout() != null ? downloadConfig.getConnectTimeout() : 10000;
+        httpClient = sharedHttpClient.newBuilder()
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .followRedirects(true)
+                .build();
+    }
+
+    /**
+     * 预估下载量
+     *
+     * @param imageUrls  图片URL
+     * @param refererUrl 来源页面
+     * @return 预估结果
+     */
+    public DownloadResponse.DownloadEstimate estimate(Set<String> imageUrls, String refererUrl) {
+        List<String> urls = new ArrayList<>(imageUrls);
+        int sampleSize = downloadConfig.getEstimateSampleSize() != null && downloadConfig.getEstimateSampleSize() > 0
+                ? Math.min(downloadConfig.getEstimateSampleSize(), urls.size()) : urls.size();
+
+        long measuredBytes = 0;
+        int probedCount = 0;
+        int unknownCount = 0;
+        // 按主机累计：已探测大小的字节数和对应的图片数
+        Map<String, long[]> bytesByHost = new HashMap<>();
+
+        for (int i = 0; i < sampleSize; i++) {
+            // 均匀抽样
+            String url = urls.get((int) ((long) i * urls.size() / sampleSize));
+            long contentLength;
+            try {
+                hostRateLimiter.acquire(url);
+                contentLength = probeContentLength(url, refererUrl);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            probedCount++;
+            if (contentLength < 0) {
+                unknownCount++;
+                continue;
+            }
+            measuredBytes += contentLength;
+            long[] hostTotals = bytesByHost.computeIfAbsent(HostRateLimiter.hostOf(url), k -> new long[2]);
+            hostTotals[0] += contentLength;
+            hostTotals[1]++;
+        }
+
+        int sizedCount = probedCount - unknownCount;
+        double avgBytes = sizedCount > 0 ? measuredBytes / (double) sizedCount : 0;
+        long totalBytes = Math.round(avgBytes * urls.size());
+
+        // 传输耗时：各主机预计字节数 / 该主机近期吞吐量；再加上每张图片之间的请求间隔
+        double transferSeconds = 0;
+        double defaultSpeed = hostThroughputTracker.averageBytesPerSecond() > 0
+                ? hostThroughputTracker.averageBytesPerSecond() : DEFAULT_BYTES_PER_SECOND;
+        for (Map.Entry<String, long[]> entry : bytesByHost.entrySet()) {
+            double hostBytes = entry.getValue()[0] * (double) urls.size() / sizedCount;
+            double speed = hostThroughputTracker.bytesPerSecond(entry.getKey());
+            transferSeconds += hostBytes / (speed > 0 ? speed : defaultSpeed);
+        }
+        long interval = downloadConfig.getRequestInterval() != null ? downloadConfig.getRequestInterval() : 0;
+        long projectedDuration = Math.round(transferSeconds * 1000) + interval * urls.size();
+
+        log.info("预估完成: 图片={}, 探测={}, 未知大小={}, 预计总大小={} 字节, 预计耗时={}ms",
+                urls.size(), probedCount, unknownCount, totalBytes, projectedDuration);
+
+        return DownloadResponse.DownloadEstimate.builder()
+                .imageCount(urls.size())
+                .probedCount(probedCount)
+                .unknownSizeCount(unknownCount)
+                .measuredBytes(measuredBytes)
+                .totalBytes(totalBytes)
+                .projectedDuration(projectedDuration)
+                .build();
+    }
+
+    /**
+     * HEAD 请求获取 Content-Length
+     *
+     * @return 字节数，未知或失败时返回-1
+     */
+    private long probeContentLength(String url, String refererUrl) {
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .head()
+                .header("User-Agent", downloadConfig.getUserAgent())
+                .header("Accept", "image/webp,image/apng,image/*,*/*;q=0.8");
+        if (refererUrl != null && !refererUrl.isEmpty()) {
+            builder.header("Referer", refererUrl);
+        }
+        try (Response response = httpClient.newCall(builder.build()).execute()) {
+            if (!response.isSuccessful()) {
+                log.debug("HEAD 探测失败: {}, HTTP {}", url, response.code());
+                return -1;
+            }
+            String contentLength = response.header("Content-Length");
+            return contentLength != null ? Long.parseLong(contentLength.trim()) : -1;
+        } catch (Exception e) {
+            log.debug("HEAD 探测异常: {}, 错误: {}", url, e.getMessage());
+            return -1;
+        }
+    }
+}
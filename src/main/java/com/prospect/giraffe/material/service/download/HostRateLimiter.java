@@ -0,0 +1,90 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按主机限速
+ * 同一主机的请求之间至少间隔 requestInterval 毫秒，多个线程共享同一节奏
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class HostRateLimiter {
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    /**
+     * 每个主机下一个可用的请求时间点
+     */
+    private final Map<String, AtomicLong> nextSlots = new ConcurrentHashMap<>();
+
+    /**
+     * 等待直到可以向该URL所在主机发起请求
+     *
+     * @param url 请求URL
+     * @throws InterruptedException 等待被中断
+     */
+    public void acquire(String url) throws InterruptedException {
+        acquire(url, Long.MAX_VALUE);
+    }
+
+    /**
+     * 在截止时间之前等待请求许可
+     *
+     * @param url      请求URL
+     * @param deadline 截止时间（毫秒时间戳）
+     * @return 是否在截止时间前获得许可
+     * @throws InterruptedException 等待被中断
+     */
+    public boolean acquire(String url, long deadline) throws InterruptedException {
+        long interval = downloadConfig.getRequestInterval() != null ? downloadConfig.getRequestInterval() : 0;
+        if (interval <= 0) {
+            return true;
+        }
+
+        AtomicLong nextSlot = nextSlots.computeIfAbsent(hostOf(url), k -> new AtomicLong(0));
+        long slot;
+        while (true) {
+            long now = System.currentTimeMillis();
+            long current = nextSlot.get();
+            slot = Math.max(now, current);
+            if (slot > deadline) {
+                return false;
+            }
+            if (nextSlot.compareAndSet(current, slot + interval)) {
+                break;
+            }
+        }
+
+        long waitTime = slot - System.currentTimeMillis();
+        if (waitTime > 0) {
+            Thread.sleep(waitTime);
+        }
+        return true;
+    }
+
+    /**
+     * 提取主机名
+     *
+     * @param url URL
+     * @return 主机名，解析失败时返回原URL
+     */
+    public static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host.toLowerCase() : url;
+        } catch (Exception e) {
+            return url;
+        }
+    }
+}
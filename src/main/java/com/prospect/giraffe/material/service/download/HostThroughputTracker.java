@@ -0,0 +1,77 @@
+package com.prospect.giraffe.material.service.download;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按主机统计近期下载吞吐量（字节/秒，指数加权平均）
+ *
+ * @author giraffe
+ */
+@Component
+public class HostThroughputTracker {
+
+    /**
+     * 新样本权重
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * 忽略耗时过短的样本（计时误差过大）
+     */
+    private static final long MIN_SAMPLE_MILLIS = 20;
+
+    private final Map<String, double[]> throughputs = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次下载
+     *
+     * @param url      图片URL
+     * @param bytes    传输字节数
+     * @param millis   耗时（毫秒）
+     */
+    public void record(String url, long bytes, long millis) {
+        if (bytes <= 0 || millis < MIN_SAMPLE_MILLIS) {
+            return;
+        }
+        double sample = bytes * 1000.0 / millis;
+        double[] value = throughputs.computeIfAbsent(HostRateLimiter.hostOf(url), k -> new double[]{sample});
+        synchronized (value) {
+            value[0] = ALPHA * sample + (1 - ALPHA) * value[0];
+        }
+    }
+
+    /**
+     * 主机的近期吞吐量
+     *
+     * @param host 主机名
+     * @return 字节/秒，没有记录时返回-1
+     */
+    public double bytesPerSecond(String host) {
+        double[] value = throughputs.get(host);
+        if (value == null) {
+            return -1;
+        }
+        synchronized (value) {
+            return value[0];
+        }
+    }
+
+    /**
+     * 所有主机的平均吞吐量
+     *
+     * @return 字节/秒，没有记录时返回-1
+     */
+    public double averageBytesPerSecond() {
+        return throughputs.values().stream()
+                .mapToDouble(value -> {
+                    synchronized (value) {
+                        return value[0];
+                    }
+                })
+                .average()
+                .orElse(-1);
+    }
+}
@@ -0,0 +1,17 @@
+package com.prospect.giraffe.material.service.download;
+
+import java.io.IOException;
+
+/**
+ * 图片被预过滤跳过（尺寸过小等），不计为下载失败
+ *
+ * @author giraffe
+ */
+public class ImageSkippedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ImageSkippedException(String message) {
+        super(message);
+    }
+}
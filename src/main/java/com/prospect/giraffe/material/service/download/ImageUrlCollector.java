@@ -0,0 +1,71 @@
+package com.prospect.giraffe.material.service.download;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按图片身份去重的URL集合
+ * 同一张图片的多个写法只保留清晰度最高的一个，保持首次出现的顺序
+ * 非线程安全，每个任务使用独立实例
+ *
+ * @author giraffe
+ */
+public class ImageUrlCollector {
+
+    private final Map<String, String> urlsByIdentity = new LinkedHashMap<>();
+
+    /**
+     * 添加图片URL
+     *
+     * @param url 图片URL
+     * @return 是否为新图片（替换为更清晰的写法不算新图片）
+     */
+    public boolean add(String url) {
+        String identity = PhotoIdentity.of(url);
+        String existing = urlsByIdentity.get(identity);
+        if (existing == null) {
+            urlsByIdentity.put(identity, url);
+            return true;
+        }
+        if (PhotoIdentity.rank(url) > PhotoIdentity.rank(existing)) {
+            urlsByIdentity.put(identity, url);
+        }
+        return false;
+    }
+
+    /**
+     * 批量添加
+     *
+     * @param urls 图片URL
+     * @return 新图片数
+     */
+    public int addAll(Collection<String> urls) {
+        int added = 0;
+        for (String url : urls) {
+            if (add(url)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    public int size() {
+        return urlsByIdentity.size();
+    }
+
+    public boolean isEmpty() {
+        return urlsByIdentity.isEmpty();
+    }
+
+    /**
+     * 去重后的URL（每张图片的最佳写法）
+     *
+     * @return URL集合
+     */
+    public Set<String> toSet() {
+        return new LinkedHashSet<>(urlsByIdentity.values());
+    }
+}
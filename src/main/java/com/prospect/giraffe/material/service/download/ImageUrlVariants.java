@@ -0,0 +1,88 @@
+package com.prospect.giraffe.material.service.download;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 图片URL尺寸阶梯
+ * 对路径中带尺寸标识的URL（豆瓣 /raw/、/l/、/m/，通用 /large/、/medium/ 等），
+ * 生成从当前尺寸开始逐级降低的候选URL，用于改写后的地址 404 时回退
+ *
+ * @author giraffe
+ */
+public final class ImageUrlVariants {
+
+    private ImageUrlVariants() {
+    }
+
+    /**
+     * 候选URL
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Variant {
+        /**
+         * 改写规则名称（用于统计），如 douban-raw、douban-l
+         */
+        private String rule;
+
+        /**
+         * 候选URL
+         */
+        private String url;
+    }
+
+    /**
+     * 尺寸阶梯定义
+     */
+    private static class Ladder {
+        private final String prefix;
+        private final Pattern pattern;
+        private final List<String> sizes;
+
+        Ladder(String prefix, String regex, String... sizes) {
+            this.prefix = prefix;
+            this.pattern = Pattern.compile(regex);
+            this.sizes = Arrays.asList(sizes);
+        }
+    }
+
+    private static final List<Ladder> LADDERS = Arrays.asList(
+            // 豆瓣：https://img9.doubanio.com/view/photo/raw/public/p2895695254.jpg
+            new Ladder("douban", "^(https?://[^/]*douban(?:io)?\\.com/(?:view/)?photo/)(raw|l|m)(/.*)$", "raw", "l", "m"),
+            // 通用路径：/large/ -> /medium/
+            new Ladder("path", "^(https?://[^?]*/)(large|medium)(/.*)$", "large", "medium"),
+            // 通用后缀：_large. -> _medium.
+            new Ladder("suffix", "^(https?://[^?]*_)(large|medium)(\\..*)$", "large", "medium")
+    );
+
+    /**
+     * 生成候选URL列表（第一个为原URL）
+     *
+     * @param url 图片URL
+     * @return 候选列表；不属于任何尺寸阶梯时只包含原URL，规则名为null
+     */
+    public static List<Variant> of(String url) {
+        for (Ladder ladder : LADDERS) {
+            Matcher matcher = ladder.pattern.matcher(url);
+            if (!matcher.matches()) {
+                continue;
+            }
+            List<Variant> variants = new ArrayList<>();
+            int current = ladder.sizes.indexOf(matcher.group(2));
+            for (int i = current; i < ladder.sizes.size(); i++) {
+                String size = ladder.sizes.get(i);
+                variants.add(new Variant(ladder.prefix + "-" + size, matcher.group(1) + size + matcher.group(3)));
+            }
+            return variants;
+        }
+        return Collections.singletonList(new Variant(null, url));
+    }
+}
@@ -0,0 +1,208 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTML页面抓取
+ * 基于共享连接池复用 keep-alive 连接，透明解压 gzip，限制响应体大小，
+ * 响应流直接交给解析器；近期抓取过且带 ETag/Last-Modified 的页面发送条件请求，304 时复用本地内容
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class PageFetcher {
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    @Resource
+    private OkHttpClient sharedHttpClient;
+
+    private OkHttpClient httpClient;
+
+    /**
+     * 近期页面（用于条件请求），按访问顺序淘汰
+     */
+    private final LinkedHashMap<String, CachedPage> recentPages = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long recentPagesBytes = 0;
+
+    @PostConstruct
+    public void init() {
+        int connectTimeout = downloadConfig.getConnectTimeout() != null ? downloadConfig.getConnectTimeout() : 10000;
+        httpClient = sharedHttpClient.newBuilder()
+                .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(downloadConfig.getTimeout(), TimeUnit.MILLISECONDS)
+                .followRedirects(true)
+                .build();
+    }
+
+    /**
+     * 近期页面缓存项
+     */
+    @AllArgsConstructor
+    private static class CachedPage {
+        private final String etag;
+        private final String lastModified;
+        private final String charset;
+        private final byte[] body;
+        private final long fetchedAt;
+    }
+
+    /**
+     * 抓取并解析页面
+     *
+     * @param pageUrl 页面URL
+     * @return 文档对象
+     * @throws IOException IO异常
+     */
+    public Document fetch(String pageUrl) throws IOException {
+        return fetch(pageUrl, null);
+    }
+
+    /**
+     * 抓取并解析页面
+     *
+     * @param pageUrl    页面URL
+     * @param refererUrl Referer（可选）
+     * @return 文档对象
+     * @throws IOException IO异常
+     */
+    public Document fetch(String pageUrl, String refererUrl) throws IOException {
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(pageUrl)
+                .get()
+                .header("User-Agent", downloadConfig.getUserAgent())
+                .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+                .header("Accept-Language", "zh-CN,zh;q=0.9,en;q=0.8");
+        if (refererUrl != null && !refererUrl.isEmpty()) {
+            requestBuilder.header("Referer", refererUrl);
+        }
+
+        CachedPage cached = getRecentPage(pageUrl);
+        if (cached != null) {
+            if (cached.etag != null) {
+                requestBuilder.header("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                requestBuilder.header("If-Modified-Since", cached.lastModified);
+            }
+        }
+
+        try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
+            if (response.code() == 304 && cached != null) {
+                log.debug("页面未修改，复用本地内容: {}", pageUrl);
+                return Jsoup.parse(new ByteArrayInputStream(cached.body), cached.charset, pageUrl);
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("HTTP响应码: " + response.code() + ", URL: " + pageUrl);
+            }
+
+            ResponseBody body = response.body();
+            long maxBytes = maxPageBytes();
+            if (body.contentLength() > maxBytes) {
+                throw new IOException("页面过大: " + body.contentLength() + " 字节，上限 " + maxBytes + " 字节");
+            }
+
+            MediaType contentType = body.contentType();
+            Charset charset = contentType != null ? contentType.charset() : null;
+            String charsetName = charset != null ? charset.name() : null;
+            String baseUri = response.request().url().toString();
+            String etag = response.header("ETag");
+            String lastModified = response.header("Last-Modified");
+
+            InputStream in = new SizeLimitedInputStream(body.byteStream(), maxBytes);
+            if (etag == null && lastModified == null) {
+                return Jsoup.parse(in, charsetName, baseUri);
+            }
+
+            // 边解析边保留一份原始内容，供后续条件请求命中 304 时使用
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            Document doc = Jsoup.parse(new TeeInputStream(in, copy), charsetName, baseUri);
+            putRecentPage(pageUrl, new CachedPage(etag, lastModified, charsetName, copy.toByteArray(),
+                    System.currentTimeMillis()));
+            return doc;
+        }
+    }
+
+    private long maxPageBytes() {
+        return downloadConfig.getMaxPageBytes() != null ? downloadConfig.getMaxPageBytes() : 5L * 1024 * 1024;
+    }
+
+    private synchronized CachedPage getRecentPage(String pageUrl) {
+        CachedPage cached = recentPages.get(pageUrl);
+        long ttl = downloadConfig.getRecentPageTtl() != null ? downloadConfig.getRecentPageTtl() : 600000L;
+        if (cached != null && System.currentTimeMillis() - cached.fetchedAt > ttl) {
+            recentPages.remove(pageUrl);
+            recentPagesBytes -= cached.body.length;
+            return null;
+        }
+        return cached;
+    }
+
+    private synchronized void putRecentPage(String pageUrl, CachedPage page) {
+        long maxBytes = downloadConfig.getRecentPageMaxBytes() != null ? downloadConfig.getRecentPageMaxBytes() : 16L * 1024 * 1024;
+        if (page.body.length > maxBytes) {
+            return;
+        }
+        CachedPage previous = recentPages.put(pageUrl, page);
+        if (previous != null) {
+            recentPagesBytes -= previous.body.length;
+        }
+        recentPagesBytes += page.body.length;
+
+        Iterator<Map.Entry<String, CachedPage>> iterator = recentPages.entrySet().iterator();
+        while (recentPagesBytes > maxBytes && iterator.hasNext()) {
+            recentPagesBytes -= iterator.next().getValue().body.length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 超过上限即中止读取的输入流
+     */
+    private static class SizeLimitedInputStream extends ProxyInputStream {
+        private final long maxBytes;
+        private long count = 0;
+
+        SizeLimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        protected void afterRead(int n) throws IOException {
+            if (n > 0) {
+                count += n;
+                if (count > maxBytes) {
+                    throw new IOException("页面过大，超过上限 " + maxBytes + " 字节");
+                }
+            }
+        }
+    }
+}
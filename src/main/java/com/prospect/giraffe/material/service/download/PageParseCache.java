@@ -0,0 +1,168 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import com.prospect.giraffe.material.dto.PageCacheStats;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 页面解析结果缓存
+ * 容量有限、带过期时间、按最近访问淘汰；同一个key的并发请求只解析一次，其余请求等待同一结果。
+ * 不完整（有分页抓取失败）或没有图片的结果只返回给本次及并发等待的请求，不进入缓存，下次请求重新解析
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class PageParseCache {
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, CompletableFuture<PageParseResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+
+    /**
+     * 解析函数
+     */
+    @FunctionalInterface
+    public interface Loader {
+        PageParseResult load() throws IOException;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final PageParseResult result;
+        private final long expireAt;
+    }
+
+    /**
+     * 获取缓存结果，未命中时解析（同一key同时只解析一次）
+     *
+     * @param key    缓存key
+     * @param loader 解析函数
+     * @return 解析结果
+     * @throws IOException 解析失败
+     */
+    public PageParseResult getOrLoad(String key, Loader loader) throws IOException {
+        PageParseResult cached = getIfPresent(key);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            log.info("命中页面解析缓存: {}", key);
+            return cached;
+        }
+
+        CompletableFuture<PageParseResult> future = new CompletableFuture<>();
+        CompletableFuture<PageParseResult> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            log.info("相同页面正在解析，等待其结果: {}", key);
+            return await(existing);
+        }
+
+        try {
+            // 抢到解析权前可能已有其他请求完成解析
+            PageParseResult result = getIfPresent(key);
+            if (result != null) {
+                hitCount.incrementAndGet();
+                future.complete(result);
+                return result;
+            }
+
+            missCount.incrementAndGet();
+            result = loader.load();
+            if (result.isComplete() && !result.getImageUrls().isEmpty()) {
+                put(key, result);
+            } else {
+                log.info("页面解析结果不完整或没有图片，不缓存: {}", key);
+            }
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            // 包括 Error（如 OutOfMemoryError），否则等待同一页面的请求会一直阻塞
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public PageCacheStats getStats() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        long coalesced = coalescedCount.get();
+        long requests = hits + misses + coalesced;
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return PageCacheStats.builder()
+                .size(size)
+                .hitCount(hits)
+                .missCount(misses)
+                .coalescedCount(coalesced)
+                .evictionCount(evictionCount.get())
+                .hitRate(requests > 0 ? (hits + coalesced) / (double) requests : 0.0)
+                .build();
+    }
+
+    private synchronized PageParseResult getIfPresent(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() > entry.expireAt) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+
+    private synchronized void put(String key, PageParseResult result) {
+        long ttl = downloadConfig.getPageCacheTtl() != null ? downloadConfig.getPageCacheTtl() : 300000L;
+        int maxEntries = downloadConfig.getPageCacheMaxEntries() != null ? downloadConfig.getPageCacheMaxEntries() : 256;
+        if (ttl <= 0 || maxEntries <= 0) {
+            return;
+        }
+        entries.put(key, new Entry(result, System.currentTimeMillis() + ttl));
+        while (entries.size() > maxEntries) {
+            String eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private PageParseResult await(CompletableFuture<PageParseResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待页面解析被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("页面解析失败: " + cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.prospect.giraffe.material.service.download;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 页面解析结果
+ *
+ * @author giraffe
+ */
+@Data
+@AllArgsConstructor
+public class PageParseResult {
+
+    /**
+     * 提取到的图片URL（已去重）
+     */
+    private Set<String> imageUrls;
+
+    /**
+     * 分页计划：实际抓取的页面URL（按抓取顺序）
+     */
+    private List<String> crawledPages;
+
+    /**
+     * 是否完整抓取（没有分页抓取失败或被中断），不完整的结果不进入缓存
+     */
+    private boolean complete;
+}
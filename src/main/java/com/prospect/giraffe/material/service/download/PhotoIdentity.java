@@ -0,0 +1,179 @@
+package com.prospect.giraffe.material.service.download;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 图片身份标识
+ * 把同一张图片的不同URL写法（镜像主机、尺寸参数、/photo/l/ 与 /view/photo/raw/ 等）映射为同一个标识，
+ * 并给出各写法的清晰度排序，用于去重时保留最高清的版本。
+ * 查询参数中只去掉已知的尺寸 / 质量参数，其余参数（如 ?id=1）保留在标识中；
+ * 路径中的尺寸段和尺寸后缀只对URL结构已知的主机族去掉
+ *
+ * @author giraffe
+ */
+public final class PhotoIdentity {
+
+    private PhotoIdentity() {
+    }
+
+    /**
+     * 豆瓣图片ID，如 /view/photo/raw/public/p2895695254.jpg 中的 p2895695254
+     */
+    private static final Pattern DOUBAN_PHOTO_ID = Pattern.compile("/p(\\d+)\\.[a-zA-Z]+$");
+
+    /**
+     * 镜像主机编号前缀，如 img1.、img9.、cdn2.
+     */
+    private static final Pattern MIRROR_LABEL = Pattern.compile("^[a-z]+\\d+$");
+
+    /**
+     * 路径尺寸段 / 尺寸后缀含义已知的主机族
+     */
+    private static final List<String> SIZED_LAYOUT_HOSTS = Arrays.asList("doubanio.com", "douban.com");
+
+    /**
+     * 只影响尺寸或质量、不影响图片内容的查询参数
+     */
+    private static final Set<String> SIZE_LIMIT_PARAMS = new HashSet<>(
+            Arrays.asList("w", "h", "width", "height", "size", "quality"));
+
+    private static final Pattern SIZE_SEGMENT = Pattern.compile(
+            "/(raw|l|m|s|large|medium|small|thumb|photo|[lms]_ratio_poster)/");
+
+    private static final Pattern SIZE_SUFFIX = Pattern.compile("_(large|medium|small|thumb|[lms])(?=\\.)");
+
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-zA-Z0-9]+$");
+
+    private static final Pattern SIZE_LIMIT_QUERY = Pattern.compile("(^|&)(w|h|width|height|size|quality)=");
+
+    /**
+     * 计算图片身份标识
+     *
+     * @param url 图片URL
+     * @return 身份标识（主机族 + 图片ID，或主机族 + 规范化路径 + 非尺寸查询参数）
+     */
+    public static String of(String url) {
+        URI uri;
+        try {
+            uri = URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+        if (uri.getHost() == null || uri.getRawPath() == null) {
+            return url;
+        }
+
+        String hostFamily = hostFamily(uri.getHost());
+        String path = uri.getRawPath();
+
+        boolean sizedLayout = isSizedLayout(hostFamily);
+
+        if (sizedLayout) {
+            Matcher matcher = DOUBAN_PHOTO_ID.matcher(path);
+            if (matcher.find()) {
+                return hostFamily + "#p" + matcher.group(1);
+            }
+        }
+
+        String normalizedPath = path;
+        if (sizedLayout) {
+            Matcher segment = SIZE_SEGMENT.matcher(normalizedPath);
+            while (segment.find()) {
+                normalizedPath = segment.replaceFirst("/");
+                segment = SIZE_SEGMENT.matcher(normalizedPath);
+            }
+            normalizedPath = SIZE_SUFFIX.matcher(normalizedPath).replaceAll("");
+        }
+        normalizedPath = EXTENSION.matcher(normalizedPath).replaceFirst("");
+
+        String identity = hostFamily + normalizedPath.toLowerCase(Locale.ROOT);
+        String query = contentQuery(uri.getRawQuery());
+        return query.isEmpty() ? identity : identity + "?" + query;
+    }
+
+    /**
+     * 清晰度排序分值，越大越清晰
+     *
+     * @param url 图片URL
+     * @return 分值
+     */
+    public static int rank(String url) {
+        String lowerUrl = url.toLowerCase(Locale.ROOT);
+        int queryIndex = lowerUrl.indexOf('?');
+        String path = queryIndex >= 0 ? lowerUrl.substring(0, queryIndex) : lowerUrl;
+
+        int rank;
+        if (path.contains("/raw/")) {
+            rank = 40;
+        } else if (path.contains("/l/") || path.contains("/large/") || path.contains("_large.")
+                || path.contains("l_ratio_poster")) {
+            rank = 30;
+        } else if (path.contains("/m/") || path.contains("/medium/") || path.contains("_medium.")
+                || path.contains("m_ratio_poster")) {
+            rank = 20;
+        } else if (path.contains("/s/") || path.contains("/small/") || path.contains("/thumb/")
+                || path.contains("_small.") || path.contains("_thumb.") || path.contains("s_ratio_poster")) {
+            rank = 10;
+        } else {
+            rank = 25;
+        }
+
+        // 带尺寸限制参数的版本次于不带参数的版本
+        if (queryIndex >= 0 && SIZE_LIMIT_QUERY.matcher(lowerUrl.substring(queryIndex + 1)).find()) {
+            rank -= 5;
+        }
+        return rank;
+    }
+
+    private static boolean isSizedLayout(String hostFamily) {
+        for (String host : SIZED_LAYOUT_HOSTS) {
+            if (hostFamily.equals(host) || hostFamily.endsWith("." + host)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 去掉尺寸 / 质量参数后的查询串，剩余参数按名称排序，使参数顺序不同的写法得到同一个标识
+     */
+    private static String contentQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> params = new ArrayList<>();
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int eq = param.indexOf('=');
+            String name = (eq >= 0 ? param.substring(0, eq) : param).toLowerCase(Locale.ROOT);
+            if (!SIZE_LIMIT_PARAMS.contains(name)) {
+                params.add(param);
+            }
+        }
+        Collections.sort(params);
+        return String.join("&", params);
+    }
+
+    /**
+     * 去掉镜像编号前缀，如 img9.doubanio.com -> doubanio.com
+     */
+    private static String hostFamily(String host) {
+        String lowerHost = host.toLowerCase(Locale.ROOT);
+        String[] labels = lowerHost.split("\\.");
+        if (labels.length > 2 && MIRROR_LABEL.matcher(labels[0]).matches()) {
+            return lowerHost.substring(labels[0].length() + 1);
+        }
+        return lowerHost;
+    }
+}
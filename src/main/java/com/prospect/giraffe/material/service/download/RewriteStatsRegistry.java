@@ -0,0 +1,190 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * URL改写成功率统计
+ * 按 主机 + 改写规则 记录升级后的地址成功 / 404 的次数，
+ * 成功率低于阈值的规则会被排到下一级候选之后；统计持久化到本地文件，重启后继续生效
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class RewriteStatsRegistry {
+
+    private static final String STATS_FILE_NAME = "rewrite-stats.tsv";
+
+    /**
+     * 每累计多少次记录落盘一次
+     */
+    private static final int FLUSH_EVERY = 20;
+
+    /**
+     * 样本数超过该值时减半，使统计能跟上站点的变化
+     */
+    private static final int DECAY_THRESHOLD = 200;
+
+    /**
+     * 降级规则每隔多少次仍按原顺序试探一次，以便恢复
+     */
+    private static final int PROBE_EVERY = 20;
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    private final Map<String, long[]> stats = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pendingWrites = new AtomicInteger(0);
+
+    private final AtomicInteger orderCounter = new AtomicInteger(0);
+
+    private Path statsFile;
+
+    @PostConstruct
+    public void init() {
+        statsFile = Paths.get(downloadConfig.getCacheDir(), STATS_FILE_NAME);
+        if (!Files.exists(statsFile)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(statsFile, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t");
+                if (parts.length == 4) {
+                    stats.put(key(parts[0], parts[1]),
+                            new long[]{Long.parseLong(parts[2]), Long.parseLong(parts[3])});
+                }
+            }
+            log.info("已加载URL改写统计 {} 条: {}", stats.size(), statsFile);
+        } catch (Exception e) {
+            log.warn("读取URL改写统计失败: {}, 错误: {}", statsFile, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    /**
+     * 记录一次改写结果
+     *
+     * @param url     实际请求的URL
+     * @param rule    改写规则
+     * @param success 是否成功（false 表示 404）
+     */
+    public void record(String url, String rule, boolean success) {
+        if (rule == null) {
+            return;
+        }
+        long[] counts = stats.computeIfAbsent(key(HostRateLimiter.hostOf(url), rule), k -> new long[2]);
+        synchronized (counts) {
+            counts[success ? 0 : 1]++;
+            if (counts[0] + counts[1] > DECAY_THRESHOLD) {
+                counts[0] /= 2;
+                counts[1] /= 2;
+            }
+        }
+        if (pendingWrites.incrementAndGet() >= FLUSH_EVERY) {
+            flush();
+        }
+    }
+
+    /**
+     * 规则是否已降级（样本足够且成功率低于阈值）
+     *
+     * @param url  图片URL
+     * @param rule 改写规则
+     * @return 是否降级
+     */
+    public boolean isDegraded(String url, String rule) {
+        if (rule == null) {
+            return false;
+        }
+        long[] counts = stats.get(key(HostRateLimiter.hostOf(url), rule));
+        if (counts == null) {
+            return false;
+        }
+        long success;
+        long total;
+        synchronized (counts) {
+            success = counts[0];
+            total = counts[0] + counts[1];
+        }
+        int minSamples = downloadConfig.getRewriteMinSamples() != null ? downloadConfig.getRewriteMinSamples() : 10;
+        double minRate = downloadConfig.getRewriteMinSuccessRate() != null ? downloadConfig.getRewriteMinSuccessRate() : 0.5;
+        return total >= minSamples && success < total * minRate;
+    }
+
+    /**
+     * 按统计调整候选顺序：降级的规则排到下一个候选之后
+     *
+     * @param variants 按清晰度排列的候选
+     * @return 调整后的候选
+     */
+    public List<ImageUrlVariants.Variant> order(List<ImageUrlVariants.Variant> variants) {
+        if (variants.size() < 2) {
+            return variants;
+        }
+        List<ImageUrlVariants.Variant> ordered = new ArrayList<>(variants);
+        for (int i = 0; i < ordered.size() - 1; i++) {
+            ImageUrlVariants.Variant variant = ordered.get(i);
+            if (isDegraded(variant.getUrl(), variant.getRule())
+                    && orderCounter.incrementAndGet() % PROBE_EVERY != 0) {
+                ordered.set(i, ordered.get(i + 1));
+                ordered.set(i + 1, variant);
+                log.debug("改写规则 {} 成功率过低，优先尝试 {}", variant.getRule(), ordered.get(i).getRule());
+                break;
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * 统计落盘（先写临时文件再替换）
+     */
+    public synchronized void flush() {
+        pendingWrites.set(0);
+        if (stats.isEmpty() || statsFile == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(statsFile.getParent());
+            Path tempFile = statsFile.resolveSibling(STATS_FILE_NAME + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, long[]> entry : stats.entrySet()) {
+                    long[] counts = entry.getValue();
+                    synchronized (counts) {
+                        writer.write(entry.getKey() + "\t" + counts[0] + "\t" + counts[1]);
+                    }
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, statsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("保存URL改写统计失败: {}, 错误: {}", statsFile, e.getMessage());
+        }
+    }
+
+    private String key(String host, String rule) {
+        return host + "\t" + rule;
+    }
+}
@@ -0,0 +1,144 @@
+package com.prospect.giraffe.material.service.download;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * srcset 属性解析
+ * 按 HTML 规范切分候选项，支持宽度描述符（640w）和像素密度描述符（2x）
+ *
+ * @author giraffe
+ */
+public final class SrcsetParser {
+
+    private SrcsetParser() {
+    }
+
+    /**
+     * srcset 候选项
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Candidate {
+        /**
+         * 图片URL（可能是相对路径）
+         */
+        private String url;
+
+        /**
+         * 宽度描述符，未声明时为0
+         */
+        private int width;
+
+        /**
+         * 像素密度描述符，未声明时为1
+         */
+        private double density;
+    }
+
+    /**
+     * 解析 srcset
+     *
+     * @param srcset srcset 属性值
+     * @return 候选项列表
+     */
+    public static List<Candidate> parse(String srcset) {
+        List<Candidate> candidates = new ArrayList<>();
+        if (srcset == null || srcset.trim().isEmpty()) {
+            return candidates;
+        }
+
+        int pos = 0;
+        int length = srcset.length();
+        while (pos < length) {
+            // 跳过分隔的空白和逗号
+            while (pos < length && (Character.isWhitespace(srcset.charAt(pos)) || srcset.charAt(pos) == ',')) {
+                pos++;
+            }
+            if (pos >= length) {
+                break;
+            }
+
+            // URL：直到空白为止
+            int urlStart = pos;
+            while (pos < length && !Character.isWhitespace(srcset.charAt(pos))) {
+                pos++;
+            }
+            String url = srcset.substring(urlStart, pos);
+
+            // URL 以逗号结尾时表示没有描述符
+            String descriptor = "";
+            if (url.endsWith(",")) {
+                url = url.replaceAll(",+$", "");
+            } else {
+                int descStart = pos;
+                int depth = 0;
+                while (pos < length) {
+                    char c = srcset.charAt(pos);
+                    if (c == '(') {
+                        depth++;
+                    } else if (c == ')' && depth > 0) {
+                        depth--;
+                    } else if (c == ',' && depth == 0) {
+                        break;
+                    }
+                    pos++;
+                }
+                descriptor = srcset.substring(descStart, pos).trim();
+            }
+
+            if (!url.isEmpty()) {
+                candidates.add(toCandidate(url, descriptor));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * 在候选项中选出声明尺寸最大的一个
+     * 存在宽度描述符时按宽度比较，否则按像素密度比较
+     *
+     * @param candidates 候选项
+     * @return 最大的候选项，列表为空时返回null
+     */
+    public static Candidate largest(List<Candidate> candidates) {
+        Candidate best = null;
+        for (Candidate candidate : candidates) {
+            if (best == null) {
+                best = candidate;
+            } else if (candidate.getWidth() > 0 || best.getWidth() > 0) {
+                if (candidate.getWidth() > best.getWidth()) {
+                    best = candidate;
+                }
+            } else if (candidate.getDensity() > best.getDensity()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static Candidate toCandidate(String url, String descriptor) {
+        int width = 0;
+        double density = 1.0;
+        for (String token : descriptor.split("\\s+")) {
+            if (token.length() < 2) {
+                continue;
+            }
+            char unit = Character.toLowerCase(token.charAt(token.length() - 1));
+            String value = token.substring(0, token.length() - 1);
+            try {
+                if (unit == 'w') {
+                    width = Integer.parseInt(value);
+                } else if (unit == 'x') {
+                    density = Double.parseDouble(value);
+                }
+            } catch (NumberFormatException e) {
+                // 忽略无法识别的描述符
+            }
+        }
+        return new Candidate(url, width, density);
+    }
+}
@@ -0,0 +1,125 @@
+package com.prospect.giraffe.material.service.image;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 图片内存缓冲池
+ * 下载直接交给去水印阶段时使用的缓冲区，按实际大小（向上取整到 64KB）分配，用完归还复用。
+ * 借出与空闲缓冲区的总字节数不超过 handoffMaxTotalBytes，超出时不分配，调用方改为写入磁盘，
+ * 不阻塞等待（去水印阶段还要申请全局内存预算，阻塞等待缓冲区可能互相等待）
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class ImageBufferPool {
+
+    /**
+     * 缓冲区大小按该粒度向上取整，便于复用
+     */
+    private static final int SIZE_CLASS = 64 * 1024;
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    /**
+     * 空闲缓冲区：大小 -> 缓冲区
+     */
+    private final TreeMap<Integer, ArrayDeque<byte[]>> idle = new TreeMap<>();
+
+    private int idleCount;
+
+    private long idleBytes;
+
+    private long borrowedBytes;
+
+    /**
+     * 单张图片的缓冲区上限（字节），0 表示不使用内存交接
+     */
+    public int getMaxBufferSize() {
+        Integer maxBytes = downloadConfig.getHandoffMaxBytes();
+        return maxBytes != null && maxBytes > 0 ? maxBytes : 0;
+    }
+
+    /**
+     * 取一个不小于 size 的缓冲区，优先复用空闲缓冲区
+     *
+     * @param size 需要的字节数
+     * @return 缓冲区；超过单张上限或总量上限时返回 null
+     */
+    public synchronized byte[] acquire(int size) {
+        int maxBufferSize = getMaxBufferSize();
+        if (size <= 0 || size > maxBufferSize) {
+            return null;
+        }
+        int capacity = (int) Math.min(maxBufferSize, ((long) size + SIZE_CLASS - 1) / SIZE_CLASS * SIZE_CLASS);
+
+        // 复用不超过所需大小两倍的空闲缓冲区
+        Map.Entry<Integer, ArrayDeque<byte[]>> reusable = idle.ceilingEntry(capacity);
+        if (reusable != null && reusable.getKey() <= (long) capacity * 2) {
+            byte[] buffer = takeIdle(reusable.getKey());
+            borrowedBytes += buffer.length;
+            return buffer;
+        }
+
+        // 总量不够时先丢弃空闲缓冲区腾出空间
+        long maxTotalBytes = maxTotalBytes();
+        Iterator<Map.Entry<Integer, ArrayDeque<byte[]>>> eldest = idle.entrySet().iterator();
+        while (borrowedBytes + idleBytes + capacity > maxTotalBytes && eldest.hasNext()) {
+            Map.Entry<Integer, ArrayDeque<byte[]>> entry = eldest.next();
+            idleBytes -= (long) entry.getKey() * entry.getValue().size();
+            idleCount -= entry.getValue().size();
+            eldest.remove();
+        }
+        if (borrowedBytes + idleBytes + capacity > maxTotalBytes) {
+            log.debug("内存交接缓冲区已达上限，改为写入磁盘: 已借出 {} 字节", borrowedBytes);
+            return null;
+        }
+        borrowedBytes += capacity;
+        return new byte[capacity];
+    }
+
+    /**
+     * 归还缓冲区，空闲缓冲区已满时丢弃
+     */
+    public synchronized void release(byte[] buffer) {
+        borrowedBytes -= buffer.length;
+        int maxIdle = downloadConfig.getHandoffPoolSize() != null ? downloadConfig.getHandoffPoolSize() : 0;
+        if (idleCount < maxIdle && borrowedBytes + idleBytes + buffer.length <= maxTotalBytes()) {
+            idle.computeIfAbsent(buffer.length, k -> new ArrayDeque<>()).push(buffer);
+            idleCount++;
+            idleBytes += buffer.length;
+        }
+    }
+
+    /**
+     * 已借出的字节数
+     */
+    public synchronized long getBorrowedBytes() {
+        return borrowedBytes;
+    }
+
+    private byte[] takeIdle(int size) {
+        ArrayDeque<byte[]> buffers = idle.get(size);
+        byte[] buffer = buffers.pop();
+        if (buffers.isEmpty()) {
+            idle.remove(size);
+        }
+        idleCount--;
+        idleBytes -= buffer.length;
+        return buffer;
+    }
+
+    private long maxTotalBytes() {
+        Long maxTotal = downloadConfig.getHandoffMaxTotalBytes();
+        return maxTotal != null && maxTotal > 0 ? maxTotal : 0L;
+    }
+}
@@ -0,0 +1,36 @@
+package com.prospect.giraffe.material.service.image;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 图片头信息（格式与尺寸）
+ *
+ * @author giraffe
+ */
+@Data
+@AllArgsConstructor
+public class ImageHeader {
+
+    /**
+     * 格式：jpeg, png, gif, webp, bmp；无法识别时为null
+     */
+    private String format;
+
+    /**
+     * 宽度，无法识别时为-1
+     */
+    private int width;
+
+    /**
+     * 高度，无法识别时为-1
+     */
+    private int height;
+
+    /**
+     * 是否识别出尺寸
+     */
+    public boolean hasDimensions() {
+        return width > 0 && height > 0;
+    }
+}
@@ -0,0 +1,121 @@
+package com.prospect.giraffe.material.service.image;
+
+/**
+ * 图片头解析
+ * 仅凭文件开头的若干字节（magic bytes 和尺寸字段）识别格式与宽高，无需解码整张图片
+ *
+ * @author giraffe
+ */
+public final class ImageHeaderSniffer {
+
+    private ImageHeaderSniffer() {
+    }
+
+    /**
+     * 解析图片头
+     *
+     * @param data   文件开头的字节
+     * @param length 有效字节数
+     * @return 图片头信息（无法识别的字段为 null / -1）
+     */
+    public static ImageHeader sniff(byte[] data, int length) {
+        if (length >= 3 && u8(data, 0) == 0xFF && u8(data, 1) == 0xD8 && u8(data, 2) == 0xFF) {
+            return sniffJpeg(data, length);
+        }
+        if (length >= 8 && u8(data, 0) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            return length >= 24
+                    ? new ImageHeader("png", be32(data, 16), be32(data, 20))
+                    : new ImageHeader("png", -1, -1);
+        }
+        if (length >= 6 && data[0] == 'G' && data[1] == 'I' && data[2] == 'F' && data[3] == '8') {
+            return length >= 10
+                    ? new ImageHeader("gif", le16(data, 6), le16(data, 8))
+                    : new ImageHeader("gif", -1, -1);
+        }
+        if (length >= 12 && data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F'
+                && data[8] == 'W' && data[9] == 'E' && data[10] == 'B' && data[11] == 'P') {
+            return sniffWebp(data, length);
+        }
+        if (length >= 2 && data[0] == 'B' && data[1] == 'M') {
+            return length >= 26
+                    ? new ImageHeader("bmp", le32(data, 18), Math.abs(le32(data, 22)))
+                    : new ImageHeader("bmp", -1, -1);
+        }
+        return new ImageHeader(null, -1, -1);
+    }
+
+    /**
+     * JPEG：逐段跳过，直到 SOFn 段
+     */
+    private static ImageHeader sniffJpeg(byte[] data, int length) {
+        int pos = 2;
+        while (pos + 9 < length) {
+            if (u8(data, pos) != 0xFF) {
+                pos++;
+                continue;
+            }
+            int marker = u8(data, pos + 1);
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            // 无长度字段的标记
+            if (marker == 0xD8 || marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                pos += 2;
+                continue;
+            }
+            // SOF0-SOF15（排除 DHT/JPG/DAC）
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                return new ImageHeader("jpeg", be16(data, pos + 7), be16(data, pos + 5));
+            }
+            if (marker == 0xDA || marker == 0xD9) {
+                break;
+            }
+            pos += 2 + be16(data, pos + 2);
+        }
+        return new ImageHeader("jpeg", -1, -1);
+    }
+
+    /**
+     * WebP：VP8 / VP8L / VP8X 三种子格式
+     */
+    private static ImageHeader sniffWebp(byte[] data, int length) {
+        if (length >= 30 && data[12] == 'V' && data[13] == 'P' && data[14] == '8') {
+            if (data[15] == ' ') {
+                return new ImageHeader("webp", le16(data, 26) & 0x3FFF, le16(data, 28) & 0x3FFF);
+            }
+            if (data[15] == 'L') {
+                int bits = le32(data, 21);
+                return new ImageHeader("webp", (bits & 0x3FFF) + 1, ((bits >> 14) & 0x3FFF) + 1);
+            }
+            if (data[15] == 'X') {
+                return new ImageHeader("webp", le24(data, 24) + 1, le24(data, 27) + 1);
+            }
+        }
+        return new ImageHeader("webp", -1, -1);
+    }
+
+    private static int u8(byte[] data, int pos) {
+        return data[pos] & 0xFF;
+    }
+
+    private static int be16(byte[] data, int pos) {
+        return (u8(data, pos) << 8) | u8(data, pos + 1);
+    }
+
+    private static int be32(byte[] data, int pos) {
+        return (be16(data, pos) << 16) | be16(data, pos + 2);
+    }
+
+    private static int le16(byte[] data, int pos) {
+        return u8(data, pos) | (u8(data, pos + 1) << 8);
+    }
+
+    private static int le24(byte[] data, int pos) {
+        return le16(data, pos) | (u8(data, pos + 2) << 16);
+    }
+
+    private static int le32(byte[] data, int pos) {
+        return le16(data, pos) | (le16(data, pos + 2) << 16);
+    }
+}
@@ -0,0 +1,163 @@
+package com.prospect.giraffe.material.service.image;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * 在流水线各阶段之间传递的图片内容
+ * 可以是磁盘上的文件，也可以是内存缓冲区（下载后直接交给去水印阶段，不落盘）
+ *
+ * @author giraffe
+ */
+public class ImagePayload {
+
+    /**
+     * 磁盘文件，内存模式下为 null
+     */
+    private final File file;
+
+    /**
+     * 逻辑文件名（用于生成输出文件名）
+     */
+    private final String fileName;
+
+    private byte[] buffer;
+
+    private final int length;
+
+    /**
+     * 缓冲区来源，释放时归还；为 null 时不归还
+     */
+    private final ImageBufferPool pool;
+
+    /**
+     * 图片URL与所在页面URL（可为 null），本地去水印按站点选择水印模板
+     */
+    private final String sourceUrl;
+
+    private final String pageUrl;
+
+    private ImagePayload(File file, String fileName, byte[] buffer, int length, ImageBufferPool pool,
+                         String sourceUrl, String pageUrl) {
+        this.file = file;
+        this.fileName = fileName;
+        this.buffer = buffer;
+        this.length = length;
+        this.pool = pool;
+        this.sourceUrl = sourceUrl;
+        this.pageUrl = pageUrl;
+    }
+
+    /**
+     * 磁盘文件
+     */
+    public static ImagePayload ofFile(File file) {
+        return new ImagePayload(file, file.getName(), null, 0, null, null, null);
+    }
+
+    /**
+     * 磁盘文件（文件名与逻辑文件名不同，例如暂存文件）
+     */
+    public static ImagePayload ofFile(File file, String fileName) {
+        return new ImagePayload(file, fileName, null, 0, null, null, null);
+    }
+
+    /**
+     * 内存缓冲区
+     *
+     * @param fileName 逻辑文件名
+     * @param buffer   缓冲区
+     * @param length   有效长度
+     * @param pool     缓冲区来源（可为 null）
+     */
+    public static ImagePayload ofBytes(String fileName, byte[] buffer, int length, ImageBufferPool pool) {
+        return new ImagePayload(null, fileName, buffer, length, pool, null, null);
+    }
+
+    /**
+     * 换一个逻辑文件名；缓冲区转移给新对象，原对象不再持有（之后只需释放新对象，不会重复归还）
+     */
+    public ImagePayload renamed(String newFileName) {
+        return new ImagePayload(file, newFileName, detach(), length, pool, sourceUrl, pageUrl);
+    }
+
+    /**
+     * 记录图片来源；缓冲区转移给新对象，原对象不再持有（之后只需释放新对象，不会重复归还）
+     *
+     * @param sourceUrl 图片URL
+     * @param pageUrl   图片所在页面URL
+     */
+    public ImagePayload fromSource(String sourceUrl, String pageUrl) {
+        return new ImagePayload(file, fileName, detach(), length, pool, sourceUrl, pageUrl);
+    }
+
+    /**
+     * 交出缓冲区的所有权
+     */
+    private byte[] detach() {
+        byte[] owned = buffer;
+        buffer = null;
+        return owned;
+    }
+
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getSourceUrl() {
+        return sourceUrl;
+    }
+
+    public String getPageUrl() {
+        return pageUrl;
+    }
+
+    public long size() {
+        return file != null ? file.length() : length;
+    }
+
+    public InputStream openStream() throws IOException {
+        if (file != null) {
+            return Files.newInputStream(file.toPath());
+        }
+        if (buffer == null) {
+            throw new IOException("图片缓冲区已释放: " + fileName);
+        }
+        return new ByteArrayInputStream(buffer, 0, length);
+    }
+
+    /**
+     * 写入磁盘
+     */
+    public void writeTo(File target) throws IOException {
+        try (InputStream input = openStream(); OutputStream output = Files.newOutputStream(target.toPath())) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                output.write(chunk, 0, read);
+            }
+        }
+    }
+
+    /**
+     * 归还内存缓冲区，磁盘文件不受影响
+     */
+    public void release() {
+        if (buffer != null && pool != null) {
+            pool.release(buffer);
+        }
+        buffer = null;
+    }
+}
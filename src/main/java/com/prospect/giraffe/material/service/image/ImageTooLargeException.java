@@ -0,0 +1,17 @@
+package com.prospect.giraffe.material.service.image;
+
+import java.io.IOException;
+
+/**
+ * 图片像素数超过解码上限，在分配栅格之前拒绝
+ *
+ * @author giraffe
+ */
+public class ImageTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,616 @@
+package com.prospect.giraffe.material.service.image;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import com.prospect.giraffe.material.dto.OutputVariant;
+import com.prospect.giraffe.material.service.MemoryBudget;
+import com.prospect.giraffe.material.service.MemoryBudgetExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片转码服务（CPU 密集阶段）
+ * 网络线程只负责把字节写到暂存文件，解码 / 编码在独立的有界线程池中执行；
+ * 排队任务数有上限，队列满时提交方等待，网络与 CPU 并行度可分别调整
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Service
+public class ImageTranscodeService {
+
+    /**
+     * 识别格式时读取的字节数
+     */
+    private static final int SNIFF_BYTES = 64;
+
+    private static final float DEFAULT_JPEG_QUALITY = 0.9f;
+
+    /**
+     * 解码栅格与铺底后的 RGB 副本各按每像素 4 字节估算
+     */
+    private static final long DECODE_BYTES_PER_PIXEL = 8L;
+
+    /**
+     * 存储优化额外持有一份候选解码栅格和两份亮度通道
+     */
+    private static final long OPTIMIZE_BYTES_PER_PIXEL = DECODE_BYTES_PER_PIXEL + 6L;
+
+    /**
+     * 存储优化二分查找压缩质量的次数
+     */
+    private static final int OPTIMIZE_SEARCH_STEPS = 5;
+
+    /**
+     * 每个转码线程复用一个 JPEG 编码器
+     */
+    private static final ThreadLocal<ImageWriter> JPEG_WRITER = ThreadLocal.withInitial(() -> {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("没有可用的 JPEG 编码器");
+        }
+        return writers.next();
+    });
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    @Resource
+    private MemoryBudget memoryBudget;
+
+    @Resource
+    private ImageBufferPool imageBufferPool;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 限制 执行中 + 排队 的任务总数
+     */
+    private Semaphore slots;
+
+    @PostConstruct
+    public void init() {
+        int threads = downloadConfig.getTranscodeThreads() != null && downloadConfig.getTranscodeThreads() > 0
+                ? downloadConfig.getTranscodeThreads() : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = downloadConfig.getTranscodeQueueCapacity() != null && downloadConfig.getTranscodeQueueCapacity() > 0
+                ? downloadConfig.getTranscodeQueueCapacity() : 16;
+
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "image-transcode-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        slots = new Semaphore(threads + queueCapacity);
+        // 图片都在内存中处理，关闭 ImageIO 默认的磁盘临时缓存
+        ImageIO.setUseCache(false);
+        log.info("图片转码线程池已启动: 线程数={}, 队列容量={}", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 提交转码任务，完成后删除暂存文件（或归还内存缓冲区），队列已满时阻塞等待
+     * - 主输出：convertToJpeg 为 true 且源图不是 JPEG 时重新编码，否则原样保存；
+     *   转换需要全尺寸解码，像素数超过解码上限（或所需内存超过预算）时在解码前放弃转换，按原格式原样保存
+     * - 存储优化：主输出为 JPEG 时去除元数据并按 SSIM 阈值寻找最低压缩质量，保留较小的文件；
+     *   直通的 JPEG 超过 maxDecodePixels 时只能降采样解码，不做存储优化
+     * - 输出规格：与主输出共用一次解码，按最长边从大到小逐级缩小后写入 目标目录/规格名称/
+     * 源图在内存中时主输出也留在内存中（不写 targetFile，也不做存储优化；缓冲池已满时写入 targetFile），输出规格仍写入磁盘；
+     * 转码失败时原图（内存图片或暂存文件）以原文件名保存到 targetFile 所在目录，避免丢图
+     *
+     * @param source          网络阶段的结果（暂存文件或内存图片）
+     * @param targetFile      主输出文件
+     * @param convertToJpeg   是否转为 JPEG
+     * @param optimizeStorage 是否进行存储优化
+     * @param variants        额外输出规格（可为空）
+     * @return 转码结果
+     * @throws InterruptedException 等待队列时被中断
+     */
+    public CompletableFuture<TranscodeResult> submit(ImagePayload source, File targetFile, boolean convertToJpeg,
+                                                     boolean optimizeStorage, List<OutputVariant> variants)
+            throws InterruptedException {
+        slots.acquire();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return transcode(source, targetFile, convertToJpeg, optimizeStorage, variants);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    slots.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 执行转码：源文件已是 JPEG 或不需要转换时直接改名保存，避免重复编码损失画质
+     */
+    private TranscodeResult transcode(ImagePayload source, File targetFile, boolean convertToJpeg,
+                                      boolean optimizeStorage, List<OutputVariant> variants) throws IOException {
+        boolean hasVariants = variants != null && !variants.isEmpty();
+        long[] bytesSaved = new long[1];
+        // 内存图片原样交给下一阶段时缓冲区随结果转移，不在这里归还
+        boolean handedOver = false;
+        try {
+            String sourceFormat = sniffFormat(source);
+            boolean jpegSource = "jpeg".equals(sourceFormat);
+            boolean optimize = optimizeStorage && (convertToJpeg || jpegSource) && !source.isInMemory();
+            long bytesPerPixel = optimize ? OPTIMIZE_BYTES_PER_PIXEL : DECODE_BYTES_PER_PIXEL;
+
+            File outputFile = targetFile;
+            if (convertToJpeg && !jpegSource) {
+                try {
+                    return convert(source, targetFile, optimize, bytesPerPixel, variants);
+                } catch (ImageTooLargeException | MemoryBudgetExceededException e) {
+                    // 全尺寸解码超出上限（在分配栅格之前拒绝）：不转换格式，按原格式原样保存
+                    outputFile = new File(targetFile.getParentFile(),
+                            removeExtension(targetFile.getName()) + "." + extensionOf(sourceFormat, source.getFileName()));
+                    log.warn("图片过大，跳过格式转换，保留原格式: {}, 原因: {}", outputFile.getName(), e.getMessage());
+                }
+            }
+
+            File savedFile = outputFile;
+            // 保留原格式时不是 JPEG，不做存储优化
+            boolean optimizeSaved = optimize && jpegSource;
+            ImagePayload output;
+            if (source.isInMemory()) {
+                output = source.renamed(savedFile.getName());
+                handedOver = true;
+            } else {
+                Files.move(source.getFile().toPath(), savedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                output = ImagePayload.ofFile(savedFile);
+            }
+            if (hasVariants || optimizeSaved) {
+                // 原图已保存，后续处理失败只记录日志
+                try {
+                    decodeBounded(output, bytesPerPixel, false, (image, fullSize) -> {
+                        if (hasVariants) {
+                            writeVariants(image, savedFile, variants);
+                        }
+                        // 降采样解码的栅格比原图小，用它重新编码会替换掉全尺寸原图，此时不做存储优化
+                        if (optimizeSaved && fullSize) {
+                            bytesSaved[0] = optimizeJpeg(flattenToRgb(image), savedFile);
+                        } else if (optimizeSaved) {
+                            log.info("图片超过解码像素上限，跳过存储优化: {}", savedFile.getName());
+                        }
+                    });
+                } catch (IOException e) {
+                    log.warn("生成输出规格或存储优化失败: {}, 原因: {}", savedFile.getName(), e.getMessage());
+                }
+            }
+            return new TranscodeResult(output, bytesSaved[0]);
+        } catch (IOException | RuntimeException e) {
+            if (!handedOver) {
+                saveFailedSource(source, targetFile, e);
+            }
+            throw e;
+        } finally {
+            if (source.isInMemory()) {
+                if (!handedOver) {
+                    source.release();
+                }
+            } else if (!source.getFile().equals(targetFile)) {
+                Files.deleteIfExists(source.getFile().toPath());
+            }
+        }
+    }
+
+    /**
+     * 格式转换为 JPEG：必须全尺寸解码，像素数或所需内存超过上限时在分配栅格前抛出异常
+     */
+    private TranscodeResult convert(ImagePayload source, File targetFile, boolean optimize, long bytesPerPixel,
+                                    List<OutputVariant> variants) throws IOException {
+        boolean hasVariants = variants != null && !variants.isEmpty();
+        long[] bytesSaved = new long[1];
+        if (source.isInMemory()) {
+            byte[][] encoded = new byte[1][];
+            decodeBounded(source, bytesPerPixel, true, (image, fullSize) -> {
+                encoded[0] = encodeJpeg(flattenToRgb(image), jpegQuality(null));
+                if (hasVariants) {
+                    writeVariants(image, targetFile, variants);
+                }
+            });
+            // 编码结果计入缓冲池总量，缓冲池已满时写入磁盘
+            byte[] pooled = imageBufferPool.acquire(encoded[0].length);
+            if (pooled == null) {
+                Files.write(targetFile.toPath(), encoded[0]);
+                return new TranscodeResult(ImagePayload.ofFile(targetFile), 0L);
+            }
+            System.arraycopy(encoded[0], 0, pooled, 0, encoded[0].length);
+            return new TranscodeResult(
+                    ImagePayload.ofBytes(targetFile.getName(), pooled, encoded[0].length, imageBufferPool), 0L);
+        }
+
+        decodeBounded(source, bytesPerPixel, true, (image, fullSize) -> {
+            BufferedImage rgbImage = flattenToRgb(image);
+            writeJpeg(rgbImage, targetFile, jpegQuality(null));
+            if (hasVariants) {
+                writeVariants(image, targetFile, variants);
+            }
+            if (optimize && fullSize) {
+                bytesSaved[0] = optimizeJpeg(rgbImage, targetFile);
+            }
+        });
+        return new TranscodeResult(ImagePayload.ofFile(targetFile), bytesSaved[0]);
+    }
+
+    /**
+     * 转码失败时把原图保存到目标目录（保留源文件名）：内存图片写入磁盘（缓冲区随后归还），暂存文件改名移入
+     */
+    private void saveFailedSource(ImagePayload source, File targetFile, Exception failure) {
+        File savedFile = new File(targetFile.getParentFile(), source.getFileName());
+        try {
+            if (source.isInMemory()) {
+                source.writeTo(savedFile);
+            } else if (source.getFile().exists()) {
+                Files.move(source.getFile().toPath(), savedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                return;
+            }
+            log.warn("转码失败，原图已保存: {}", savedFile);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+            log.error("转码失败且原图保存失败: {}, 原因: {}", savedFile, e.getMessage());
+        }
+    }
+
+    /**
+     * 存储优化：二分查找 SSIM 不低于阈值的最低压缩质量，重新编码（不带元数据），
+     * 结果比现有文件小时替换，返回节省的字节数
+     */
+    private long optimizeJpeg(BufferedImage reference, File jpegFile) throws IOException {
+        byte[] referenceLuma = StructuralSimilarity.luma(reference);
+        double minSsim = downloadConfig.getOptimizeMinSsim() != null ? downloadConfig.getOptimizeMinSsim() : 0.98;
+        float low = downloadConfig.getOptimizeMinQuality() != null ? downloadConfig.getOptimizeMinQuality() : 0.5f;
+        float high = downloadConfig.getOptimizeMaxQuality() != null ? downloadConfig.getOptimizeMaxQuality() : 0.95f;
+
+        byte[] best = null;
+        float bestQuality = high;
+        byte[] candidate = encodeJpeg(reference, high);
+        if (meetsSimilarity(candidate, referenceLuma, reference, minSsim)) {
+            best = candidate;
+            for (int step = 0; step < OPTIMIZE_SEARCH_STEPS; step++) {
+                float quality = (low + high) / 2;
+                candidate = encodeJpeg(reference, quality);
+                if (meetsSimilarity(candidate, referenceLuma, reference, minSsim)) {
+                    best = candidate;
+                    bestQuality = quality;
+                    high = quality;
+                } else {
+                    low = quality;
+                }
+            }
+        }
+
+        long originalSize = jpegFile.length();
+        if (best == null || best.length >= originalSize) {
+            return 0L;
+        }
+        File tempFile = new File(jpegFile.getParentFile(), jpegFile.getName() + ".opt");
+        Files.write(tempFile.toPath(), best);
+        Files.move(tempFile.toPath(), jpegFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        log.debug("存储优化: {}, 质量: {}, 节省: {} 字节", jpegFile.getName(), bestQuality, originalSize - best.length);
+        return originalSize - best.length;
+    }
+
+    private boolean meetsSimilarity(byte[] jpegBytes, byte[] referenceLuma, BufferedImage reference,
+                                    double minSsim) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpegBytes));
+        if (decoded == null || decoded.getWidth() != reference.getWidth() || decoded.getHeight() != reference.getHeight()) {
+            return false;
+        }
+        double ssim = StructuralSimilarity.ssim(referenceLuma, StructuralSimilarity.luma(decoded),
+                reference.getWidth(), reference.getHeight());
+        return ssim >= minSsim;
+    }
+
+    /**
+     * 按输出规格逐级缩小并写出，每级从上一级结果继续缩小
+     */
+    private void writeVariants(BufferedImage image, File targetFile, List<OutputVariant> variants) throws IOException {
+        List<OutputVariant> ordered = new ArrayList<>(variants);
+        ordered.sort(Comparator.comparing(
+                (OutputVariant variant) -> variant.getMaxDimension() != null ? variant.getMaxDimension() : Integer.MAX_VALUE,
+                Comparator.reverseOrder()));
+
+        String baseName = removeExtension(targetFile.getName());
+        BufferedImage current = image;
+        for (OutputVariant variant : ordered) {
+            current = downscale(current, variant.getMaxDimension());
+
+            File variantDir = new File(targetFile.getParentFile(), variant.getName());
+            Files.createDirectories(variantDir.toPath());
+            if ("png".equalsIgnoreCase(variant.getFormat())) {
+                File outputFile = new File(variantDir, baseName + ".png");
+                if (!ImageIO.write(current, "png", outputFile)) {
+                    throw new IOException("PNG 编码失败: " + outputFile.getName());
+                }
+            } else {
+                writeJpeg(flattenToRgb(current), new File(variantDir, baseName + ".jpg"), jpegQuality(variant.getQuality()));
+            }
+        }
+    }
+
+    /**
+     * 逐级减半缩小到最长边不超过 maxDimension，每步双线性插值，
+     * 比一次性大比例缩放更快且不会出现明显锯齿
+     */
+    private BufferedImage downscale(BufferedImage source, Integer maxDimension) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (maxDimension == null || Math.max(width, height) <= maxDimension) {
+            return source;
+        }
+        double scale = (double) maxDimension / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        int imageType = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        while (width != targetWidth || height != targetHeight) {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, imageType);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * 先从 ImageReader 读取头部尺寸再解码：
+     * 像素数超过 maxImagePixels 直接拒绝；超过解码上限（maxDecodePixels 与 内存预算 / 每像素字节数 中较小者）时
+     * 按整数步长降采样解码，使单次转码的内存占用有确定上限；解码前按解码后像素数向全局内存预算申请额度，
+     * 额度在 handler 处理完成后归还。
+     * 解码结果要作为主输出（格式转换）时必须全尺寸解码，超过解码上限时在分配栅格之前抛出 ImageTooLargeException
+     *
+     * @param fullResolution 是否必须全尺寸解码
+     */
+    private void decodeBounded(ImagePayload source, long bytesPerPixel, boolean fullResolution,
+                               DecodedImageHandler handler) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(
+                source.isInMemory() ? source.openStream() : source.getFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("无法读取图片内容，可能不是有效的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                long pixels = (long) width * height;
+                if (pixels > maxImagePixels()) {
+                    throw new ImageTooLargeException(String.format("图片像素数超过上限: %dx%d", width, height));
+                }
+                long decodePixelLimit = decodePixelLimit(bytesPerPixel);
+                if (fullResolution && pixels > decodePixelLimit) {
+                    throw new ImageTooLargeException(String.format("图片像素数超过全尺寸解码上限: %dx%d > %d",
+                            width, height, decodePixelLimit));
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = fullResolution ? 1 : subsamplingFor(pixels, decodePixelLimit);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                    log.info("图片尺寸过大，降采样解码: {}x{}, 步长: {}", width, height, subsampling);
+                }
+                long decodedPixels = (long) ((width + subsampling - 1) / subsampling)
+                        * ((height + subsampling - 1) / subsampling);
+                MemoryBudget.Reservation reservation = memoryBudget.reserve(decodedPixels * bytesPerPixel);
+                try {
+                    BufferedImage image = reader.read(0, param);
+                    if (image == null) {
+                        throw new IOException("无法读取图片内容，可能不是有效的图片格式");
+                    }
+                    handler.handle(image, image.getWidth() == width && image.getHeight() == height);
+                } finally {
+                    reservation.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("转码被中断", e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 计算使解码后像素数不超过 maxDecodePixels 的最小降采样步长
+     */
+    private int subsamplingFor(long pixels, long maxDecodePixels) {
+        if (pixels <= maxDecodePixels) {
+            return 1;
+        }
+        int step = (int) Math.ceil(Math.sqrt((double) pixels / maxDecodePixels));
+        while (pixels / ((long) step * step) > maxDecodePixels) {
+            step++;
+        }
+        return step;
+    }
+
+    /**
+     * 单次解码的像素上限：maxDecodePixels 与 内存预算 / 每像素字节数 中较小者，都未配置时不限制
+     */
+    private long decodePixelLimit(long bytesPerPixel) {
+        long limit = maxDecodePixels() > 0 ? maxDecodePixels() : Long.MAX_VALUE;
+        long budgetBytes = memoryBudget.totalBytes();
+        if (budgetBytes > 0) {
+            limit = Math.min(limit, Math.max(1L, budgetBytes / bytesPerPixel));
+        }
+        return limit;
+    }
+
+    private long maxImagePixels() {
+        Long maxPixels = downloadConfig.getMaxImagePixels();
+        return maxPixels != null && maxPixels > 0 ? maxPixels : Long.MAX_VALUE;
+    }
+
+    private long maxDecodePixels() {
+        Long maxPixels = downloadConfig.getMaxDecodePixels();
+        return maxPixels != null ? maxPixels : 0L;
+    }
+
+    /**
+     * 按魔数识别文件格式
+     */
+    private String sniffFormat(ImagePayload source) throws IOException {
+        byte[] headerBytes = new byte[SNIFF_BYTES];
+        int length;
+        try (InputStream inputStream = source.openStream()) {
+            length = IOUtils.read(inputStream, headerBytes);
+        }
+        return ImageHeaderSniffer.sniff(headerBytes, length).getFormat();
+    }
+
+    /**
+     * 带透明通道或非 RGB 的图片先铺到白色背景上，
+     * 否则 JPEG 编码器会拒绝 ARGB 图片（ImageIO.write 只返回 false 不抛异常）
+     */
+    private BufferedImage flattenToRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgbImage.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgbImage;
+    }
+
+    /**
+     * 使用线程内复用的 ImageWriter 按配置的质量与渐进式参数写出
+     */
+    private void writeJpeg(BufferedImage image, File targetFile, float quality) throws IOException {
+        try (ImageOutputStream output = new FileImageOutputStream(targetFile)) {
+            writeJpeg(image, output, quality);
+        }
+    }
+
+    private byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+            writeJpeg(image, output, quality);
+        }
+        return buffer.toByteArray();
+    }
+
+    private void writeJpeg(BufferedImage image, ImageOutputStream output, float quality) throws IOException {
+        ImageWriter writer = JPEG_WRITER.get();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        if (Boolean.TRUE.equals(downloadConfig.getJpegProgressive())) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        } else {
+            param.setProgressiveMode(ImageWriteParam.MODE_DISABLED);
+        }
+
+        try {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+        }
+    }
+
+    /**
+     * 压缩质量：优先使用输出规格指定的值，其次全局配置
+     */
+    private float jpegQuality(Float override) {
+        Float quality = override != null ? override : downloadConfig.getJpegQuality();
+        if (quality == null || quality <= 0 || quality > 1) {
+            return DEFAULT_JPEG_QUALITY;
+        }
+        return quality;
+    }
+
+    /**
+     * 按识别出的格式取扩展名，无法识别时沿用原文件名的扩展名
+     */
+    private String extensionOf(String format, String fileName) {
+        if ("jpeg".equals(format)) {
+            return "jpg";
+        }
+        if (format != null) {
+            return format;
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 && dot < fileName.length() - 1 ? fileName.substring(dot + 1) : "img";
+    }
+
+    private String removeExtension(String fileName) {
+        int dotIndex = fileName.lastIndexOf('.');
+        return dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+    }
+
+    /**
+     * 解码结果处理（在内存额度内执行）
+     */
+    private interface DecodedImageHandler {
+
+        /**
+         * @param image    解码结果
+         * @param fullSize 解码结果是否与原图尺寸一致（未降采样）
+         */
+        void handle(BufferedImage image, boolean fullSize) throws IOException;
+    }
+}
@@ -0,0 +1,91 @@
+package com.prospect.giraffe.material.service.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 结构相似度（SSIM）计算
+ * 在亮度通道上按 8x8 不重叠窗口计算后取平均，用于衡量重新压缩后的画质损失
+ *
+ * @author giraffe
+ */
+public final class StructuralSimilarity {
+
+    private static final int WINDOW = 8;
+
+    private static final double C1 = (0.01 * 255) * (0.01 * 255);
+
+    private static final double C2 = (0.03 * 255) * (0.03 * 255);
+
+    private StructuralSimilarity() {
+    }
+
+    /**
+     * 提取亮度通道（每像素 1 字节）
+     */
+    public static byte[] luma(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] luma = new byte[width * height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                luma[y * width + x] = (byte) ((299 * r + 587 * g + 114 * b) / 1000);
+            }
+        }
+        return luma;
+    }
+
+    /**
+     * 计算两幅同尺寸亮度图的平均 SSIM，取值 [-1, 1]，1 表示完全一致
+     */
+    public static double ssim(byte[] reference, byte[] candidate, int width, int height) {
+        if (reference.length != candidate.length || reference.length != width * height) {
+            throw new IllegalArgumentException("图片尺寸不一致");
+        }
+        double total = 0;
+        int windows = 0;
+        for (int top = 0; top < height; top += WINDOW) {
+            int bottom = Math.min(top + WINDOW, height);
+            for (int left = 0; left < width; left += WINDOW) {
+                int right = Math.min(left + WINDOW, width);
+                total += windowSsim(reference, candidate, width, left, top, right, bottom);
+                windows++;
+            }
+        }
+        return windows > 0 ? total / windows : 1.0;
+    }
+
+    private static double windowSsim(byte[] reference, byte[] candidate, int width,
+                                     int left, int top, int right, int bottom) {
+        double sumA = 0;
+        double sumB = 0;
+        double sumAA = 0;
+        double sumBB = 0;
+        double sumAB = 0;
+        int count = (right - left) * (bottom - top);
+        for (int y = top; y < bottom; y++) {
+            int offset = y * width;
+            for (int x = left; x < right; x++) {
+                int a = reference[offset + x] & 0xFF;
+                int b = candidate[offset + x] & 0xFF;
+                sumA += a;
+                sumB += b;
+                sumAA += a * a;
+                sumBB += b * b;
+                sumAB += a * b;
+            }
+        }
+        double meanA = sumA / count;
+        double meanB = sumB / count;
+        double varA = sumAA / count - meanA * meanA;
+        double varB = sumBB / count - meanB * meanB;
+        double covariance = sumAB / count - meanA * meanB;
+        return ((2 * meanA * meanB + C1) * (2 * covariance + C2))
+                / ((meanA * meanA + meanB * meanB + C1) * (varA + varB + C2));
+    }
+}
@@ -0,0 +1,24 @@
+package com.prospect.giraffe.material.service.image;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 转码结果
+ *
+ * @author giraffe
+ */
+@Data
+@AllArgsConstructor
+public class TranscodeResult {
+
+    /**
+     * 主输出（磁盘文件，或内存交接模式下的内存图片）
+     */
+    private ImagePayload payload;
+
+    /**
+     * 存储优化节省的字节数
+     */
+    private long bytesSaved;
+}
@@ -0,0 +1,176 @@
+package com.prospect.giraffe.material.service.watermark;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.Base64;
+
+/**
+ * 从 JSON 响应中流式提取 Base64 字段并解码写入文件
+ * 目标字段的值边读边解码，不在堆上保留完整字符串；其余内容（值替换为空串）原样返回，
+ * 可以再交给 Gson 解析错误码等小字段
+ *
+ * @author giraffe
+ */
+public final class Base64JsonFieldExtractor {
+
+    private Base64JsonFieldExtractor() {
+    }
+
+    /**
+     * 提取结果
+     */
+    public static class Result {
+
+        private final boolean found;
+
+        private final String remainder;
+
+        private Result(boolean found, String remainder) {
+            this.found = found;
+            this.remainder = remainder;
+        }
+
+        /**
+         * 是否找到目标字段（找到时已写入目标文件）
+         */
+        public boolean isFound() {
+            return found;
+        }
+
+        /**
+         * 去掉目标字段值后的 JSON 文本
+         */
+        public String getRemainder() {
+            return remainder;
+        }
+    }
+
+    /**
+     * 提取字段
+     *
+     * @param reader     JSON 响应
+     * @param field      Base64 字段名（任意层级首次出现的同名字段）
+     * @param targetFile 解码后写入的文件
+     * @return 提取结果；未找到字段时不会创建目标文件
+     * @throws IOException 读取或写入失败
+     */
+    public static Result extract(Reader reader, String field, File targetFile) throws IOException {
+        StringBuilder remainder = new StringBuilder();
+        StringBuilder lastString = new StringBuilder();
+        boolean found = false;
+        boolean awaitingValue = false;
+        boolean inString = false;
+        int ch;
+        while ((ch = reader.read()) != -1) {
+            if (inString) {
+                remainder.append((char) ch);
+                if (ch == '\\') {
+                    int escaped = reader.read();
+                    if (escaped == -1) {
+                        break;
+                    }
+                    remainder.append((char) escaped);
+                    lastString.append('\\').append((char) escaped);
+                } else if (ch == '"') {
+                    inString = false;
+                } else {
+                    lastString.append((char) ch);
+                }
+                continue;
+            }
+
+            if (ch == '"') {
+                if (awaitingValue && !found) {
+                    // 目标字段的字符串值：流式解码，不写入 remainder
+                    remainder.append("\"\"");
+                    decodeStringValue(reader, targetFile);
+                    found = true;
+                    awaitingValue = false;
+                    continue;
+                }
+                inString = true;
+                lastString.setLength(0);
+                remainder.append('"');
+                continue;
+            }
+
+            remainder.append((char) ch);
+            if (ch == ':') {
+                awaitingValue = field.contentEquals(lastString);
+            } else if (!Character.isWhitespace(ch)) {
+                awaitingValue = false;
+            }
+        }
+        return new Result(found, remainder.toString());
+    }
+
+    /**
+     * 读取到字符串结束引号为止，处理 JSON 转义后送入 Base64 解码（MIME 解码器忽略换行等非字母表字符）
+     */
+    private static void decodeStringValue(Reader reader, File targetFile) throws IOException {
+        JsonStringInputStream source = new JsonStringInputStream(reader);
+        try (InputStream input = Base64.getMimeDecoder().wrap(source);
+             OutputStream output = new BufferedOutputStream(Files.newOutputStream(targetFile.toPath()))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+        // 解码器读到填充符后即停止，剩余内容读到结束引号为止
+        source.drain();
+    }
+
+    /**
+     * 把 JSON 字符串内容按字节暴露给 Base64 解码器，遇到结束引号时结束
+     */
+    private static class JsonStringInputStream extends InputStream {
+
+        private final Reader reader;
+
+        private boolean finished;
+
+        private JsonStringInputStream(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (!finished) {
+                int ch = reader.read();
+                if (ch == -1 || ch == '"') {
+                    finished = true;
+                    return -1;
+                }
+                if (ch == '\\') {
+                    int escaped = reader.read();
+                    if (escaped == 'u') {
+                        char[] hex = new char[4];
+                        for (int i = 0; i < 4; i++) {
+                            hex[i] = (char) reader.read();
+                        }
+                        return Integer.parseInt(new String(hex), 16) & 0xFF;
+                    }
+                    if (escaped == '/' || escaped == '\\') {
+                        return escaped;
+                    }
+                    // \n \r \t 等转义对 Base64 无意义，跳过
+                    continue;
+                }
+                return ch;
+            }
+            return -1;
+        }
+
+        private void drain() throws IOException {
+            while (read() != -1) {
+                // 丢弃到结束引号
+            }
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.prospect.giraffe.material.service.watermark;
 
+import com.prospect.giraffe.material.service.image.ImagePayload;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * 水印去除适配器接口
@@ -18,6 +25,59 @@ public interface IWatermarkRemovalAdapter {
      */
     File removeWatermark(File inputFile) throws Exception;
 
+    /**
+     * 去除水印并直接写到目标位置
+     * 默认实现调用 {@link #removeWatermark(File)} 后把结果移动到目标位置，
+     * 适配器可覆盖此方法把服务商响应直接写入目标目录下的临时文件再原子改名，省去一次复制
+     *
+     * @param inputFile 输入文件
+     * @param target    目标位置
+     * @return 处理后的文件（即目标文件）
+     * @throws Exception 异常
+     */
+    default File removeWatermark(File inputFile, Path target) throws Exception {
+        File resultFile = removeWatermark(inputFile);
+        if (!resultFile.toPath().equals(target)) {
+            moveAtomically(resultFile.toPath(), target);
+        }
+        return target.toFile();
+    }
+
+    /**
+     * 去除水印，输入可以是内存中的图片
+     * 默认实现把内存内容先写到目标目录下的临时文件再调用 {@link #removeWatermark(File, Path)}，
+     * 适配器可覆盖此方法直接从内存构造请求体
+     *
+     * @param input  输入图片
+     * @param target 目标位置
+     * @return 处理后的文件（即目标文件）
+     * @throws Exception 异常
+     */
+    default File removeWatermark(ImagePayload input, Path target) throws Exception {
+        if (!input.isInMemory()) {
+            return removeWatermark(input.getFile(), target);
+        }
+        Path source = target.resolveSibling(input.getFileName() + ".src");
+        try {
+            input.writeTo(source.toFile());
+            return removeWatermark(source.toFile(), target);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    /**
+     * 处理一张图片预计占用的堆内存（字节），调用前按此向全局内存预算申请额度
+     * 默认按文件大小估算：内置云端适配器的请求与响应均已流式处理，只需为连接缓冲预留；
+     * 在本地解码图片的适配器应按像素数覆盖此方法
+     *
+     * @param input 输入图片
+     * @return 预计占用的字节数
+     */
+    default long memoryEstimate(ImagePayload input) {
+        return input.size();
+    }
+
     /**
      * 获取服务商名称
      *
@@ -31,5 +91,23 @@ public interface IWatermarkRemovalAdapter {
      * @return 是否可用
      */
     boolean isAvailable();
+
+    /**
+     * 目标位置同目录下的临时文件，保证最终改名不跨文件系统
+     */
+    static Path tempFileFor(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    /**
+     * 原子改名到目标位置，文件系统不支持时退化为普通替换
+     */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
 
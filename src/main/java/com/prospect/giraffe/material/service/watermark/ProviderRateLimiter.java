@@ -0,0 +1,173 @@
+package com.prospect.giraffe.material.service.watermark;
+
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 水印服务商限流器
+ * 每个服务商一个并发上限 + 令牌桶；收到限流响应时速率减半并暂停发放令牌，
+ * 之后每次成功按配置速率的 5% 逐步恢复，使吞吐稳定在服务商上限附近
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class ProviderRateLimiter {
+
+    /**
+     * 降速后的最低速率占配置速率的比例
+     */
+    private static final double MIN_RATE_RATIO = 0.1;
+
+    /**
+     * 每次成功恢复的速率占配置速率的比例
+     */
+    private static final double RECOVERY_RATIO = 0.05;
+
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * 获取一次调用许可，并发已满或令牌不足时等待
+     *
+     * @param provider 服务商
+     * @param config   服务商限流配置
+     * @return 许可，调用结束后关闭以归还并发名额
+     * @throws InterruptedException 等待被中断
+     */
+    public Permit acquire(String provider, WatermarkRemovalConfig.RateLimitConfig config) throws InterruptedException {
+        Limiter limiter = limiters.computeIfAbsent(provider, k -> new Limiter(config));
+        if (limiter.inFlight != null) {
+            limiter.inFlight.acquire();
+        }
+        try {
+            long waitMillis;
+            while ((waitMillis = limiter.reserve()) > 0) {
+                Thread.sleep(waitMillis);
+            }
+        } catch (InterruptedException e) {
+            if (limiter.inFlight != null) {
+                limiter.inFlight.release();
+            }
+            throw e;
+        }
+        return new Permit(limiter);
+    }
+
+    /**
+     * 反馈调用成功，逐步恢复速率
+     */
+    public void onSuccess(String provider) {
+        Limiter limiter = limiters.get(provider);
+        if (limiter != null) {
+            limiter.recover();
+        }
+    }
+
+    /**
+     * 反馈服务商限流，速率减半并暂停
+     *
+     * @param provider         服务商
+     * @param retryAfterMillis 服务商建议的等待时间（毫秒），未知时为0
+     */
+    public void onThrottled(String provider, long retryAfterMillis) {
+        Limiter limiter = limiters.get(provider);
+        if (limiter != null) {
+            double rate = limiter.throttle(retryAfterMillis);
+            log.warn("服务商 {} 触发限流，速率降至 {}/s", provider, String.format("%.2f", rate));
+        }
+    }
+
+    /**
+     * 调用许可
+     */
+    public static class Permit implements AutoCloseable {
+
+        private Limiter limiter;
+
+        private Permit(Limiter limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void close() {
+            if (limiter != null && limiter.inFlight != null) {
+                limiter.inFlight.release();
+            }
+            limiter = null;
+        }
+    }
+
+    /**
+     * 单个服务商的限流状态
+     */
+    private static class Limiter {
+
+        private final Semaphore inFlight;
+
+        private final double maxRate;
+
+        private final double burst;
+
+        private double rate;
+
+        private double tokens;
+
+        private long lastRefill;
+
+        private long pausedUntil;
+
+        private Limiter(WatermarkRemovalConfig.RateLimitConfig config) {
+            int maxConcurrency = config.getMaxConcurrency() != null ? config.getMaxConcurrency() : 0;
+            this.inFlight = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+            this.maxRate = config.getQps() != null ? config.getQps() : 0;
+            this.burst = Math.max(1, config.getBurst() != null ? config.getBurst() : 1);
+            this.rate = maxRate;
+            this.tokens = burst;
+            this.lastRefill = System.currentTimeMillis();
+        }
+
+        /**
+         * 尝试取一个令牌，成功返回0，否则返回需要等待的毫秒数
+         * 限流暂停对不限速（qps=0）的服务商同样生效
+         */
+        private synchronized long reserve() {
+            long now = System.currentTimeMillis();
+            if (now < pausedUntil) {
+                return pausedUntil - now;
+            }
+            if (maxRate <= 0) {
+                return 0;
+            }
+            tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1000.0);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1L, (long) Math.ceil((1 - tokens) * 1000.0 / rate));
+        }
+
+        private synchronized void recover() {
+            if (maxRate > 0) {
+                rate = Math.min(maxRate, rate + maxRate * RECOVERY_RATIO);
+            }
+        }
+
+        private synchronized double throttle(long retryAfterMillis) {
+            if (maxRate <= 0) {
+                pausedUntil = System.currentTimeMillis() + Math.max(retryAfterMillis, 1000L);
+                return 0;
+            }
+            rate = Math.max(maxRate * MIN_RATE_RATIO, rate / 2);
+            tokens = 0;
+            lastRefill = System.currentTimeMillis();
+            pausedUntil = lastRefill + Math.max(retryAfterMillis, (long) (1000.0 / rate));
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.prospect.giraffe.material.service.watermark;
+
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * 水印服务商路由
+ * 每个服务商记录调用延迟与错误率的指数加权移动平均（EWMA），
+ * 路由时先按额度状态分组（用量未超前 → 超前 → 已用尽），同组内按 延迟 × (1 + 惩罚系数 × 错误率) 从低到高排序；
+ * 还没有调用记录的服务商评分为 0，会被优先尝试一次以获得样本
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class ProviderRouter {
+
+    @Resource
+    private WatermarkRemovalConfig config;
+
+    private final Map<String, Health> healths = new ConcurrentHashMap<>();
+
+    /**
+     * 对候选服务商排序
+     *
+     * @param providers 候选服务商
+     * @param quotaTier 服务商的额度分组，数值小的组优先
+     * @return 按优先级排序的服务商
+     */
+    public List<String> rank(Collection<String> providers, ToIntFunction<String> quotaTier) {
+        List<String> ranked = new ArrayList<>(providers);
+        ranked.sort(Comparator.comparingInt(quotaTier)
+                .thenComparingDouble(this::score));
+        return ranked;
+    }
+
+    /**
+     * 记录一次调用结果
+     *
+     * @param provider      服务商
+     * @param latencyMillis 调用耗时（毫秒）
+     * @param success       是否成功
+     */
+    public void record(String provider, long latencyMillis, boolean success) {
+        healths.computeIfAbsent(provider, k -> new Health()).update(latencyMillis, success, alpha());
+    }
+
+    /**
+     * 服务商近期平均延迟（毫秒），没有记录时返回 null
+     */
+    public Double latencyOf(String provider) {
+        Health health = healths.get(provider);
+        return health != null && health.samples > 0 ? health.latency : null;
+    }
+
+    /**
+     * 服务商近期错误率，没有记录时返回 null
+     */
+    public Double errorRateOf(String provider) {
+        Health health = healths.get(provider);
+        return health != null && health.samples > 0 ? health.errorRate : null;
+    }
+
+    private double score(String provider) {
+        Health health = healths.get(provider);
+        if (health == null || health.samples == 0) {
+            return 0;
+        }
+        double penalty = config.getRouting().getErrorPenalty() != null ? config.getRouting().getErrorPenalty() : 4.0;
+        return health.latency * (1 + penalty * health.errorRate);
+    }
+
+    private double alpha() {
+        Double alpha = config.getRouting().getEwmaAlpha();
+        return alpha != null && alpha > 0 && alpha <= 1 ? alpha : 0.3;
+    }
+
+    /**
+     * 单个服务商的近期表现
+     */
+    private static class Health {
+
+        private double latency;
+
+        private double errorRate;
+
+        private long samples;
+
+        private synchronized void update(long latencyMillis, boolean success, double alpha) {
+            if (samples == 0) {
+                latency = latencyMillis;
+                errorRate = success ? 0 : 1;
+            } else {
+                // 失败调用的耗时不代表正常延迟，只计入错误率
+                if (success) {
+                    latency = alpha * latencyMillis + (1 - alpha) * latency;
+                }
+                errorRate = alpha * (success ? 0 : 1) + (1 - alpha) * errorRate;
+            }
+            samples++;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.prospect.giraffe.material.service.watermark;
+
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 水印服务商额度台账
+ * 每次成功调用向台账文件追加一行 "日期,服务商,次数"，启动时回放得到每个服务商的当日 / 当月用量，
+ * 重启后额度统计不丢失；启动时把上月之前的记录合并压缩，文件大小保持在两个月的量级
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class QuotaLedger {
+
+    @Resource
+    private WatermarkRemovalConfig config;
+
+    /**
+     * 服务商 -> 日期 -> 调用次数
+     */
+    private final Map<String, TreeMap<LocalDate, Integer>> usage = new ConcurrentHashMap<>();
+
+    private BufferedWriter writer;
+
+    /**
+     * 用于取当前日期，测试时可替换以模拟跨日、跨月
+     */
+    private Clock clock = Clock.systemDefaultZone();
+
+    @PostConstruct
+    public void init() {
+        String ledgerFile = config.getQuotaLedgerFile();
+        if (ledgerFile == null || ledgerFile.isEmpty()) {
+            log.info("额度台账未配置，用量只记录在内存中");
+            return;
+        }
+        Path path = Paths.get(ledgerFile);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            if (Files.exists(path)) {
+                replay(Files.readAllLines(path, StandardCharsets.UTF_8));
+                compact(path);
+            }
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.info("额度台账已加载: {}", path);
+        } catch (IOException e) {
+            log.warn("加载额度台账失败，用量只记录在内存中: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("关闭额度台账失败: {}", e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * 记录一次调用并追加到台账文件
+     */
+    public synchronized void record(String provider) {
+        LocalDate today = LocalDate.now(clock);
+        add(provider, today, 1);
+        if (writer != null) {
+            try {
+                writer.write(today + "," + provider + ",1");
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                log.warn("写入额度台账失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 台账时钟的当前时间，额度周期与匀速用量须按同一时钟计算
+     */
+    public LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
+    /**
+     * 当日用量
+     */
+    public synchronized int usedToday(String provider) {
+        LocalDate today = LocalDate.now(clock);
+        return sum(provider, today, today);
+    }
+
+    /**
+     * 当月用量
+     */
+    public synchronized int usedThisMonth(String provider) {
+        LocalDate today = LocalDate.now(clock);
+        return sum(provider, today.withDayOfMonth(1), today);
+    }
+
+    private int sum(String provider, LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, Integer> days = usage.get(provider);
+        if (days == null) {
+            return 0;
+        }
+        return days.subMap(from, true, to, true).values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private void add(String provider, LocalDate date, int count) {
+        usage.computeIfAbsent(provider, k -> new TreeMap<>()).merge(date, count, Integer::sum);
+    }
+
+    private void replay(List<String> lines) {
+        for (String line : lines) {
+            String[] parts = line.split(",");
+            if (parts.length != 3) {
+                continue;
+            }
+            try {
+                add(parts[1], LocalDate.parse(parts[0]), Integer.parseInt(parts[2]));
+            } catch (RuntimeException e) {
+                log.debug("忽略无法解析的台账记录: {}", line);
+            }
+        }
+    }
+
+    /**
+     * 丢弃上月之前的记录，同一天的记录合并为一行，写入临时文件后替换
+     */
+    private void compact(Path path) throws IOException {
+        LocalDate keepFrom = LocalDate.now(clock).minusMonths(1).withDayOfMonth(1);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter output = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, TreeMap<LocalDate, Integer>> entry : usage.entrySet()) {
+                entry.getValue().headMap(keepFrom).clear();
+                for (Map.Entry<LocalDate, Integer> day : entry.getValue().entrySet()) {
+                    output.write(day.getKey() + "," + entry.getKey() + "," + day.getValue());
+                    output.newLine();
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,201 @@
+package com.prospect.giraffe.material.service.watermark;
+
+import com.prospect.giraffe.material.service.image.ImagePayload;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.HashingSink;
+import okio.Okio;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 流式请求体
+ * 图片内容（文件或内存缓冲区）按块读取后直接 Base64（及 URL 编码）写入 OkHttp 的输出，不在堆上保留完整的 Base64 字符串；
+ * 请求体可重复写出，OkHttp 重试时重新读取
+ *
+ * @author giraffe
+ */
+public final class StreamingRequestBodies {
+
+    private static final MediaType FORM = MediaType.parse("application/x-www-form-urlencoded");
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private StreamingRequestBodies() {
+    }
+
+    /**
+     * 表单请求体：{field}=URL编码(Base64(文件))
+     */
+    public static RequestBody base64Form(File file, String field) throws IOException {
+        return base64Form(ImagePayload.ofFile(file), field);
+    }
+
+    /**
+     * 表单请求体：{field}=URL编码(Base64(图片内容))
+     */
+    public static RequestBody base64Form(ImagePayload file, String field) throws IOException {
+        byte[] prefix = (field + "=").getBytes(StandardCharsets.UTF_8);
+        // Base64 中 + / = 三个字符 URL 编码后各占 3 字节，预先统计以给出准确的 Content-Length
+        CountingOutputStream counter = new CountingOutputStream();
+        writeBase64(file, new UrlEncodingOutputStream(counter));
+        long contentLength = prefix.length + counter.count;
+
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return FORM;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.write(prefix);
+                writeBase64(file, new UrlEncodingOutputStream(nonClosing(sink.outputStream())));
+            }
+        };
+    }
+
+    /**
+     * JSON 请求体：{"field":"Base64(文件)"}（Base64 字符无需 JSON 转义）
+     */
+    public static RequestBody base64Json(File file, String field) throws IOException {
+        return base64Json(ImagePayload.ofFile(file), field);
+    }
+
+    /**
+     * JSON 请求体：{"field":"Base64(图片内容)"}
+     */
+    public static RequestBody base64Json(ImagePayload file, String field) throws IOException {
+        byte[] prefix = ("{\"" + field + "\":\"").getBytes(StandardCharsets.UTF_8);
+        byte[] suffix = "\"}".getBytes(StandardCharsets.UTF_8);
+        long contentLength = prefix.length + 4 * ((file.size() + 2) / 3) + suffix.length;
+
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.write(prefix);
+                writeBase64(file, nonClosing(sink.outputStream()));
+                sink.write(suffix);
+            }
+        };
+    }
+
+    /**
+     * 以流式方式计算请求体的 SHA-256（十六进制）
+     */
+    public static String sha256Hex(RequestBody body) throws IOException {
+        HashingSink hashingSink = HashingSink.sha256(Okio.blackhole());
+        try (BufferedSink sink = Okio.buffer(hashingSink)) {
+            body.writeTo(sink);
+        }
+        return hashingSink.hash().hex();
+    }
+
+    private static void writeBase64(ImagePayload file, OutputStream target) throws IOException {
+        try (InputStream input = file.openStream();
+             OutputStream output = Base64.getEncoder().wrap(target)) {
+            byte[] buffer = new byte[8190];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * 关闭 Base64 编码流时不能关闭 OkHttp 的 sink
+     */
+    private static OutputStream nonClosing(OutputStream output) {
+        return new FilterOutputStream(output) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * 对 Base64 输出做 URL 编码（只有 + / = 需要转义）
+     */
+    private static class UrlEncodingOutputStream extends FilterOutputStream {
+
+        private UrlEncodingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            switch (b) {
+                case '+':
+                    out.write(new byte[]{'%', '2', 'B'});
+                    break;
+                case '/':
+                    out.write(new byte[]{'%', '2', 'F'});
+                    break;
+                case '=':
+                    out.write(new byte[]{'%', '3', 'D'});
+                    break;
+                default:
+                    out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '+' || b[i] == '/' || b[i] == '=') {
+                    out.write(b, start, i - start);
+                    write(b[i]);
+                    start = i + 1;
+                }
+            }
+            out.write(b, start, off + len - start);
+        }
+    }
+
+    /**
+     * 只计数的输出流
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.prospect.giraffe.material.service.watermark;
+
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import com.prospect.giraffe.material.service.image.ImagePayload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 去水印结果磁盘缓存
+ * 以 输入文件 SHA-256 + 服务商 为键保存处理结果，相同图片再次处理时直接复用，不再调用服务商；
+ * 缓存总大小超过上限时按最近使用时间淘汰（最近使用时间记录在文件修改时间上，重启后仍有效）
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Component
+public class WatermarkResultCache {
+
+    @Resource
+    private WatermarkRemovalConfig config;
+
+    /**
+     * 缓存文件 -> 大小，按访问顺序排列
+     */
+    private final LinkedHashMap<Path, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes = 0;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    private Path cacheDir;
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            log.info("去水印结果缓存未启用");
+            return;
+        }
+        cacheDir = Paths.get(config.getCacheDir());
+        try {
+            Files.createDirectories(cacheDir);
+            List<Path> files;
+            try (Stream<Path> stream = Files.walk(cacheDir)) {
+                files = stream.filter(Files::isRegularFile)
+                        .sorted(Comparator.comparingLong(path -> path.toFile().lastModified()))
+                        .collect(Collectors.toList());
+            }
+            synchronized (entries) {
+                for (Path file : files) {
+                    long size = file.toFile().length();
+                    entries.put(file, size);
+                    totalBytes += size;
+                }
+                evictIfNeeded();
+            }
+            log.info("去水印结果缓存已加载: {} 个文件, {} 字节", entries.size(), totalBytes);
+        } catch (IOException e) {
+            log.warn("加载去水印结果缓存失败，缓存停用: {}", e.getMessage());
+            cacheDir = null;
+        }
+    }
+
+    /**
+     * 计算缓存键：输入内容的 SHA-256 + 服务商，缓存未启用时返回 null
+     */
+    public String keyOf(ImagePayload input, String provider) throws IOException {
+        return keyOf(digestOf(input), provider);
+    }
+
+    /**
+     * 由内容摘要和服务商组成缓存键，摘要为 null 时返回 null
+     * 同一图片需要查询多个服务商时只计算一次摘要
+     */
+    public String keyOf(String digest, String provider) {
+        return digest != null ? provider + "/" + digest : null;
+    }
+
+    /**
+     * 计算输入内容的 SHA-256（十六进制），缓存未启用时返回 null
+     */
+    public String digestOf(ImagePayload input) throws IOException {
+        if (cacheDir == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream stream = new DigestInputStream(input.openStream(), digest)) {
+                byte[] buffer = new byte[8192];
+                while (stream.read(buffer) != -1) {
+                    // 只需要摘要
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 命中时把缓存结果放到目标位置（优先硬链接，失败时复制）
+     *
+     * @param key        缓存键，为 null 时视为未命中
+     * @param targetFile 目标文件
+     * @return 命中时返回目标文件，否则返回 null
+     */
+    public File restore(String key, File targetFile) {
+        if (key == null) {
+            return null;
+        }
+        Path cached = cacheDir.resolve(key);
+        synchronized (entries) {
+            if (entries.get(cached) == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+        }
+        try {
+            Path target = targetFile.toPath();
+            Files.deleteIfExists(target);
+            try {
+                Files.createLink(target, cached);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(cached, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            cached.toFile().setLastModified(System.currentTimeMillis());
+            hitCount.incrementAndGet();
+            return targetFile;
+        } catch (IOException e) {
+            log.warn("读取去水印缓存失败: {}, 原因: {}", key, e.getMessage());
+            missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * 保存处理结果
+     */
+    public void store(String key, File resultFile) {
+        if (key == null) {
+            return;
+        }
+        Path cached = cacheDir.resolve(key);
+        try {
+            Files.createDirectories(cached.getParent());
+            Path temp = cached.resolveSibling(cached.getFileName() + ".tmp");
+            Files.copy(resultFile.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING);
+            long size = cached.toFile().length();
+            synchronized (entries) {
+                Long previous = entries.put(cached, size);
+                totalBytes += size - (previous != null ? previous : 0L);
+                evictIfNeeded();
+            }
+        } catch (IOException e) {
+            log.warn("写入去水印缓存失败: {}, 原因: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 命中率
+     */
+    public double getHitRate() {
+        long total = hitCount.get() + missCount.get();
+        return total > 0 ? (double) hitCount.get() / total : 0.0;
+    }
+
+    private void evictIfNeeded() {
+        long maxBytes = config.getCacheMaxBytes();
+        Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Path, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            try {
+                Files.deleteIfExists(eldest.getKey());
+            } catch (IOException e) {
+                log.warn("删除过期去水印缓存失败: {}", eldest.getKey());
+            }
+        }
+    }
+
+    private boolean isEnabled() {
+        return config.getCacheDir() != null && !config.getCacheDir().isEmpty()
+                && config.getCacheMaxBytes() != null && config.getCacheMaxBytes() > 0;
+    }
+}
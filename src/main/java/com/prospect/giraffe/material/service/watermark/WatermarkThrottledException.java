@@ -0,0 +1,29 @@
+package com.prospect.giraffe.material.service.watermark;
+
+/**
+ * 服务商限流异常（QPS 超限、HTTP 429 等），由限流器降速后重试，不计入普通重试次数
+ *
+ * @author giraffe
+ */
+public class WatermarkThrottledException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 服务商建议的等待时间（毫秒），未知时为0
+     */
+    private final long retryAfterMillis;
+
+    public WatermarkThrottledException(String message) {
+        this(message, 0L);
+    }
+
+    public WatermarkThrottledException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 水印去除结果
  *
@@ -41,9 +43,43 @@ public class WatermarkRemovalResult {
      */
     private Long duration;
 
+    /**
+     * 是否命中结果缓存（未调用服务商）
+     */
+    private Boolean cached;
+
     /**
      * 错误信息
      */
     private String errorMessage;
+
+    /**
+     * 依次调用过的服务商（命中缓存时为空）；前面失败的条目即发生了切换
+     */
+    private List<ProviderAttempt> attempts;
+
+    /**
+     * 单次服务商调用
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ProviderAttempt {
+        /**
+         * 服务商名称
+         */
+        private String provider;
+
+        /**
+         * 是否成功
+         */
+        private Boolean success;
+
+        /**
+         * 耗时（毫秒）
+         */
+        private Long duration;
+    }
 }
 
@@ -13,6 +13,7 @@
 //import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 //import org.springframework.stereotype.Service;
 //
+//import javax.annotation.PostConstruct;
 //import javax.annotation.Resource;
 //import java.io.File;
 //import java.io.FileOutputStream;
@@ -33,17 +34,23 @@
 //    @Resource
 //    private WatermarkRemovalConfig config;
 //
+//    @Resource
+//    private OkHttpClient sharedHttpClient;
+//
 //    private OkHttpClient httpClient;
 //    private final Gson gson = new Gson();
 //
-//    private OkHttpClient getHttpClient() {
-//        if (httpClient == null) {
-//            httpClient = new OkHttpClient.Builder()
-//                    .connectTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
-//                    .readTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
-//                    .build();
-//        }
-//        return httpClient;
+//    /**
+//     * 从共享客户端派生，复用连接池，只覆盖本服务商的超时设置
+//     */
+//    @PostConstruct
+//    public void init() {
+//        int timeout = config.getAliyun().getTimeout() != null ? config.getAliyun().getTimeout() : config.getTimeout();
+//        httpClient = sharedHttpClient.newBuilder()
+//                .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+//                .readTimeout(timeout, TimeUnit.MILLISECONDS)
+//                .writeTimeout(timeout, TimeUnit.MILLISECONDS)
+//                .build();
 //    }
 //
 //    @Override
@@ -85,7 +92,7 @@
 //                    // 注意：实际生产环境需要完整的签名机制
 //                    .build();
 //
-//            try (Response response = getHttpClient().newCall(request).execute()) {
+//            try (Response response = httpClient.newCall(request).execute()) {
 //                if (response.isSuccessful() && response.body() != null) {
 //                    String responseBody = response.body().string();
 //                    JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
@@ -147,7 +154,7 @@
 //                .get()
 //                .build();
 //
-//        try (Response response = getHttpClient().newCall(request).execute()) {
+//        try (Response response = httpClient.newCall(request).execute()) {
 //            if (response.isSuccessful() && response.body() != null) {
 //                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
 //                    fos.write(response.body().bytes());
@@ -3,19 +3,21 @@ package com.prospect.giraffe.material.service.watermark.impl;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import com.prospect.giraffe.material.service.image.ImagePayload;
+import com.prospect.giraffe.material.service.watermark.Base64JsonFieldExtractor;
 import com.prospect.giraffe.material.service.watermark.IWatermarkRemovalAdapter;
+import com.prospect.giraffe.material.service.watermark.StreamingRequestBodies;
+import com.prospect.giraffe.material.service.watermark.WatermarkThrottledException;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.Base64;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,22 +30,33 @@ import java.util.concurrent.TimeUnit;
 @ConditionalOnProperty(prefix = "watermark-removal.baidu", name = "enabled", havingValue = "true")
 public class BaiduWatermarkAdapter implements IWatermarkRemovalAdapter {
 
+    /**
+     * 百度云 QPS 超限错误码
+     */
+    private static final int QPS_LIMIT_ERROR_CODE = 18;
+
     @Resource
     private WatermarkRemovalConfig config;
 
+    @Resource
+    private OkHttpClient sharedHttpClient;
+
     private OkHttpClient httpClient;
     private final Gson gson = new Gson();
     private String accessToken;
     private long tokenExpireTime = 0;
 
-    private OkHttpClient getHttpClient() {
-        if (httpClient == null) {
-            httpClient = new OkHttpClient.Builder()
-                    .connectTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
-                    .readTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
-                    .build();
-        }
-        return httpClient;
+    /**
+     * 从共享客户端派生，复用连接池，只覆盖本服务商的超时设置
+     */
+    @PostConstruct
+    public void init() {
+        int timeout = config.getBaidu().getTimeout() != null ? config.getBaidu().getTimeout() : config.getTimeout();
+        httpClient = sharedHttpClient.newBuilder()
+                .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                .readTimeout(timeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeout, TimeUnit.MILLISECONDS)
+                .build();
     }
 
     /**
@@ -69,7 +82,7 @@ public class BaiduWatermarkAdapter implements IWatermarkRemovalAdapter {
                     .get()
                     .build();
 
-            try (Response response = getHttpClient().newCall(request).execute()) {
+            try (Response response = httpClient.newCall(request).execute()) {
                 if (response.isSuccessful() && response.body() != null) {
                     JsonObject result = gson.fromJson(response.body().string(), JsonObject.class);
                     accessToken = result.get("access_token").getAsString();
@@ -87,26 +100,28 @@ public class BaiduWatermarkAdapter implements IWatermarkRemovalAdapter {
 
     @Override
     public File removeWatermark(File inputFile) throws Exception {
-        log.info("使用百度云服务去除水印: {}", inputFile.getName());
+        return removeWatermark(inputFile, new File(inputFile.getParent(), "cleaned_" + inputFile.getName()).toPath());
+    }
+
+    @Override
+    public File removeWatermark(File inputFile, Path target) throws Exception {
+        return removeWatermark(ImagePayload.ofFile(inputFile), target);
+    }
 
+    @Override
+    public File removeWatermark(ImagePayload input, Path target) throws Exception {
+        log.info("使用百度云服务去除水印: {}", input.getFileName());
+
+        // 响应直接解码到目标目录下的临时文件，成功后原子改名
+        File outputFile = IWatermarkRemovalAdapter.tempFileFor(target).toFile();
         try {
             // 获取 Access Token
             String token = getAccessToken();
 
-            // 读取图片并转换为 Base64
-            byte[] imageBytes = Files.readAllBytes(inputFile.toPath());
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
-
-            // URL 编码
-            String encodedImage = URLEncoder.encode(base64Image, StandardCharsets.UTF_8.name());
-
-            // 构建请求
+            // 构建请求：图片按块读取后流式 Base64 + URL 编码写入请求体
             String url = "https://aip.baidubce.com/rest/2.0/image-process/v1/remove_watermark?access_token=" + token;
 
-            RequestBody body = RequestBody.create(
-                    "image=" + encodedImage,
-                    MediaType.parse("application/x-www-form-urlencoded")
-            );
+            RequestBody body = StreamingRequestBodies.base64Form(input, "image");
 
             Request request = new Request.Builder()
                     .url(url)
@@ -114,35 +129,34 @@ public class BaiduWatermarkAdapter implements IWatermarkRemovalAdapter {
                     .addHeader("Content-Type", "application/x-www-form-urlencoded")
                     .build();
 
-            try (Response response = getHttpClient().newCall(request).execute()) {
+            try (Response response = httpClient.newCall(request).execute()) {
                 if (response.isSuccessful() && response.body() != null) {
-                    String responseBody = response.body().string();
-                    JsonObject result = gson.fromJson(responseBody, JsonObject.class);
+                    // 处理后的图片（Base64）边读边解码写入文件，其余字段用于检查错误
+                    Base64JsonFieldExtractor.Result extracted = Base64JsonFieldExtractor.extract(
+                            response.body().charStream(), "image", outputFile);
+                    JsonObject result = gson.fromJson(extracted.getRemainder(), JsonObject.class);
 
                     // 检查错误
                     if (result.has("error_code")) {
+                        Files.deleteIfExists(outputFile.toPath());
                         int errorCode = result.get("error_code").getAsInt();
                         String errorMsg = result.has("error_msg") ? result.get("error_msg").getAsString() : "未知错误";
+                        if (errorCode == QPS_LIMIT_ERROR_CODE) {
+                            throw new WatermarkThrottledException("百度云QPS超限: " + errorMsg);
+                        }
                         throw new Exception("百度云API错误: [" + errorCode + "] " + errorMsg);
                     }
 
-                    // 获取处理后的图片（Base64）
-                    if (!result.has("image")) {
+                    if (!extracted.isFound()) {
                         throw new Exception("百度云API返回数据中没有图片");
                     }
 
-                    String resultImage = result.get("image").getAsString();
-                    byte[] resultBytes = Base64.getDecoder().decode(resultImage);
-
-                    // 保存文件
-                    File outputFile = new File(inputFile.getParent(), "cleaned_" + inputFile.getName());
-                    try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                        fos.write(resultBytes);
-                    }
-
-                    log.info("百度云去水印完成: {}", outputFile.getName());
-                    return outputFile;
+                    IWatermarkRemovalAdapter.moveAtomically(outputFile.toPath(), target);
+                    log.info("百度云去水印完成: {}", target.getFileName());
+                    return target.toFile();
 
+                } else if (response.code() == 429) {
+                    throw new WatermarkThrottledException("百度云API限流: HTTP 429", retryAfterMillis(response));
                 } else {
                     throw new Exception("百度云API调用失败: HTTP " + response.code());
                 }
@@ -151,6 +165,20 @@ public class BaiduWatermarkAdapter implements IWatermarkRemovalAdapter {
         } catch (Exception e) {
             log.error("百度云去水印异常", e);
             throw e;
+        } finally {
+            Files.deleteIfExists(outputFile.toPath());
+        }
+    }
+
+    /**
+     * 解析 Retry-After 响应头（秒）
+     */
+    private long retryAfterMillis(Response response) {
+        String retryAfter = response.header("Retry-After");
+        try {
+            return retryAfter != null ? Long.parseLong(retryAfter.trim()) * 1000L : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
         }
     }
 
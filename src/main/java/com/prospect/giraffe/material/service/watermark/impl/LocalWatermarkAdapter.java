@@ -0,0 +1,379 @@
+package com.prospect.giraffe.material.service.watermark.impl;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import com.prospect.giraffe.material.service.image.ImageHeader;
+import com.prospect.giraffe.material.service.image.ImageHeaderSniffer;
+import com.prospect.giraffe.material.service.image.ImagePayload;
+import com.prospect.giraffe.material.service.watermark.IWatermarkRemovalAdapter;
+import com.prospect.giraffe.material.service.watermark.local.PatchInpainter;
+import com.prospect.giraffe.material.service.watermark.local.TemplateMatcher;
+import com.prospect.giraffe.material.service.watermark.local.WatermarkTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地水印去除适配器
+ * 不调用网络：按配置的站点水印模板在预期区域内做模板匹配定位水印，
+ * 再对水印掩码做基于图块的修复，修复按列分块在专用线程池中并行执行
+ *
+ * @author giraffe
+ */
+@Slf4j
+@Service("localWatermarkAdapter")
+@ConditionalOnProperty(prefix = "watermark-removal.local", name = "enabled", havingValue = "true")
+public class LocalWatermarkAdapter implements IWatermarkRemovalAdapter {
+
+    /**
+     * 每像素堆内存占用峰值：解码结果与格式统一后的 int 图像（各 4 字节，解码时），
+     * 之后为 int 图像、像素数组、灰度数组（各 4 字节），匹配完成后灰度数组换成修复掩码（1 字节）
+     */
+    private static final long BYTES_PER_PIXEL = 12L;
+
+    /**
+     * 估算内存时读取的文件头字节数（JPEG 的尺寸段可能在 EXIF 之后）
+     */
+    private static final int HEADER_PROBE_BYTES = 64 * 1024;
+
+    @Resource
+    private WatermarkRemovalConfig config;
+
+    @Resource
+    private DownloadConfig downloadConfig;
+
+    private final List<WatermarkTemplate> templates = new ArrayList<>();
+
+    /**
+     * 修复分块的专用线程池：调用方持有内存预算额度等待修复完成，
+     * 分块不能放到会等待内存预算的转码线程池，否则转码线程全部等待额度时双方互相等待
+     */
+    private ExecutorService inpaintExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        inpaintExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, "watermark-inpaint-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (WatermarkRemovalConfig.TemplateConfig templateConfig : config.getLocal().getTemplates()) {
+            try {
+                templates.add(WatermarkTemplate.load(templateConfig));
+                if (templateConfig.getSites() == null || templateConfig.getSites().isEmpty()) {
+                    log.warn("水印模板未配置 sites，将对所有站点的图片匹配: {}", templateConfig.getName());
+                } else {
+                    log.info("加载水印模板: {}, 站点: {}", templateConfig.getName(), templateConfig.getSites());
+                }
+            } catch (IOException e) {
+                log.warn("加载水印模板失败: {}, 原因: {}", templateConfig.getName(), e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        inpaintExecutor.shutdownNow();
+    }
+
+    /**
+     * 按图片头中的宽高估算；读不出尺寸时按允许的最大像素数估算
+     */
+    @Override
+    public long memoryEstimate(ImagePayload input) {
+        long pixels = maxPixels();
+        try (InputStream stream = input.openStream()) {
+            byte[] headerBytes = new byte[HEADER_PROBE_BYTES];
+            ImageHeader header = ImageHeaderSniffer.sniff(headerBytes, IOUtils.read(stream, headerBytes));
+            if (header.hasDimensions()) {
+                pixels = Math.min(pixels, (long) header.getWidth() * header.getHeight());
+            }
+        } catch (IOException e) {
+            log.debug("读取图片头失败，按最大像素数估算内存: {}", e.getMessage());
+        }
+        return Math.max(input.size(), pixels * BYTES_PER_PIXEL);
+    }
+
+    @Override
+    public File removeWatermark(File inputFile) throws Exception {
+        return removeWatermark(inputFile, new File(inputFile.getParent(), "cleaned_" + inputFile.getName()).toPath());
+    }
+
+    @Override
+    public File removeWatermark(File inputFile, Path target) throws Exception {
+        return removeWatermark(ImagePayload.ofFile(inputFile), target);
+    }
+
+    @Override
+    public File removeWatermark(ImagePayload input, Path target) throws Exception {
+        log.info("使用本地模板去除水印: {}", input.getFileName());
+        List<WatermarkTemplate> candidates = templatesFor(input);
+        if (candidates.isEmpty()) {
+            throw new Exception("没有适用于该站点的水印模板: " + hostOf(input.getSourceUrl()));
+        }
+
+        String[] formatName = new String[1];
+        BufferedImage image = read(input, formatName);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+
+        // 定位水印：图片来源站点的模板中得分最高且达到阈值的位置
+        float[] gray = new float[argb.length];
+        for (int i = 0; i < argb.length; i++) {
+            int rgb = argb[i];
+            gray[i] = 0.299f * ((rgb >> 16) & 0xFF) + 0.587f * ((rgb >> 8) & 0xFF) + 0.114f * (rgb & 0xFF);
+        }
+        WatermarkTemplate bestTemplate = null;
+        WatermarkTemplate.Scaled bestScaled = null;
+        TemplateMatcher.Match bestMatch = null;
+        for (WatermarkTemplate template : candidates) {
+            WatermarkTemplate.Scaled scaled = template.scaledFor(width);
+            WatermarkRemovalConfig.TemplateConfig templateConfig = template.getConfig();
+            TemplateMatcher.Match match = TemplateMatcher.find(gray, width, height, scaled,
+                    templateConfig.getRegion(), templateConfig.getSearchFraction() != null ? templateConfig.getSearchFraction() : 0.3);
+            double minScore = templateConfig.getMinScore() != null ? templateConfig.getMinScore() : 0.8;
+            if (match != null && match.getScore() >= minScore
+                    && (bestMatch == null || match.getScore() > bestMatch.getScore())) {
+                bestTemplate = template;
+                bestScaled = scaled;
+                bestMatch = match;
+            }
+        }
+        if (bestMatch == null) {
+            throw new Exception("未在图片中找到已配置的水印模板");
+        }
+        log.info("水印模板匹配: file={}, template={}, 位置=({}, {}), 得分={}", input.getFileName(), bestTemplate.getName(),
+                bestMatch.getX(), bestMatch.getY(), String.format("%.3f", bestMatch.getScore()));
+
+        // 修复掩码区域；灰度数组不再使用，先释放再分配掩码
+        gray = null;
+        boolean[] hole = new boolean[argb.length];
+        Rectangle box = placeMask(hole, width, height, bestScaled, bestMatch, bestTemplate.getConfig().getMaskDilation());
+        if (box.isEmpty()) {
+            throw new Exception("水印模板掩码为空: " + bestTemplate.getName());
+        }
+        WatermarkRemovalConfig.LocalConfig local = config.getLocal();
+        for (Future<Void> tile : inpaintExecutor.invokeAll(PatchInpainter.tileTasks(argb, width, height, hole, box,
+                local.getPatchRadius(), local.getSearchRadius(), local.getTileWidth()))) {
+            tile.get();
+        }
+        image.setRGB(0, 0, width, height, argb, 0, width);
+
+        // 写入目标目录下的临时文件，成功后原子改名
+        Path tempFile = IWatermarkRemovalAdapter.tempFileFor(target);
+        try {
+            // 原格式无法编码而改写为 PNG 时，扩展名随之改为 .png
+            String writtenFormat = write(image, formatName[0], tempFile.toFile());
+            Path output = writtenFormat.equals(formatName[0]) ? target : withExtension(target, writtenFormat);
+            IWatermarkRemovalAdapter.moveAtomically(tempFile, output);
+            log.info("本地去水印完成: {}", output.getFileName());
+            return output.toFile();
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * 图片URL或所在页面URL的主机名属于模板配置的站点时使用该模板，未配置站点的模板对所有图片生效
+     */
+    private List<WatermarkTemplate> templatesFor(ImagePayload input) {
+        String sourceHost = hostOf(input.getSourceUrl());
+        String pageHost = hostOf(input.getPageUrl());
+        List<WatermarkTemplate> matched = new ArrayList<>();
+        for (WatermarkTemplate template : templates) {
+            List<String> sites = template.getConfig().getSites();
+            if (sites == null || sites.isEmpty()) {
+                matched.add(template);
+                continue;
+            }
+            for (String site : sites) {
+                if (hostMatches(sourceHost, site) || hostMatches(pageHost, site)) {
+                    matched.add(template);
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+    private static boolean hostMatches(String host, String site) {
+        if (host == null || site == null || site.isEmpty()) {
+            return false;
+        }
+        String domain = site.toLowerCase();
+        return host.equals(domain) || host.endsWith("." + domain);
+    }
+
+    private static String hostOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            String host = new URI(url).getHost();
+            return host != null ? host.toLowerCase() : null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 按匹配位置把模板掩码放到图片上并向外扩展，返回掩码的外接矩形
+     */
+    private Rectangle placeMask(boolean[] hole, int width, int height, WatermarkTemplate.Scaled template,
+                                TemplateMatcher.Match match, Integer dilation) {
+        int radius = dilation != null && dilation > 0 ? dilation : 0;
+        boolean[] mask = template.getMask();
+        int minX = width;
+        int minY = height;
+        int maxX = -1;
+        int maxY = -1;
+        for (int ty = 0; ty < template.getHeight(); ty++) {
+            for (int tx = 0; tx < template.getWidth(); tx++) {
+                if (!mask[ty * template.getWidth() + tx]) {
+                    continue;
+                }
+                int cx = match.getX() + tx;
+                int cy = match.getY() + ty;
+                for (int y = Math.max(0, cy - radius); y <= Math.min(height - 1, cy + radius); y++) {
+                    for (int x = Math.max(0, cx - radius); x <= Math.min(width - 1, cx + radius); x++) {
+                        hole[y * width + x] = true;
+                    }
+                }
+                minX = Math.min(minX, Math.max(0, cx - radius));
+                minY = Math.min(minY, Math.max(0, cy - radius));
+                maxX = Math.max(maxX, Math.min(width - 1, cx + radius));
+                maxY = Math.max(maxY, Math.min(height - 1, cy + radius));
+            }
+        }
+        return maxX < 0 ? new Rectangle() : new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * 解码图片并记录原格式，输出时保持格式不变
+     */
+    private BufferedImage read(ImagePayload input, String[] formatName) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(
+                input.isInMemory() ? input.openStream() : input.getFile())) {
+            Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("无法读取图片内容，可能不是有效的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                formatName[0] = reader.getFormatName().toLowerCase();
+                // 本地修复需要全尺寸像素，超过单次解码上限的图片不处理（auto 时切换到云端服务商）
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels()) {
+                    throw new IOException(String.format("图片像素数超过本地去水印上限: %dx%d",
+                            reader.getWidth(0), reader.getHeight(0)));
+                }
+                BufferedImage decoded = reader.read(0);
+                // 统一为 int 像素，便于按像素读写
+                int type = decoded.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+                if (decoded.getType() == type) {
+                    return decoded;
+                }
+                BufferedImage converted = new BufferedImage(decoded.getWidth(), decoded.getHeight(), type);
+                Graphics2D graphics = converted.createGraphics();
+                try {
+                    graphics.drawImage(decoded, 0, 0, null);
+                } finally {
+                    graphics.dispose();
+                }
+                return converted;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 按原格式编码；原格式没有可用的编码器（或编码器不支持该图片类型）时改为 PNG
+     *
+     * @return 实际写入的格式
+     */
+    private String write(BufferedImage image, String formatName, File targetFile) throws IOException {
+        if (!"jpeg".equals(formatName) && !"jpg".equals(formatName)) {
+            if (ImageIO.write(image, formatName, targetFile)) {
+                return formatName;
+            }
+            if ("png".equals(formatName) || !ImageIO.write(image, "png", targetFile)) {
+                throw new IOException("图片编码失败: " + targetFile.getName());
+            }
+            log.info("{} 格式无法编码，改为 PNG 输出: {}", formatName, targetFile.getName());
+            return "png";
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(targetFile)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            Float quality = config.getLocal().getJpegQuality();
+            param.setCompressionQuality(quality != null && quality > 0 && quality <= 1 ? quality : 0.92f);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return formatName;
+    }
+
+    private static Path withExtension(Path path, String extension) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return path.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + "." + extension);
+    }
+
+    /**
+     * 本地去水印允许的最大像素数，沿用单次解码上限 maxDecodePixels（未配置时用 maxImagePixels）
+     */
+    private long maxPixels() {
+        Long maxDecodePixels = downloadConfig.getMaxDecodePixels();
+        if (maxDecodePixels != null && maxDecodePixels > 0) {
+            return maxDecodePixels;
+        }
+        Long maxImagePixels = downloadConfig.getMaxImagePixels();
+        return maxImagePixels != null && maxImagePixels > 0 ? maxImagePixels : Long.MAX_VALUE / BYTES_PER_PIXEL;
+    }
+
+    @Override
+    public String getProviderName() {
+        return "local";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Boolean.TRUE.equals(config.getLocal().getEnabled()) && !templates.isEmpty();
+    }
+}
@@ -3,19 +3,24 @@ package com.prospect.giraffe.material.service.watermark.impl;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import com.prospect.giraffe.material.service.image.ImagePayload;
+import com.prospect.giraffe.material.service.watermark.Base64JsonFieldExtractor;
 import com.prospect.giraffe.material.service.watermark.IWatermarkRemovalAdapter;
+import com.prospect.giraffe.material.service.watermark.StreamingRequestBodies;
+import com.prospect.giraffe.material.service.watermark.WatermarkThrottledException;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -30,61 +35,79 @@ import java.util.concurrent.TimeUnit;
 @ConditionalOnProperty(prefix = "watermark-removal.tencent", name = "enabled", havingValue = "true")
 public class TencentWatermarkAdapter implements IWatermarkRemovalAdapter {
 
+    /**
+     * 腾讯云请求频率超限错误码前缀
+     */
+    private static final String RATE_LIMIT_ERROR_CODE = "RequestLimitExceeded";
+
     @Resource
     private WatermarkRemovalConfig config;
 
+    @Resource
+    private OkHttpClient sharedHttpClient;
+
     private OkHttpClient httpClient;
     private final Gson gson = new Gson();
 
-    private OkHttpClient getHttpClient() {
-        if (httpClient == null) {
-            httpClient = new OkHttpClient.Builder()
-                    .connectTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
-                    .readTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
-                    .build();
-        }
-        return httpClient;
+    /**
+     * 从共享客户端派生，复用连接池，只覆盖本服务商的超时设置
+     */
+    @PostConstruct
+    public void init() {
+        int timeout = config.getTencent().getTimeout() != null ? config.getTencent().getTimeout() : config.getTimeout();
+        httpClient = sharedHttpClient.newBuilder()
+                .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                .readTimeout(timeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeout, TimeUnit.MILLISECONDS)
+                .build();
     }
 
     @Override
     public File removeWatermark(File inputFile) throws Exception {
-        log.info("使用腾讯云服务去除水印: {}", inputFile.getName());
+        return removeWatermark(inputFile, new File(inputFile.getParent(), "cleaned_" + inputFile.getName()).toPath());
+    }
 
-        try {
-            // 读取图片并转换为 Base64
-            byte[] imageBytes = Files.readAllBytes(inputFile.toPath());
-            String base64Image = Base64.getEncoder().encodeToString(imageBytes);
+    @Override
+    public File removeWatermark(File inputFile, Path target) throws Exception {
+        return removeWatermark(ImagePayload.ofFile(inputFile), target);
+    }
 
-            // 构建请求参数
-            JsonObject params = new JsonObject();
-            params.addProperty("Image", base64Image);
+    @Override
+    public File removeWatermark(ImagePayload input, Path target) throws Exception {
+        log.info("使用腾讯云服务去除水印: {}", input.getFileName());
+
+        // 响应直接解码到目标目录下的临时文件，成功后原子改名
+        File outputFile = IWatermarkRemovalAdapter.tempFileFor(target).toFile();
+        try {
+            // 构建请求参数：图片按块读取后流式 Base64 写入请求体
+            RequestBody payload = StreamingRequestBodies.base64Json(input, "Image");
 
-            // 调用腾讯云 API
-            String result = callTencentAPI("RemoveWatermark", params.toString());
+            // 调用腾讯云 API，处理后的图片（Base64）边读边解码写入文件
+            Base64JsonFieldExtractor.Result extracted = callTencentAPI("RemoveWatermark", payload, outputFile);
 
             // 解析响应
-            JsonObject response = gson.fromJson(result, JsonObject.class);
+            JsonObject response = gson.fromJson(extracted.getRemainder(), JsonObject.class);
 
             if (response.has("Response")) {
                 JsonObject responseData = response.getAsJsonObject("Response");
 
                 if (responseData.has("Error")) {
+                    Files.deleteIfExists(outputFile.toPath());
                     JsonObject error = responseData.getAsJsonObject("Error");
+                    String errorCode = error.has("Code") ? error.get("Code").getAsString() : "";
+                    if (errorCode.startsWith(RATE_LIMIT_ERROR_CODE)) {
+                        throw new WatermarkThrottledException("腾讯云QPS超限: " + error.get("Message").getAsString());
+                    }
                     throw new Exception("腾讯云API错误: " + error.get("Message").getAsString());
                 }
 
-                // 获取处理后的图片（Base64）
-                String resultImage = responseData.get("WatermarkFreeImage").getAsString();
-                byte[] resultBytes = Base64.getDecoder().decode(resultImage);
-
-                // 保存文件
-                File outputFile = new File(inputFile.getParent(), "cleaned_" + inputFile.getName());
-                try (FileOutputStream fos = new FileOutputStream(outputFile)) {
-                    fos.write(resultBytes);
+                if (!extracted.isFound()) {
+                    throw new Exception("腾讯云API返回数据中没有图片");
                 }
 
-                log.info("腾讯云去水印完成: {}", outputFile.getName());
-                return outputFile;
+                IWatermarkRemovalAdapter.moveAtomically(outputFile.toPath(), target);
+                log.info("腾讯云去水印完成: {}", target.getFileName());
+                return target.toFile();
             } else {
                 throw new Exception("腾讯云API返回格式错误");
             }
@@ -92,13 +115,20 @@ public class TencentWatermarkAdapter implements IWatermarkRemovalAdapter {
         } catch (Exception e) {
             log.error("腾讯云去水印异常", e);
             throw e;
+        } finally {
+            Files.deleteIfExists(outputFile.toPath());
         }
     }
 
     /**
      * 调用腾讯云 API
+     *
+     * @param action     接口名
+     * @param payload    请求体（可重复写出，签名时流式计算摘要）
+     * @param outputFile 响应中图片字段解码后写入的文件
+     * @return 图片字段提取结果及其余响应内容
      */
-    private String callTencentAPI(String action, String payload) throws Exception {
+    private Base64JsonFieldExtractor.Result callTencentAPI(String action, RequestBody payload, File outputFile) throws Exception {
         String service = "tiia";
         String host = service + ".tencentcloudapi.com";
         String endpoint = "https://" + host;
@@ -115,7 +145,7 @@ public class TencentWatermarkAdapter implements IWatermarkRemovalAdapter {
         String canonicalQueryString = "";
         String canonicalHeaders = "content-type:application/json\nhost:" + host + "\n";
         String signedHeaders = "content-type;host";
-        String hashedRequestPayload = sha256Hex(payload);
+        String hashedRequestPayload = StreamingRequestBodies.sha256Hex(payload);
         String canonicalRequest = httpRequestMethod + "\n"
                 + canonicalUri + "\n"
                 + canonicalQueryString + "\n"
@@ -145,10 +175,9 @@ public class TencentWatermarkAdapter implements IWatermarkRemovalAdapter {
                 + "Signature=" + signature;
 
         // 发送请求
-        RequestBody body = RequestBody.create(payload, MediaType.parse("application/json"));
         Request request = new Request.Builder()
                 .url(endpoint)
-                .post(body)
+                .post(payload)
                 .addHeader("Authorization", authorization)
                 .addHeader("Content-Type", "application/json")
                 .addHeader("Host", host)
@@ -158,9 +187,11 @@ public class TencentWatermarkAdapter implements IWatermarkRemovalAdapter {
                 .addHeader("X-TC-Region", region)
                 .build();
 
-        try (Response response = getHttpClient().newCall(request).execute()) {
+        try (Response response = httpClient.newCall(request).execute()) {
             if (response.isSuccessful() && response.body() != null) {
-                return response.body().string();
+                return Base64JsonFieldExtractor.extract(response.body().charStream(), "WatermarkFreeImage", outputFile);
+            } else if (response.code() == 429) {
+                throw new WatermarkThrottledException("腾讯云API限流: HTTP 429");
             } else {
                 throw new Exception("腾讯云API调用失败: HTTP " + response.code());
             }
@@ -0,0 +1,322 @@
+package com.prospect.giraffe.material.service.watermark.local;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 基于图块的修复
+ * 掩码区域按列切成若干分块并行处理；每个分块从边缘向内逐层填充：
+ * 对边缘上的待修复像素，在周围搜索窗口内找与其已知邻域最相似（RGB 平方差最小）的完整已知图块，
+ * 把该图块对应位置的像素复制到图块内所有待修复像素上，直到分块填满
+ * 分块只读取原本已知的像素和自己填充的像素，只写自己范围内的像素，并行结果与执行顺序无关
+ *
+ * @author giraffe
+ */
+public final class PatchInpainter {
+
+    private static final int SEARCH_STEP = 2;
+
+    private PatchInpainter() {
+    }
+
+    /**
+     * 生成修复任务
+     *
+     * @param argb         图片像素（就地修改）
+     * @param width        图片宽度
+     * @param height       图片高度
+     * @param hole         需要修复的像素
+     * @param box          需要修复像素的外接矩形
+     * @param patchRadius  图块半径
+     * @param searchRadius 搜索半径
+     * @param tileWidth    分块宽度
+     * @return 各分块的修复任务，全部执行完成后修复结束
+     */
+    public static List<Callable<Void>> tileTasks(int[] argb, int width, int height, boolean[] hole, Rectangle box,
+                                                 int patchRadius, int searchRadius, int tileWidth) {
+        SourceIndex source = new SourceIndex(hole, width, height, box, patchRadius, searchRadius);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int x = box.x; x < box.x + box.width; x += tileWidth) {
+            Rectangle tile = new Rectangle(x, box.y, Math.min(tileWidth, box.x + box.width - x), box.height);
+            tasks.add(() -> {
+                new Tile(argb, width, height, hole, tile, patchRadius, searchRadius, source).fill();
+                return null;
+            });
+        }
+        return tasks;
+    }
+
+    /**
+     * 判断某个图块是否完全由原本已知的像素组成（积分图，O(1) 查询）
+     */
+    private static class SourceIndex {
+
+        private final int originX;
+
+        private final int originY;
+
+        private final int width;
+
+        private final int height;
+
+        private final int[] holeCount;
+
+        private final int patchRadius;
+
+        private final int imageWidth;
+
+        private final int imageHeight;
+
+        private SourceIndex(boolean[] hole, int imageWidth, int imageHeight, Rectangle box, int patchRadius, int searchRadius) {
+            int margin = patchRadius + searchRadius + 1;
+            this.originX = Math.max(0, box.x - margin);
+            this.originY = Math.max(0, box.y - margin);
+            this.width = Math.min(imageWidth, box.x + box.width + margin) - originX;
+            this.height = Math.min(imageHeight, box.y + box.height + margin) - originY;
+            this.patchRadius = patchRadius;
+            this.imageWidth = imageWidth;
+            this.imageHeight = imageHeight;
+            this.holeCount = new int[(width + 1) * (height + 1)];
+            for (int y = 0; y < height; y++) {
+                int rowSum = 0;
+                for (int x = 0; x < width; x++) {
+                    if (hole[(originY + y) * imageWidth + originX + x]) {
+                        rowSum++;
+                    }
+                    holeCount[(y + 1) * (width + 1) + x + 1] = holeCount[y * (width + 1) + x + 1] + rowSum;
+                }
+            }
+        }
+
+        private boolean isFullyKnown(int cx, int cy) {
+            int x0 = cx - patchRadius - originX;
+            int y0 = cy - patchRadius - originY;
+            int x1 = cx + patchRadius + 1 - originX;
+            int y1 = cy + patchRadius + 1 - originY;
+            if (cx - patchRadius < 0 || cy - patchRadius < 0 || cx + patchRadius >= imageWidth || cy + patchRadius >= imageHeight
+                    || x0 < 0 || y0 < 0 || x1 > width || y1 > height) {
+                return false;
+            }
+            int stride = width + 1;
+            return holeCount[y1 * stride + x1] - holeCount[y0 * stride + x1]
+                    - holeCount[y1 * stride + x0] + holeCount[y0 * stride + x0] == 0;
+        }
+    }
+
+    /**
+     * 单个分块的填充状态
+     */
+    private static class Tile {
+
+        private final int[] argb;
+
+        private final int width;
+
+        private final int height;
+
+        private final boolean[] hole;
+
+        private final Rectangle tile;
+
+        private final int patchRadius;
+
+        private final int searchRadius;
+
+        private final SourceIndex source;
+
+        /**
+         * 分块内已填充的像素
+         */
+        private final boolean[] filled;
+
+        private Tile(int[] argb, int width, int height, boolean[] hole, Rectangle tile,
+                     int patchRadius, int searchRadius, SourceIndex source) {
+            this.argb = argb;
+            this.width = width;
+            this.height = height;
+            this.hole = hole;
+            this.tile = tile;
+            this.patchRadius = patchRadius;
+            this.searchRadius = searchRadius;
+            this.source = source;
+            this.filled = new boolean[tile.width * tile.height];
+        }
+
+        private void fill() {
+            int remaining = 0;
+            for (int y = tile.y; y < tile.y + tile.height; y++) {
+                for (int x = tile.x; x < tile.x + tile.width; x++) {
+                    if (hole[y * width + x]) {
+                        remaining++;
+                    }
+                }
+            }
+
+            while (remaining > 0) {
+                List<int[]> front = new ArrayList<>();
+                for (int y = tile.y; y < tile.y + tile.height; y++) {
+                    for (int x = tile.x; x < tile.x + tile.width; x++) {
+                        if (!isKnown(x, y) && hasKnownNeighbour(x, y)) {
+                            front.add(new int[]{x, y});
+                        }
+                    }
+                }
+                if (front.isEmpty()) {
+                    // 分块与已知像素不相邻（例如掩码覆盖到图片边缘），用最近的已知像素填充
+                    remaining -= fillFromNearestRow();
+                    continue;
+                }
+                for (int[] point : front) {
+                    if (!isKnown(point[0], point[1])) {
+                        remaining -= fillPatch(point[0], point[1]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 找到最相似的已知图块并复制到以 (px, py) 为中心的待修复像素上，返回填充的像素数
+         */
+        private int fillPatch(int px, int py) {
+            long bestDistance = Long.MAX_VALUE;
+            int bestX = -1;
+            int bestY = -1;
+            for (int qy = py - searchRadius; qy <= py + searchRadius; qy += SEARCH_STEP) {
+                for (int qx = px - searchRadius; qx <= px + searchRadius; qx += SEARCH_STEP) {
+                    if (!source.isFullyKnown(qx, qy)) {
+                        continue;
+                    }
+                    long distance = distance(px, py, qx, qy, bestDistance);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        bestX = qx;
+                        bestY = qy;
+                    }
+                }
+            }
+            if (bestX < 0) {
+                return fillFromNeighbours(px, py);
+            }
+
+            int count = 0;
+            for (int dy = -patchRadius; dy <= patchRadius; dy++) {
+                for (int dx = -patchRadius; dx <= patchRadius; dx++) {
+                    int x = px + dx;
+                    int y = py + dy;
+                    if (inTile(x, y) && !isKnown(x, y)) {
+                        argb[y * width + x] = argb[(bestY + dy) * width + bestX + dx];
+                        filled[(y - tile.y) * tile.width + x - tile.x] = true;
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * 两个图块在目标已知像素上的 RGB 平方差，超过 limit 时提前结束
+         */
+        private long distance(int px, int py, int qx, int qy, long limit) {
+            long sum = 0;
+            for (int dy = -patchRadius; dy <= patchRadius; dy++) {
+                int y = py + dy;
+                if (y < 0 || y >= height) {
+                    continue;
+                }
+                for (int dx = -patchRadius; dx <= patchRadius; dx++) {
+                    int x = px + dx;
+                    if (x < 0 || x >= width || !isKnown(x, y)) {
+                        continue;
+                    }
+                    int target = argb[y * width + x];
+                    int candidate = argb[(qy + dy) * width + qx + dx];
+                    int dr = ((target >> 16) & 0xFF) - ((candidate >> 16) & 0xFF);
+                    int dg = ((target >> 8) & 0xFF) - ((candidate >> 8) & 0xFF);
+                    int db = (target & 0xFF) - (candidate & 0xFF);
+                    sum += dr * dr + dg * dg + db * db;
+                }
+                if (sum >= limit) {
+                    return sum;
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * 搜索窗口内没有完整已知图块时，用已知邻居的平均值填充单个像素
+         */
+        private int fillFromNeighbours(int px, int py) {
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            int count = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int x = px + dx;
+                    int y = py + dy;
+                    if ((dx != 0 || dy != 0) && x >= 0 && y >= 0 && x < width && y < height && isKnown(x, y)) {
+                        int value = argb[y * width + x];
+                        r += (value >> 16) & 0xFF;
+                        g += (value >> 8) & 0xFF;
+                        b += value & 0xFF;
+                        count++;
+                    }
+                }
+            }
+            int alpha = argb[py * width + px] & 0xFF000000;
+            argb[py * width + px] = alpha | (int) (r / count) << 16 | (int) (g / count) << 8 | (int) (b / count);
+            filled[(py - tile.y) * tile.width + px - tile.x] = true;
+            return 1;
+        }
+
+        /**
+         * 逐列向上 / 向下查找最近的已知像素填充
+         */
+        private int fillFromNearestRow() {
+            int count = 0;
+            for (int x = tile.x; x < tile.x + tile.width; x++) {
+                for (int y = tile.y; y < tile.y + tile.height; y++) {
+                    if (isKnown(x, y)) {
+                        continue;
+                    }
+                    int value = 0xFF808080;
+                    for (int distance = 1; distance < height; distance++) {
+                        if (y - distance >= 0 && isKnown(x, y - distance)) {
+                            value = argb[(y - distance) * width + x];
+                            break;
+                        }
+                        if (y + distance < height && isKnown(x, y + distance)) {
+                            value = argb[(y + distance) * width + x];
+                            break;
+                        }
+                    }
+                    argb[y * width + x] = value;
+                    filled[(y - tile.y) * tile.width + x - tile.x] = true;
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private boolean hasKnownNeighbour(int x, int y) {
+            return (x > 0 && isKnown(x - 1, y)) || (x + 1 < width && isKnown(x + 1, y))
+                    || (y > 0 && isKnown(x, y - 1)) || (y + 1 < height && isKnown(x, y + 1));
+        }
+
+        /**
+         * 原本已知，或在本分块内已填充（其他分块的待修复像素视为未知）
+         */
+        private boolean isKnown(int x, int y) {
+            if (!hole[y * width + x]) {
+                return true;
+            }
+            return inTile(x, y) && filled[(y - tile.y) * tile.width + x - tile.x];
+        }
+
+        private boolean inTile(int x, int y) {
+            return x >= tile.x && x < tile.x + tile.width && y >= tile.y && y < tile.y + tile.height;
+        }
+    }
+}
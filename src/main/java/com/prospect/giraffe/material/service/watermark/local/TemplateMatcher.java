@@ -0,0 +1,197 @@
+package com.prospect.giraffe.material.service.watermark.local;
+
+import java.awt.Rectangle;
+
+/**
+ * 模板匹配（归一化互相关）
+ * 只在配置的角落区域内搜索：先用抽样像素按 2 像素步长粗搜，再在最佳位置附近用全部像素逐点细化
+ *
+ * @author giraffe
+ */
+public final class TemplateMatcher {
+
+    /**
+     * 粗搜时使用的模板像素数上限
+     */
+    private static final int COARSE_POINTS = 400;
+
+    private static final int COARSE_STEP = 2;
+
+    private TemplateMatcher() {
+    }
+
+    /**
+     * 匹配结果
+     */
+    public static class Match {
+
+        private final int x;
+
+        private final int y;
+
+        private final double score;
+
+        private Match(int x, int y, double score) {
+            this.x = x;
+            this.y = y;
+            this.score = score;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * 在图片的指定区域查找模板
+     *
+     * @param gray     图片灰度
+     * @param width    图片宽度
+     * @param height   图片高度
+     * @param template 模板
+     * @param region   区域：top-left, top-right, bottom-left, bottom-right, center, any
+     * @param fraction 区域占图片宽高的比例
+     * @return 最佳匹配，模板比图片大时返回 null
+     */
+    public static Match find(float[] gray, int width, int height, WatermarkTemplate.Scaled template,
+                             String region, double fraction) {
+        int tw = template.getWidth();
+        int th = template.getHeight();
+        if (tw > width || th > height) {
+            return null;
+        }
+        Rectangle range = searchRange(width, height, tw, th, region, fraction);
+
+        int stride = Math.max(1, (int) Math.ceil(Math.sqrt((double) tw * th / COARSE_POINTS)));
+        Points coarse = new Points(template, stride);
+        Points full = new Points(template, 1);
+
+        int bestX = range.x;
+        int bestY = range.y;
+        double bestScore = -2;
+        for (int y = range.y; y <= range.y + range.height; y += COARSE_STEP) {
+            for (int x = range.x; x <= range.x + range.width; x += COARSE_STEP) {
+                double score = coarse.score(gray, width, x, y);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+        }
+
+        int centerX = bestX;
+        int centerY = bestY;
+        bestScore = -2;
+        for (int y = Math.max(range.y, centerY - COARSE_STEP); y <= Math.min(range.y + range.height, centerY + COARSE_STEP); y++) {
+            for (int x = Math.max(range.x, centerX - COARSE_STEP); x <= Math.min(range.x + range.width, centerX + COARSE_STEP); x++) {
+                double score = full.score(gray, width, x, y);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+        }
+        return new Match(bestX, bestY, bestScore);
+    }
+
+    /**
+     * 模板左上角可取的位置范围（width/height 为范围跨度，含两端）
+     */
+    private static Rectangle searchRange(int width, int height, int tw, int th, String region, double fraction) {
+        int spanX = Math.max(tw, (int) Math.ceil(width * fraction));
+        int spanY = Math.max(th, (int) Math.ceil(height * fraction));
+        String name = region != null ? region.toLowerCase() : "any";
+        int x0 = 0;
+        int y0 = 0;
+        int x1 = width - tw;
+        int y1 = height - th;
+        if ("any".equals(name)) {
+            return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+        }
+        if ("center".equals(name)) {
+            x0 = Math.max(0, (width - spanX) / 2);
+            y0 = Math.max(0, (height - spanY) / 2);
+            return new Rectangle(x0, y0, Math.min(x1, x0 + spanX - tw) - x0, Math.min(y1, y0 + spanY - th) - y0);
+        }
+        if (name.contains("right")) {
+            x0 = width - spanX;
+        } else {
+            x1 = spanX - tw;
+        }
+        if (name.contains("bottom")) {
+            y0 = height - spanY;
+        } else {
+            y1 = spanY - th;
+        }
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * 参与计算的模板像素（按步长抽样），灰度已减去均值
+     */
+    private static class Points {
+
+        private final int[] dx;
+
+        private final int[] dy;
+
+        private final float[] centered;
+
+        private final double norm2;
+
+        private Points(WatermarkTemplate.Scaled template, int stride) {
+            int tw = template.getWidth();
+            int th = template.getHeight();
+            int count = ((tw + stride - 1) / stride) * ((th + stride - 1) / stride);
+            dx = new int[count];
+            dy = new int[count];
+            centered = new float[count];
+            float[] gray = template.getGray();
+            double sum = 0;
+            int index = 0;
+            for (int y = 0; y < th; y += stride) {
+                for (int x = 0; x < tw; x += stride) {
+                    dx[index] = x;
+                    dy[index] = y;
+                    centered[index] = gray[y * tw + x];
+                    sum += centered[index];
+                    index++;
+                }
+            }
+            float mean = (float) (sum / count);
+            double squares = 0;
+            for (int i = 0; i < count; i++) {
+                centered[i] -= mean;
+                squares += centered[i] * centered[i];
+            }
+            norm2 = squares;
+        }
+
+        private double score(float[] gray, int width, int x, int y) {
+            double sum = 0;
+            double sumSquares = 0;
+            double cross = 0;
+            for (int i = 0; i < centered.length; i++) {
+                float value = gray[(y + dy[i]) * width + x + dx[i]];
+                sum += value;
+                sumSquares += value * value;
+                cross += centered[i] * value;
+            }
+            double variance = sumSquares - sum * sum / centered.length;
+            if (variance <= 1e-6 || norm2 <= 1e-6) {
+                return 0;
+            }
+            return cross / Math.sqrt(norm2 * variance);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.prospect.giraffe.material.service.watermark.local;
+
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 水印模板：匹配用的灰度值与修复用的掩码
+ * 带透明通道的模板按 不透明度 × 亮度 计算灰度（相当于铺在黑色背景上），突出水印形状；
+ * 配置了参考宽度时按图片宽度缩放，缩放结果按宽度缓存
+ *
+ * @author giraffe
+ */
+public class WatermarkTemplate {
+
+    private final WatermarkRemovalConfig.TemplateConfig config;
+
+    private final BufferedImage image;
+
+    private final BufferedImage maskImage;
+
+    private final Map<Integer, Scaled> scaledCache = new ConcurrentHashMap<>();
+
+    private WatermarkTemplate(WatermarkRemovalConfig.TemplateConfig config, BufferedImage image, BufferedImage maskImage) {
+        this.config = config;
+        this.image = image;
+        this.maskImage = maskImage;
+    }
+
+    /**
+     * 加载模板
+     *
+     * @param config 模板配置
+     * @return 模板
+     * @throws IOException 模板或掩码图片无法读取
+     */
+    public static WatermarkTemplate load(WatermarkRemovalConfig.TemplateConfig config) throws IOException {
+        BufferedImage image = read(config.getPath());
+        BufferedImage maskImage = null;
+        if (config.getMaskPath() != null && !config.getMaskPath().isEmpty()) {
+            maskImage = read(config.getMaskPath());
+            if (maskImage.getWidth() != image.getWidth() || maskImage.getHeight() != image.getHeight()) {
+                throw new IOException("水印掩码尺寸与模板不一致: " + config.getMaskPath());
+            }
+        }
+        return new WatermarkTemplate(config, image, maskImage);
+    }
+
+    public WatermarkRemovalConfig.TemplateConfig getConfig() {
+        return config;
+    }
+
+    public String getName() {
+        return config.getName();
+    }
+
+    /**
+     * 获取适配图片宽度的模板
+     */
+    public Scaled scaledFor(int imageWidth) {
+        Integer referenceWidth = config.getReferenceWidth();
+        int width = image.getWidth();
+        if (referenceWidth != null && referenceWidth > 0) {
+            width = Math.max(1, (int) Math.round((double) image.getWidth() * imageWidth / referenceWidth));
+        }
+        return scaledCache.computeIfAbsent(width, this::scale);
+    }
+
+    private Scaled scale(int width) {
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        BufferedImage scaledImage = resize(image, width, height);
+        BufferedImage scaledMask = maskImage != null ? resize(maskImage, width, height) : null;
+
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+        float[] gray = new float[width * height];
+        boolean[] mask = new boolean[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int argb = scaledImage.getRGB(x, y);
+                int alpha = hasAlpha ? (argb >>> 24) : 255;
+                gray[y * width + x] = luma(argb) * alpha / 255f;
+                if (scaledMask != null) {
+                    mask[y * width + x] = luma(scaledMask.getRGB(x, y)) > 127;
+                } else {
+                    mask[y * width + x] = alpha > 16;
+                }
+            }
+        }
+        return new Scaled(width, height, gray, mask);
+    }
+
+    private static BufferedImage read(String path) throws IOException {
+        BufferedImage image = ImageIO.read(new File(path));
+        if (image == null) {
+            throw new IOException("无法读取水印模板: " + path);
+        }
+        return image;
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, int height) {
+        if (source.getWidth() == width && source.getHeight() == height) {
+            return source;
+        }
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    static float luma(int rgb) {
+        return 0.299f * ((rgb >> 16) & 0xFF) + 0.587f * ((rgb >> 8) & 0xFF) + 0.114f * (rgb & 0xFF);
+    }
+
+    /**
+     * 缩放到指定宽度的模板
+     */
+    public static class Scaled {
+
+        private final int width;
+
+        private final int height;
+
+        /**
+         * 匹配用灰度
+         */
+        private final float[] gray;
+
+        /**
+         * 需要修复的像素
+         */
+        private final boolean[] mask;
+
+        private Scaled(int width, int height, float[] gray, boolean[] mask) {
+            this.width = width;
+            this.height = height;
+            this.gray = gray;
+            this.mask = mask;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        float[] getGray() {
+            return gray;
+        }
+
+        public boolean[] getMask() {
+            return mask;
+        }
+    }
+}
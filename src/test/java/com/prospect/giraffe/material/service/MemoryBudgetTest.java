@@ -0,0 +1,72 @@
+package com.prospect.giraffe.material.service;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MemoryBudget Test
+ *
+ * @author giraffe
+ */
+class MemoryBudgetTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    private static MemoryBudget budget(long bytes) {
+        DownloadConfig config = new DownloadConfig();
+        config.setMemoryBudget(bytes);
+        MemoryBudget memoryBudget = new MemoryBudget();
+        ReflectionTestUtils.setField(memoryBudget, "downloadConfig", config);
+        memoryBudget.init();
+        return memoryBudget;
+    }
+
+    @Test
+    void oversizedReservationIsRefused() throws Exception {
+        MemoryBudget memoryBudget = budget(8 * MB);
+
+        assertThrows(MemoryBudgetExceededException.class, () -> memoryBudget.reserve(8 * MB + 1));
+        assertEquals(1L, memoryBudget.getRejectedCount());
+        assertEquals(8 * MB, memoryBudget.availableBytes());
+
+        memoryBudget.reserve(8 * MB).close();
+        assertEquals(8 * MB, memoryBudget.availableBytes());
+    }
+
+    @Test
+    void reservationWaitsUntilReleased() throws Exception {
+        MemoryBudget memoryBudget = budget(8 * MB);
+        MemoryBudget.Reservation held = memoryBudget.reserve(6 * MB);
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(() -> {
+            try {
+                memoryBudget.reserve(4 * MB).close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        held.close();
+        waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(8 * MB, memoryBudget.availableBytes());
+    }
+
+    @Test
+    void disabledBudgetGrantsEverything() throws Exception {
+        MemoryBudget memoryBudget = budget(0L);
+
+        memoryBudget.reserve(Long.MAX_VALUE).close();
+        assertTrue(memoryBudget.totalBytes() < 0);
+    }
+}
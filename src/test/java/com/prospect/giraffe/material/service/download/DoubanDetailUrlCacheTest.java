@@ -0,0 +1,92 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DoubanDetailUrlCache Test
+ *
+ * @author giraffe
+ */
+class DoubanDetailUrlCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private DownloadConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new DownloadConfig();
+        config.setCacheDir(cacheDir.toString());
+        config.setDetailCacheMaxEntries(3);
+    }
+
+    private DoubanDetailUrlCache start() {
+        DoubanDetailUrlCache cache = new DoubanDetailUrlCache();
+        ReflectionTestUtils.setField(cache, "downloadConfig", config);
+        cache.init();
+        return cache;
+    }
+
+    private Path cacheFile() {
+        return cacheDir.resolve("douban-detail-urls.tsv");
+    }
+
+    @Test
+    void oldestEntriesAreEvicted() {
+        DoubanDetailUrlCache cache = start();
+        for (int i = 1; i <= 4; i++) {
+            cache.put("detail/" + i, "raw/" + i + ".jpg");
+        }
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("detail/1"));
+        assertEquals("raw/4.jpg", cache.get("detail/4"));
+    }
+
+    @Test
+    void loadCompactsDuplicatesAndEvictedLines() throws Exception {
+        Files.write(cacheFile(), Arrays.asList(
+                "detail/1\traw/1.jpg",
+                "detail/2\traw/2.jpg",
+                "detail/1\traw/1-new.jpg",
+                "broken line",
+                "detail/3\traw/3.jpg",
+                "detail/4\traw/4.jpg"), StandardCharsets.UTF_8);
+
+        DoubanDetailUrlCache cache = start();
+
+        assertEquals(3, cache.size());
+        assertNull(cache.get("detail/2"));
+        assertEquals("raw/1-new.jpg", cache.get("detail/1"));
+        List<String> lines = Files.readAllLines(cacheFile(), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("detail/1\traw/1-new.jpg", "detail/3\traw/3.jpg", "detail/4\traw/4.jpg"), lines);
+    }
+
+    @Test
+    void fileStaysBoundedWhileRunning() throws Exception {
+        DoubanDetailUrlCache cache = start();
+        for (int i = 0; i < 50; i++) {
+            cache.put("detail/" + i, "raw/" + i + ".jpg");
+        }
+
+        assertTrue(Files.readAllLines(cacheFile(), StandardCharsets.UTF_8).size() <= 6);
+        DoubanDetailUrlCache restarted = start();
+        assertEquals(3, restarted.size());
+        assertEquals("raw/49.jpg", restarted.get("detail/49"));
+    }
+}
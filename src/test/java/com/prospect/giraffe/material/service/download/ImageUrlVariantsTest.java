@@ -0,0 +1,55 @@
+package com.prospect.giraffe.material.service.download;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * ImageUrlVariants Test
+ *
+ * @author giraffe
+ */
+class ImageUrlVariantsTest {
+
+    @Test
+    void doubanLadderStartsAtCurrentSize() {
+        List<ImageUrlVariants.Variant> variants =
+                ImageUrlVariants.of("https://img9.doubanio.com/view/photo/raw/public/p2895695254.jpg");
+
+        assertEquals(3, variants.size());
+        assertEquals("douban-raw", variants.get(0).getRule());
+        assertEquals("https://img9.doubanio.com/view/photo/raw/public/p2895695254.jpg", variants.get(0).getUrl());
+        assertEquals("douban-l", variants.get(1).getRule());
+        assertEquals("https://img9.doubanio.com/view/photo/l/public/p2895695254.jpg", variants.get(1).getUrl());
+        assertEquals("https://img9.doubanio.com/view/photo/m/public/p2895695254.jpg", variants.get(2).getUrl());
+
+        List<ImageUrlVariants.Variant> fromLarge =
+                ImageUrlVariants.of("https://img1.doubanio.com/view/photo/l/public/p1.jpg");
+        assertEquals(2, fromLarge.size());
+        assertEquals("douban-l", fromLarge.get(0).getRule());
+    }
+
+    @Test
+    void genericPathAndSuffixLadders() {
+        List<ImageUrlVariants.Variant> path = ImageUrlVariants.of("https://cdn.example.com/large/a.jpg");
+        assertEquals(2, path.size());
+        assertEquals("path-large", path.get(0).getRule());
+        assertEquals("https://cdn.example.com/medium/a.jpg", path.get(1).getUrl());
+
+        List<ImageUrlVariants.Variant> suffix = ImageUrlVariants.of("https://cdn.example.com/a_large.jpg");
+        assertEquals(2, suffix.size());
+        assertEquals("https://cdn.example.com/a_medium.jpg", suffix.get(1).getUrl());
+    }
+
+    @Test
+    void urlOutsideAnyLadderIsReturnedAsIs() {
+        List<ImageUrlVariants.Variant> variants = ImageUrlVariants.of("https://example.com/a.jpg?w=large");
+
+        assertEquals(1, variants.size());
+        assertNull(variants.get(0).getRule());
+        assertEquals("https://example.com/a.jpg?w=large", variants.get(0).getUrl());
+    }
+}
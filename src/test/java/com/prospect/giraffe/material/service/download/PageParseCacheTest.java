@@ -0,0 +1,213 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PageParseCache Test
+ *
+ * @author giraffe
+ */
+class PageParseCacheTest {
+
+    private DownloadConfig config;
+
+    private PageParseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        config = new DownloadConfig();
+        config.setPageCacheTtl(60000L);
+        config.setPageCacheMaxEntries(2);
+        cache = new PageParseCache();
+        ReflectionTestUtils.setField(cache, "downloadConfig", config);
+    }
+
+    private static PageParseResult result(boolean complete, String... urls) {
+        return new PageParseResult(new LinkedHashSet<>(Arrays.asList(urls)),
+                Collections.singletonList("https://example.com/album"), complete);
+    }
+
+    @Test
+    void completeResultIsServedFromCache() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        PageParseResult first = cache.getOrLoad("k", () -> {
+            loads.incrementAndGet();
+            return result(true, "https://example.com/a.jpg");
+        });
+        PageParseResult second = cache.getOrLoad("k", () -> {
+            loads.incrementAndGet();
+            return result(true, "https://example.com/b.jpg");
+        });
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getStats().getHitCount());
+    }
+
+    @Test
+    void expiredEntryIsReloaded() throws Exception {
+        config.setPageCacheTtl(20L);
+        AtomicInteger loads = new AtomicInteger();
+        PageParseCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return result(true, "https://example.com/a.jpg");
+        };
+
+        cache.getOrLoad("k", loader);
+        TimeUnit.MILLISECONDS.sleep(50);
+        cache.getOrLoad("k", loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void incompleteOrEmptyResultIsNotCached() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad("partial", () -> {
+            loads.incrementAndGet();
+            return result(false, "https://example.com/a.jpg");
+        });
+        cache.getOrLoad("partial", () -> {
+            loads.incrementAndGet();
+            return result(true, "https://example.com/a.jpg");
+        });
+        cache.getOrLoad("empty", () -> {
+            loads.incrementAndGet();
+            return result(true);
+        });
+        cache.getOrLoad("empty", () -> {
+            loads.incrementAndGet();
+            return result(true);
+        });
+
+        assertEquals(4, loads.get());
+        assertEquals(1, cache.getStats().getSize());
+    }
+
+    @Test
+    void concurrentRequestsShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<PageParseResult> leader = executor.submit(() -> cache.getOrLoad("k", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return result(true, "https://example.com/a.jpg");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            Future<PageParseResult> follower = executor.submit(() -> cache.getOrLoad("k", () -> {
+                loads.incrementAndGet();
+                return result(true, "https://example.com/b.jpg");
+            }));
+            // 等待跟随请求进入等待状态
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.getStats().getCoalescedCount() == 0 && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            release.countDown();
+
+            assertSame(leader.get(5, TimeUnit.SECONDS), follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertEquals(1, cache.getStats().getCoalescedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void loaderErrorReleasesWaiters() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<PageParseResult> leader = executor.submit(() -> cache.getOrLoad("k", () -> {
+                loading.countDown();
+                await(release);
+                throw new StackOverflowError("boom");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            Future<PageParseResult> follower = executor.submit(() -> cache.getOrLoad("k",
+                    () -> result(true, "https://example.com/b.jpg")));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (cache.getStats().getCoalescedCount() == 0 && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            release.countDown();
+
+            ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+            assertTrue(leaderFailure.getCause() instanceof StackOverflowError);
+            ExecutionException followerFailure = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertTrue(followerFailure.getCause() instanceof IOException);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 失败后不再占用解析权，下一次请求重新解析
+        PageParseResult result = cache.getOrLoad("k", () -> result(true, "https://example.com/c.jpg"));
+        assertEquals(1, result.getImageUrls().size());
+    }
+
+    @Test
+    void loadFailureIsNotCached() throws IOException {
+        assertThrows(IOException.class, () -> cache.getOrLoad("k", () -> {
+            throw new IOException("boom");
+        }));
+
+        PageParseResult result = cache.getOrLoad("k", () -> result(true, "https://example.com/a.jpg"));
+        assertEquals(1, result.getImageUrls().size());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() throws IOException {
+        cache.getOrLoad("a", () -> result(true, "https://example.com/a.jpg"));
+        cache.getOrLoad("b", () -> result(true, "https://example.com/b.jpg"));
+        cache.getOrLoad("a", () -> result(true, "https://example.com/a2.jpg"));
+        cache.getOrLoad("c", () -> result(true, "https://example.com/c.jpg"));
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad("a", () -> {
+            loads.incrementAndGet();
+            return result(true, "https://example.com/a3.jpg");
+        });
+        cache.getOrLoad("b", () -> {
+            loads.incrementAndGet();
+            return result(true, "https://example.com/b2.jpg");
+        });
+
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.getStats().getEvictionCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
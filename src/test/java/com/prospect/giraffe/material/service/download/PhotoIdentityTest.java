@@ -0,0 +1,73 @@
+package com.prospect.giraffe.material.service.download;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PhotoIdentity Test
+ *
+ * @author giraffe
+ */
+class PhotoIdentityTest {
+
+    @Test
+    void distinctQueryIdsStayDistinct() {
+        assertNotEquals(PhotoIdentity.of("https://example.com/img.php?id=1"),
+                PhotoIdentity.of("https://example.com/img.php?id=2"));
+
+        ImageUrlCollector collector = new ImageUrlCollector();
+        assertEquals(3, collector.addAll(Arrays.asList(
+                "https://example.com/img.php?id=1",
+                "https://example.com/img.php?id=2",
+                "https://example.com/img.php?id=3")));
+    }
+
+    @Test
+    void sizeAndQualityParamsAreIgnored() {
+        String plain = PhotoIdentity.of("https://example.com/img.php?id=1");
+
+        assertEquals(plain, PhotoIdentity.of("https://example.com/img.php?id=1&w=320&h=240"));
+        assertEquals(plain, PhotoIdentity.of("https://example.com/img.php?quality=80&id=1"));
+        assertEquals(PhotoIdentity.of("https://example.com/a.jpg"), PhotoIdentity.of("https://example.com/a.jpg?width=640"));
+    }
+
+    @Test
+    void paramOrderDoesNotMatter() {
+        assertEquals(PhotoIdentity.of("https://example.com/img.php?id=1&set=2"),
+                PhotoIdentity.of("https://example.com/img.php?set=2&id=1"));
+    }
+
+    @Test
+    void sizeSegmentsAreKeptOnUnknownHosts() {
+        assertNotEquals(PhotoIdentity.of("https://example.com/s/123.jpg"), PhotoIdentity.of("https://example.com/123.jpg"));
+        assertNotEquals(PhotoIdentity.of("https://example.com/photo/123.jpg"), PhotoIdentity.of("https://example.com/123.jpg"));
+        assertNotEquals(PhotoIdentity.of("https://example.com/a_s.jpg"), PhotoIdentity.of("https://example.com/a.jpg"));
+    }
+
+    @Test
+    void doubanVariantsShareOneIdentity() {
+        String raw = PhotoIdentity.of("https://img9.doubanio.com/view/photo/raw/public/p2895695254.jpg");
+
+        assertEquals(raw, PhotoIdentity.of("https://img1.doubanio.com/view/photo/l/public/p2895695254.webp"));
+        assertEquals(raw, PhotoIdentity.of("https://img3.doubanio.com/view/photo/s_ratio_poster/public/p2895695254.jpg"));
+        assertNotEquals(raw, PhotoIdentity.of("https://img9.doubanio.com/view/photo/raw/public/p2895695255.jpg"));
+    }
+
+    @Test
+    void collectorKeepsSharpestVariant() {
+        ImageUrlCollector collector = new ImageUrlCollector();
+        collector.add("https://img3.doubanio.com/view/photo/m/public/p1.jpg");
+        collector.add("https://img9.doubanio.com/view/photo/raw/public/p1.jpg");
+        collector.add("https://example.com/a.jpg?w=320");
+        collector.add("https://example.com/a.jpg");
+
+        assertEquals(2, collector.size());
+        assertTrue(collector.toSet().contains("https://img9.doubanio.com/view/photo/raw/public/p1.jpg"));
+        assertTrue(collector.toSet().contains("https://example.com/a.jpg"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.prospect.giraffe.material.service.download;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RewriteStatsRegistry Test
+ *
+ * @author giraffe
+ */
+class RewriteStatsRegistryTest {
+
+    private static final String RAW_URL = "https://img9.doubanio.com/view/photo/raw/public/p1.jpg";
+
+    @TempDir
+    Path cacheDir;
+
+    private RewriteStatsRegistry newRegistry() {
+        DownloadConfig config = new DownloadConfig();
+        config.setCacheDir(cacheDir.toString());
+        config.setRewriteMinSamples(10);
+        config.setRewriteMinSuccessRate(0.5);
+        RewriteStatsRegistry registry = new RewriteStatsRegistry();
+        ReflectionTestUtils.setField(registry, "downloadConfig", config);
+        registry.init();
+        return registry;
+    }
+
+    @Test
+    void degradesOnlyAfterEnoughFailures() {
+        RewriteStatsRegistry registry = newRegistry();
+        for (int i = 0; i < 9; i++) {
+            registry.record(RAW_URL, "douban-raw", false);
+        }
+        assertFalse(registry.isDegraded(RAW_URL, "douban-raw"));
+
+        registry.record(RAW_URL, "douban-raw", false);
+        assertTrue(registry.isDegraded(RAW_URL, "douban-raw"));
+        // 其它规则、其它主机不受影响
+        assertFalse(registry.isDegraded(RAW_URL, "douban-l"));
+        assertFalse(registry.isDegraded("https://example.com/raw/p1.jpg", "douban-raw"));
+    }
+
+    @Test
+    void degradedRuleMovesBehindNextCandidate() {
+        RewriteStatsRegistry registry = newRegistry();
+        for (int i = 0; i < 10; i++) {
+            registry.record(RAW_URL, "douban-raw", false);
+        }
+        List<ImageUrlVariants.Variant> ordered = registry.order(ImageUrlVariants.of(RAW_URL));
+
+        assertEquals(Arrays.asList("douban-l", "douban-raw", "douban-m"),
+                Arrays.asList(ordered.get(0).getRule(), ordered.get(1).getRule(), ordered.get(2).getRule()));
+    }
+
+    @Test
+    void statsSurviveRestart() {
+        RewriteStatsRegistry registry = newRegistry();
+        for (int i = 0; i < 10; i++) {
+            registry.record(RAW_URL, "douban-raw", i < 2);
+        }
+        registry.destroy();
+
+        RewriteStatsRegistry restarted = newRegistry();
+        assertTrue(restarted.isDegraded(RAW_URL, "douban-raw"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.prospect.giraffe.material.service.download;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SrcsetParser Test
+ *
+ * @author giraffe
+ */
+class SrcsetParserTest {
+
+    @Test
+    void parsesWidthDescriptors() {
+        List<SrcsetParser.Candidate> candidates =
+                SrcsetParser.parse("a-320.jpg 320w, a-640.jpg 640w,a-1280.jpg 1280w");
+
+        assertEquals(3, candidates.size());
+        assertEquals("a-320.jpg", candidates.get(0).getUrl());
+        assertEquals(320, candidates.get(0).getWidth());
+        assertEquals("a-1280.jpg", candidates.get(2).getUrl());
+        assertEquals(1280, candidates.get(2).getWidth());
+    }
+
+    @Test
+    void parsesDensityDescriptorsAndDefaults() {
+        List<SrcsetParser.Candidate> candidates = SrcsetParser.parse("a.jpg, a@2x.jpg 2x, a@1.5x.jpg 1.5x");
+
+        assertEquals(3, candidates.size());
+        assertEquals("a.jpg", candidates.get(0).getUrl());
+        assertEquals(1.0, candidates.get(0).getDensity());
+        assertEquals(0, candidates.get(0).getWidth());
+        assertEquals(2.0, candidates.get(1).getDensity());
+        assertEquals(1.5, candidates.get(2).getDensity());
+    }
+
+    @Test
+    void keepsCommasInsideUrls() {
+        List<SrcsetParser.Candidate> candidates =
+                SrcsetParser.parse("https://cdn.example.com/img/w_640,h_480/a.jpg 640w, https://cdn.example.com/b.jpg 1024w");
+
+        assertEquals(2, candidates.size());
+        assertEquals("https://cdn.example.com/img/w_640,h_480/a.jpg", candidates.get(0).getUrl());
+        assertEquals("https://cdn.example.com/b.jpg", candidates.get(1).getUrl());
+    }
+
+    @Test
+    void ignoresUnknownDescriptorsAndBlankInput() {
+        assertTrue(SrcsetParser.parse(null).isEmpty());
+        assertTrue(SrcsetParser.parse("  ").isEmpty());
+
+        List<SrcsetParser.Candidate> candidates = SrcsetParser.parse("a.jpg 100h, b.jpg abcw");
+        assertEquals(2, candidates.size());
+        assertEquals(0, candidates.get(0).getWidth());
+        assertEquals(1.0, candidates.get(1).getDensity());
+    }
+
+    @Test
+    void largestPrefersWidthThenDensity() {
+        assertEquals("b.jpg", SrcsetParser.largest(SrcsetParser.parse("a.jpg 640w, b.jpg 1280w, c.jpg 960w")).getUrl());
+        assertEquals("c.jpg", SrcsetParser.largest(SrcsetParser.parse("a.jpg, b.jpg 1.5x, c.jpg 3x")).getUrl());
+        // 混合描述符时宽度优先
+        assertEquals("b.jpg", SrcsetParser.largest(Arrays.asList(
+                new SrcsetParser.Candidate("a.jpg", 0, 3.0),
+                new SrcsetParser.Candidate("b.jpg", 800, 1.0))).getUrl());
+        assertNull(SrcsetParser.largest(Collections.emptyList()));
+    }
+}
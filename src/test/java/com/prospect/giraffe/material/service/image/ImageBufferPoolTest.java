@@ -0,0 +1,83 @@
+package com.prospect.giraffe.material.service.image;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ImageBufferPool Test
+ *
+ * @author giraffe
+ */
+class ImageBufferPoolTest {
+
+    private static final int KB = 1024;
+
+    private ImageBufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        DownloadConfig config = new DownloadConfig();
+        config.setHandoffMaxBytes(1024 * KB);
+        config.setHandoffMaxTotalBytes(2048L * KB);
+        config.setHandoffPoolSize(2);
+        pool = new ImageBufferPool();
+        ReflectionTestUtils.setField(pool, "downloadConfig", config);
+    }
+
+    @Test
+    void buffersAreSizedToTheRequest() {
+        byte[] small = pool.acquire(100 * KB);
+
+        assertNotNull(small);
+        assertEquals(128 * KB, small.length);
+        assertEquals(128L * KB, pool.getBorrowedBytes());
+        assertNull(pool.acquire(1024 * KB + 1));
+    }
+
+    @Test
+    void totalIsCappedAndRecoveredOnRelease() {
+        byte[] first = pool.acquire(1024 * KB);
+        byte[] second = pool.acquire(1000 * KB);
+        assertNotNull(first);
+        assertNotNull(second);
+
+        assertNull(pool.acquire(64 * KB));
+
+        pool.release(first);
+        assertNotNull(pool.acquire(512 * KB));
+    }
+
+    @Test
+    void releasedBuffersAreReused() {
+        byte[] buffer = pool.acquire(300 * KB);
+        pool.release(buffer);
+        assertEquals(0L, pool.getBorrowedBytes());
+
+        assertSame(buffer, pool.acquire(200 * KB));
+        pool.release(buffer);
+        // 空闲缓冲区比需要的大两倍以上时不复用
+        byte[] tiny = pool.acquire(10 * KB);
+        assertEquals(64 * KB, tiny.length);
+    }
+
+    @Test
+    void idleBuffersAreDroppedToMakeRoom() {
+        byte[] first = pool.acquire(1024 * KB);
+        byte[] second = pool.acquire(1024 * KB);
+        pool.release(first);
+        pool.release(second);
+
+        // 两个空闲缓冲区占满总量，申请其它大小时先丢弃空闲缓冲区
+        byte[] other = pool.acquire(100 * KB);
+        assertNotNull(other);
+        assertTrue(pool.getBorrowedBytes() <= 2048L * KB);
+    }
+}
@@ -0,0 +1,122 @@
+package com.prospect.giraffe.material.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ImageHeaderSniffer Test
+ *
+ * @author giraffe
+ */
+class ImageHeaderSnifferTest {
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static ImageHeader sniff(byte[] data) {
+        return ImageHeaderSniffer.sniff(data, data.length);
+    }
+
+    @Test
+    void readsDimensionsOfEncodedImages() throws IOException {
+        for (String format : Arrays.asList("jpeg", "png", "gif", "bmp")) {
+            ImageHeader header = sniff(encode(format, 321, 123));
+
+            assertEquals(format, header.getFormat());
+            assertEquals(321, header.getWidth(), format);
+            assertEquals(123, header.getHeight(), format);
+            assertTrue(header.hasDimensions());
+        }
+    }
+
+    @Test
+    void skipsJpegSegmentsBeforeSof() throws IOException {
+        byte[] jpeg = encode("jpeg", 640, 480);
+        // 在 SOI 之后插入一个 1000 字节的 APP1 段
+        byte[] app1 = new byte[1004];
+        app1[0] = (byte) 0xFF;
+        app1[1] = (byte) 0xE1;
+        app1[2] = (byte) (1002 >> 8);
+        app1[3] = (byte) (1002 & 0xFF);
+        byte[] data = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, data, 0, 2);
+        System.arraycopy(app1, 0, data, 2, app1.length);
+        System.arraycopy(jpeg, 2, data, 2 + app1.length, jpeg.length - 2);
+
+        ImageHeader header = sniff(data);
+        assertEquals(640, header.getWidth());
+        assertEquals(480, header.getHeight());
+
+        // 探测字节不足以到达 SOF 时只识别格式
+        ImageHeader truncated = ImageHeaderSniffer.sniff(data, 512);
+        assertEquals("jpeg", truncated.getFormat());
+        assertFalse(truncated.hasDimensions());
+    }
+
+    @Test
+    void readsWebpSubFormats() {
+        byte[] vp8x = webp('X');
+        // 画布宽高减一，24 位小端
+        vp8x[24] = (byte) 0x7F;
+        vp8x[25] = (byte) 0x07;
+        vp8x[27] = (byte) 0x37;
+        vp8x[28] = (byte) 0x04;
+        ImageHeader header = sniff(vp8x);
+        assertEquals("webp", header.getFormat());
+        assertEquals(1920, header.getWidth());
+        assertEquals(1080, header.getHeight());
+
+        byte[] vp8l = webp('L');
+        int bits = (800 - 1) | ((600 - 1) << 14);
+        vp8l[21] = (byte) bits;
+        vp8l[22] = (byte) (bits >> 8);
+        vp8l[23] = (byte) (bits >> 16);
+        vp8l[24] = (byte) (bits >> 24);
+        header = sniff(vp8l);
+        assertEquals(800, header.getWidth());
+        assertEquals(600, header.getHeight());
+
+        byte[] vp8 = webp(' ');
+        vp8[26] = (byte) (1024 & 0xFF);
+        vp8[27] = (byte) (1024 >> 8);
+        vp8[28] = (byte) (768 & 0xFF);
+        vp8[29] = (byte) (768 >> 8);
+        header = sniff(vp8);
+        assertEquals(1024, header.getWidth());
+        assertEquals(768, header.getHeight());
+    }
+
+    @Test
+    void unknownOrTruncatedInput() throws IOException {
+        ImageHeader unknown = sniff("<html>not an image</html>".getBytes("UTF-8"));
+        assertNull(unknown.getFormat());
+        assertFalse(unknown.hasDimensions());
+
+        byte[] png = encode("png", 10, 10);
+        ImageHeader truncated = ImageHeaderSniffer.sniff(png, 12);
+        assertEquals("png", truncated.getFormat());
+        assertFalse(truncated.hasDimensions());
+    }
+
+    private static byte[] webp(char subFormat) {
+        byte[] data = new byte[32];
+        System.arraycopy("RIFF".getBytes(), 0, data, 0, 4);
+        System.arraycopy("WEBPVP8".getBytes(), 0, data, 8, 7);
+        data[15] = (byte) subFormat;
+        return data;
+    }
+}
@@ -0,0 +1,56 @@
+package com.prospect.giraffe.material.service.image;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * ImagePayload Test
+ *
+ * @author giraffe
+ */
+class ImagePayloadTest {
+
+    private ImageBufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        DownloadConfig config = new DownloadConfig();
+        config.setHandoffPoolSize(2);
+        pool = new ImageBufferPool();
+        ReflectionTestUtils.setField(pool, "downloadConfig", config);
+    }
+
+    @Test
+    void derivedPayloadTakesOverTheBuffer() throws Exception {
+        byte[] buffer = pool.acquire(1024);
+        assertNotNull(buffer);
+        long borrowed = pool.getBorrowedBytes();
+        ImagePayload source = ImagePayload.ofBytes("a.png", buffer, 1024, pool);
+
+        ImagePayload renamed = source.renamed("a.jpg");
+        ImagePayload located = renamed.fromSource("https://img.example.com/a.png", "https://www.example.com/album");
+
+        assertThrows(IOException.class, source::openStream);
+        assertThrows(IOException.class, renamed::openStream);
+        try (InputStream input = located.openStream()) {
+            assertEquals(1024, input.available());
+        }
+
+        // 原对象不再持有缓冲区，重复释放不会把同一缓冲区归还两次
+        source.release();
+        renamed.release();
+        assertEquals(borrowed, pool.getBorrowedBytes());
+        located.release();
+        located.release();
+        assertEquals(0L, pool.getBorrowedBytes());
+    }
+}
@@ -0,0 +1,142 @@
+package com.prospect.giraffe.material.service.image;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import com.prospect.giraffe.material.service.MemoryBudget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 转码吞吐量基准
+ * 按源格式（JPEG 直通、PNG、带透明通道的 PNG、GIF、BMP）分别提交一批合成图片转为 JPEG，输出每秒图片数和每秒源字节数。
+ * 默认不执行，运行方式：mvn test -Dtest=ImageTranscodeBenchmarkTest -Dbenchmark=true
+ * 可选参数：-Dbenchmark.images=40 -Dbenchmark.width=1920 -Dbenchmark.height=1080 -Dbenchmark.optimize=true
+ *
+ * @author giraffe
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ImageTranscodeBenchmarkTest {
+
+    private static final String[][] FORMATS = {
+            {"jpeg", "jpg", "rgb"},
+            {"png", "png", "rgb"},
+            {"png", "png", "argb"},
+            {"gif", "gif", "rgb"},
+            {"bmp", "bmp", "rgb"},
+    };
+
+    @TempDir
+    Path workDir;
+
+    private ImageTranscodeService transcodeService;
+
+    @BeforeEach
+    void setUp() {
+        DownloadConfig config = new DownloadConfig();
+        MemoryBudget memoryBudget = new MemoryBudget();
+        ReflectionTestUtils.setField(memoryBudget, "downloadConfig", config);
+        memoryBudget.init();
+
+        transcodeService = new ImageTranscodeService();
+        ReflectionTestUtils.setField(transcodeService, "downloadConfig", config);
+        ReflectionTestUtils.setField(transcodeService, "memoryBudget", memoryBudget);
+        ImageBufferPool bufferPool = new ImageBufferPool();
+        ReflectionTestUtils.setField(bufferPool, "downloadConfig", config);
+        ReflectionTestUtils.setField(transcodeService, "imageBufferPool", bufferPool);
+        transcodeService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transcodeService.destroy();
+    }
+
+    @Test
+    void transcodeThroughputByFormat() throws Exception {
+        int images = Integer.getInteger("benchmark.images", 40);
+        int width = Integer.getInteger("benchmark.width", 1920);
+        int height = Integer.getInteger("benchmark.height", 1080);
+        boolean optimize = Boolean.getBoolean("benchmark.optimize");
+
+        System.out.printf("转码基准: %d 张 %dx%d, 线程数=%d, 存储优化=%s%n",
+                images, width, height, Runtime.getRuntime().availableProcessors(), optimize);
+        System.out.printf("%-10s %10s %12s %12s%n", "格式", "耗时(ms)", "图片/秒", "源MB/秒");
+        for (String[] format : FORMATS) {
+            String label = format[0] + ("argb".equals(format[2]) ? "-argb" : "");
+            File sample = workDir.resolve("sample-" + label + "." + format[1]).toFile();
+            writeSample(sample, format[0], "argb".equals(format[2]), width, height);
+
+            // 预热，使 JIT 与编码器初始化不计入结果
+            run(sample, label, Math.max(2, images / 10), optimize);
+            long start = System.nanoTime();
+            run(sample, label, images, optimize);
+            long elapsedMillis = Math.max(1L, (System.nanoTime() - start) / 1_000_000L);
+
+            double imagesPerSecond = images * 1000.0 / elapsedMillis;
+            double megabytesPerSecond = sample.length() * (double) images / 1024 / 1024 * 1000.0 / elapsedMillis;
+            System.out.printf("%-10s %10d %12.1f %12.1f%n", label, elapsedMillis, imagesPerSecond, megabytesPerSecond);
+            assertTrue(imagesPerSecond > 0);
+        }
+    }
+
+    private void run(File sample, String label, int images, boolean optimize) throws Exception {
+        Path outputDir = Files.createDirectories(workDir.resolve("out-" + label));
+        List<CompletableFuture<TranscodeResult>> futures = new ArrayList<>(images);
+        for (int i = 0; i < images; i++) {
+            File staged = outputDir.resolve(i + ".part").toFile();
+            Files.copy(sample.toPath(), staged.toPath());
+            futures.add(transcodeService.submit(ImagePayload.ofFile(staged, sample.getName()),
+                    outputDir.resolve(i + ".jpg").toFile(), true, optimize, null));
+        }
+        for (CompletableFuture<TranscodeResult> future : futures) {
+            future.get();
+        }
+        for (int i = 0; i < images; i++) {
+            Files.deleteIfExists(outputDir.resolve(i + ".jpg"));
+        }
+    }
+
+    /**
+     * 渐变背景加随机色块，接近照片的压缩率
+     */
+    private static void writeSample(File file, String format, boolean alpha, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            Random random = new Random(42);
+            for (int y = 0; y < height; y += 8) {
+                graphics.setColor(new Color(y * 255 / height, 120, 255 - y * 255 / height));
+                graphics.fillRect(0, y, width, 8);
+            }
+            for (int i = 0; i < 400; i++) {
+                graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256),
+                        alpha ? 128 + random.nextInt(128) : 255));
+                graphics.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(120), 20 + random.nextInt(120));
+            }
+        } finally {
+            graphics.dispose();
+        }
+        if (!ImageIO.write(image, format, file)) {
+            throw new IOException("没有可用的编码器: " + format);
+        }
+    }
+}
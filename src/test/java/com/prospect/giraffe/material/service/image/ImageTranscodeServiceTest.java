@@ -0,0 +1,289 @@
+package com.prospect.giraffe.material.service.image;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import com.prospect.giraffe.material.service.MemoryBudget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ImageTranscodeService Test
+ *
+ * @author giraffe
+ */
+class ImageTranscodeServiceTest {
+
+    @TempDir
+    Path workDir;
+
+    private DownloadConfig config;
+
+    private ImageTranscodeService transcodeService;
+
+    private ImageBufferPool bufferPool;
+
+    private MemoryBudget memoryBudget;
+
+    @BeforeEach
+    void setUp() {
+        config = new DownloadConfig();
+        bufferPool = new ImageBufferPool();
+        ReflectionTestUtils.setField(bufferPool, "downloadConfig", config);
+        memoryBudget = new MemoryBudget();
+        ReflectionTestUtils.setField(memoryBudget, "downloadConfig", config);
+        memoryBudget.init();
+
+        transcodeService = new ImageTranscodeService();
+        ReflectionTestUtils.setField(transcodeService, "downloadConfig", config);
+        ReflectionTestUtils.setField(transcodeService, "memoryBudget", memoryBudget);
+        ReflectionTestUtils.setField(transcodeService, "imageBufferPool", bufferPool);
+        transcodeService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        transcodeService.destroy();
+    }
+
+    @Test
+    void oversizedJpegKeepsDimensionsWhenOptimizing() throws Exception {
+        // 30 MP，超过默认的 24 MP 解码上限；最高质量编码，存储优化一定能找到更小的结果
+        File staged = workDir.resolve("large.part").toFile();
+        writeJpeg(noise(6000, 5000, BufferedImage.TYPE_3BYTE_BGR), staged, 1.0f);
+        long originalSize = staged.length();
+        File target = workDir.resolve("large.jpg").toFile();
+
+        TranscodeResult result = transcodeService.submit(ImagePayload.ofFile(staged, "large.jpg"),
+                target, true, true, Collections.emptyList()).get();
+
+        ImageHeader header = header(target);
+        assertEquals(6000, header.getWidth());
+        assertEquals(5000, header.getHeight());
+        assertEquals(0L, result.getBytesSaved());
+        assertEquals(originalSize, target.length());
+    }
+
+    @Test
+    void conversionAboveDecodeLimitKeepsOriginalFormat() throws Exception {
+        config.setMaxDecodePixels(100000L);
+        File staged = workDir.resolve("wide.part").toFile();
+        assertTrue(ImageIO.write(noise(800, 600, BufferedImage.TYPE_INT_ARGB), "png", staged));
+        byte[] original = Files.readAllBytes(staged.toPath());
+        File target = workDir.resolve("wide.jpg").toFile();
+
+        TranscodeResult result = transcodeService.submit(ImagePayload.ofFile(staged, "wide.png"), target, true, true, null).get();
+
+        File saved = workDir.resolve("wide.png").toFile();
+        assertEquals(saved, result.getPayload().getFile());
+        assertFalse(target.exists());
+        assertArrayEquals(original, Files.readAllBytes(saved.toPath()));
+        ImageHeader header = header(saved);
+        assertEquals(800, header.getWidth());
+        assertEquals(600, header.getHeight());
+    }
+
+    @Test
+    void hugeConversionIsRefusedBeforeDecoding() throws Exception {
+        // 只有 12000x9000 的 PNG 头，像素数据无效：一旦尝试解码就会失败（全尺寸栅格约 430 MB）
+        byte[] bomb = pngHeaderOnly(12000, 9000);
+        File staged = workDir.resolve("bomb.part").toFile();
+        Files.write(staged.toPath(), bomb);
+        long available = memoryBudget.availableBytes();
+
+        TranscodeResult result = transcodeService.submit(ImagePayload.ofFile(staged, "bomb.png"),
+                workDir.resolve("bomb.jpg").toFile(), true, false, null).get();
+
+        assertEquals("bomb.png", result.getPayload().getFile().getName());
+        assertArrayEquals(bomb, Files.readAllBytes(result.getPayload().getFile().toPath()));
+        assertEquals(available, memoryBudget.availableBytes());
+    }
+
+    @Test
+    void hugeInMemoryConversionKeepsBuffer() throws Exception {
+        byte[] bomb = pngHeaderOnly(12000, 9000);
+        byte[] buffer = bufferPool.acquire(bomb.length);
+        System.arraycopy(bomb, 0, buffer, 0, bomb.length);
+
+        TranscodeResult result = transcodeService.submit(ImagePayload.ofBytes("bomb.png", buffer, bomb.length, bufferPool),
+                workDir.resolve("bomb.jpg").toFile(), true, false, null).get();
+
+        ImagePayload output = result.getPayload();
+        assertTrue(output.isInMemory());
+        assertEquals("bomb.png", output.getFileName());
+        output.release();
+        assertEquals(0L, bufferPool.getBorrowedBytes());
+    }
+
+    @Test
+    void decodeLimitFollowsMemoryBudget() throws Exception {
+        // 1 MB 预算按每像素 8 字节只够 13 万像素，800x600 的转换不再尝试全尺寸解码
+        config.setMemoryBudget(1024L * 1024L);
+        memoryBudget.init();
+        File staged = workDir.resolve("budget.part").toFile();
+        assertTrue(ImageIO.write(noise(800, 600, BufferedImage.TYPE_INT_RGB), "png", staged));
+
+        TranscodeResult result = transcodeService.submit(ImagePayload.ofFile(staged, "budget.png"),
+                workDir.resolve("budget.jpg").toFile(), true, false, null).get();
+
+        assertEquals("budget.png", result.getPayload().getFile().getName());
+        assertEquals(0L, memoryBudget.getRejectedCount());
+    }
+
+    @Test
+    void jpegWithinDecodeLimitIsOptimized() throws Exception {
+        File staged = workDir.resolve("small.part").toFile();
+        writeJpeg(noise(400, 300, BufferedImage.TYPE_3BYTE_BGR), staged, 1.0f);
+        config.setOptimizeMinSsim(0.5);
+        File target = workDir.resolve("small.jpg").toFile();
+
+        TranscodeResult result = transcodeService.submit(ImagePayload.ofFile(staged, "small.jpg"),
+                target, false, true, null).get();
+
+        assertTrue(result.getBytesSaved() > 0);
+        ImageHeader header = header(target);
+        assertEquals(400, header.getWidth());
+        assertEquals(300, header.getHeight());
+    }
+
+    @Test
+    void inMemorySourceIsSavedWhenTranscodeFails() throws Exception {
+        byte[] garbage = "not an image at all".getBytes("UTF-8");
+        byte[] buffer = bufferPool.acquire(garbage.length);
+        System.arraycopy(garbage, 0, buffer, 0, garbage.length);
+        ImagePayload source = ImagePayload.ofBytes("broken.png", buffer, garbage.length, bufferPool);
+
+        CompletableFuture<TranscodeResult> future = transcodeService.submit(source,
+                workDir.resolve("broken.jpg").toFile(), true, false, null);
+
+        assertThrows(ExecutionException.class, future::get);
+        File saved = workDir.resolve("broken.png").toFile();
+        assertTrue(saved.exists());
+        assertArrayEquals(garbage, Files.readAllBytes(saved.toPath()));
+        assertEquals(0L, bufferPool.getBorrowedBytes());
+    }
+
+    @Test
+    void stagedSourceIsKeptWhenTranscodeFails() throws Exception {
+        byte[] garbage = "not an image at all".getBytes("UTF-8");
+        File staged = workDir.resolve("broken.png.part").toFile();
+        Files.write(staged.toPath(), garbage);
+
+        CompletableFuture<TranscodeResult> future = transcodeService.submit(ImagePayload.ofFile(staged, "broken.png"),
+                workDir.resolve("broken.jpg").toFile(), true, false, null);
+
+        assertThrows(ExecutionException.class, future::get);
+        assertFalse(staged.exists());
+        File saved = workDir.resolve("broken.png").toFile();
+        assertTrue(saved.exists());
+        assertArrayEquals(garbage, Files.readAllBytes(saved.toPath()));
+    }
+
+    @Test
+    void inMemoryConversionIsChargedToTheBufferPool() throws Exception {
+        File png = workDir.resolve("in.png").toFile();
+        assertTrue(ImageIO.write(noise(64, 48, BufferedImage.TYPE_INT_RGB), "png", png));
+        byte[] bytes = Files.readAllBytes(png.toPath());
+        byte[] buffer = bufferPool.acquire(bytes.length);
+        System.arraycopy(bytes, 0, buffer, 0, bytes.length);
+
+        TranscodeResult result = transcodeService.submit(ImagePayload.ofBytes("in.png", buffer, bytes.length, bufferPool),
+                workDir.resolve("in.jpg").toFile(), true, false, null).get();
+
+        ImagePayload output = result.getPayload();
+        assertTrue(output.isInMemory());
+        assertTrue(bufferPool.getBorrowedBytes() > 0);
+        output.release();
+        assertEquals(0L, bufferPool.getBorrowedBytes());
+    }
+
+    /**
+     * 只有文件头（IHDR）和一段无效 IDAT 的 PNG
+     */
+    private static byte[] pngHeaderOnly(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        ByteBuffer ihdr = ByteBuffer.allocate(13).putInt(width).putInt(height)
+                .put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+        writeChunk(output, "IHDR", ihdr.array());
+        writeChunk(output, "IDAT", new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        writeChunk(output, "IEND", new byte[0]);
+        return output.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream output, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        output.write(ByteBuffer.allocate(4).putInt(data.length).array());
+        output.write(typeBytes);
+        output.write(data);
+        output.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+
+    private static BufferedImage noise(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y += 4) {
+            for (int x = 0; x < width; x += 4) {
+                int rgb = 0xFF000000 | random.nextInt(0x1000000);
+                for (int dy = 0; dy < 4 && y + dy < height; dy++) {
+                    for (int dx = 0; dx < 4 && x + dx < width; dx++) {
+                        image.setRGB(x + dx, y + dy, rgb);
+                    }
+                }
+            }
+        }
+        return image;
+    }
+
+    private static void writeJpeg(BufferedImage image, File file, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        try (FileImageOutputStream output = new FileImageOutputStream(file)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static ImageHeader header(File file) throws IOException {
+        byte[] data = new byte[65536];
+        int length;
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            length = Math.max(0, input.read(data));
+        }
+        return ImageHeaderSniffer.sniff(data, length);
+    }
+}
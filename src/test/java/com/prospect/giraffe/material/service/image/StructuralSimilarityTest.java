@@ -0,0 +1,80 @@
+package com.prospect.giraffe.material.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * StructuralSimilarity Test
+ *
+ * @author giraffe
+ */
+class StructuralSimilarityTest {
+
+    @Test
+    void lumaUsesRec601Weights() {
+        BufferedImage image = new BufferedImage(3, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xFF0000);
+        image.setRGB(1, 0, 0x00FF00);
+        image.setRGB(2, 0, 0xFFFFFF);
+
+        byte[] luma = StructuralSimilarity.luma(image);
+        assertEquals(76, luma[0] & 0xFF);
+        assertEquals(149, luma[1] & 0xFF);
+        assertEquals(255, luma[2] & 0xFF);
+    }
+
+    @Test
+    void identicalImagesScoreOne() {
+        byte[] luma = randomLuma(37, 29, 1);
+        assertEquals(1.0, StructuralSimilarity.ssim(luma, luma.clone(), 37, 29), 1e-9);
+    }
+
+    @Test
+    void scoreFallsWithDistortion() {
+        int width = 64;
+        int height = 64;
+        byte[] reference = randomLuma(width, height, 1);
+        byte[] slightlyNoisy = perturb(reference, 4, 2);
+        byte[] veryNoisy = perturb(reference, 60, 3);
+        byte[] unrelated = randomLuma(width, height, 4);
+
+        double slight = StructuralSimilarity.ssim(reference, slightlyNoisy, width, height);
+        double heavy = StructuralSimilarity.ssim(reference, veryNoisy, width, height);
+        double none = StructuralSimilarity.ssim(reference, unrelated, width, height);
+
+        assertTrue(slight < 1.0 && slight > 0.9, "slight=" + slight);
+        assertTrue(heavy < slight, "heavy=" + heavy);
+        assertTrue(none < heavy, "none=" + none);
+        assertTrue(Math.abs(none) < 0.2, "none=" + none);
+    }
+
+    @Test
+    void rejectsMismatchedSizes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> StructuralSimilarity.ssim(new byte[16], new byte[15], 4, 4));
+        assertThrows(IllegalArgumentException.class,
+                () -> StructuralSimilarity.ssim(new byte[16], new byte[16], 5, 4));
+    }
+
+    private static byte[] randomLuma(int width, int height, long seed) {
+        byte[] luma = new byte[width * height];
+        new Random(seed).nextBytes(luma);
+        return luma;
+    }
+
+    private static byte[] perturb(byte[] source, int amplitude, long seed) {
+        Random random = new Random(seed);
+        byte[] result = new byte[source.length];
+        for (int i = 0; i < source.length; i++) {
+            int value = (source[i] & 0xFF) + random.nextInt(2 * amplitude + 1) - amplitude;
+            result[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,91 @@
+package com.prospect.giraffe.material.service.watermark;
+
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ProviderRateLimiter Test
+ *
+ * @author giraffe
+ */
+class ProviderRateLimiterTest {
+
+    private final ProviderRateLimiter rateLimiter = new ProviderRateLimiter();
+
+    private static long millisToAcquire(ProviderRateLimiter rateLimiter, String provider,
+                                        WatermarkRemovalConfig.RateLimitConfig config) throws InterruptedException {
+        long start = System.nanoTime();
+        rateLimiter.acquire(provider, config).close();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    void unlimitedProviderDoesNotWait() throws InterruptedException {
+        WatermarkRemovalConfig.RateLimitConfig unlimited = new WatermarkRemovalConfig.RateLimitConfig(0, 0.0, 1);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(millisToAcquire(rateLimiter, "local", unlimited) < 50);
+        }
+    }
+
+    @Test
+    void throttlePausesUnlimitedProvider() throws InterruptedException {
+        WatermarkRemovalConfig.RateLimitConfig unlimited = new WatermarkRemovalConfig.RateLimitConfig(0, 0.0, 1);
+        rateLimiter.acquire("baidu", unlimited).close();
+
+        rateLimiter.onThrottled("baidu", 1500L);
+
+        long waited = millisToAcquire(rateLimiter, "baidu", unlimited);
+        assertTrue(waited >= 1400, "waited=" + waited);
+        // 暂停结束后恢复不限速
+        assertTrue(millisToAcquire(rateLimiter, "baidu", unlimited) < 50);
+    }
+
+    @Test
+    void throttlePausesRateLimitedProvider() throws InterruptedException {
+        WatermarkRemovalConfig.RateLimitConfig limited = new WatermarkRemovalConfig.RateLimitConfig(0, 50.0, 1);
+        rateLimiter.acquire("tencent", limited).close();
+
+        rateLimiter.onThrottled("tencent", 300L);
+
+        long waited = millisToAcquire(rateLimiter, "tencent", limited);
+        assertTrue(waited >= 250, "waited=" + waited);
+    }
+
+    @Test
+    void tokenBucketSpacesCallsAfterBurst() throws InterruptedException {
+        WatermarkRemovalConfig.RateLimitConfig limited = new WatermarkRemovalConfig.RateLimitConfig(0, 10.0, 2);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.acquire("aliyun", limited).close();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 前 2 次为突发，之后每 100ms 一个令牌
+        assertTrue(elapsed >= 250, "elapsed=" + elapsed);
+        assertTrue(elapsed < 1000, "elapsed=" + elapsed);
+    }
+
+    @Test
+    void concurrencyLimitBlocksUntilPermitClosed() throws Exception {
+        WatermarkRemovalConfig.RateLimitConfig single = new WatermarkRemovalConfig.RateLimitConfig(1, 0.0, 1);
+        ProviderRateLimiter.Permit first = rateLimiter.acquire("baidu", single);
+
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            try {
+                rateLimiter.acquire("baidu", single).close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertFalse(second.isDone());
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,150 @@
+package com.prospect.giraffe.material.service.watermark;
+
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * QuotaLedger Test
+ *
+ * @author giraffe
+ */
+class QuotaLedgerTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    @TempDir
+    Path tempDir;
+
+    private WatermarkRemovalConfig config;
+
+    private QuotaLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        config = new WatermarkRemovalConfig();
+        config.setQuotaLedgerFile(tempDir.resolve("quota.log").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ledger != null) {
+            ledger.destroy();
+        }
+    }
+
+    private QuotaLedger start(LocalDate today) {
+        if (ledger != null) {
+            ledger.destroy();
+        }
+        ledger = new QuotaLedger();
+        ReflectionTestUtils.setField(ledger, "config", config);
+        setToday(ledger, today);
+        ledger.init();
+        return ledger;
+    }
+
+    private static void setToday(QuotaLedger ledger, LocalDate today) {
+        ReflectionTestUtils.setField(ledger, "clock",
+                Clock.fixed(today.atStartOfDay(ZONE).plusHours(12).toInstant(), ZONE));
+    }
+
+    @Test
+    void countsDailyAndMonthlyUsage() {
+        QuotaLedger ledger = start(LocalDate.of(2026, 3, 30));
+        ledger.record("baidu");
+        ledger.record("baidu");
+        setToday(ledger, LocalDate.of(2026, 3, 31));
+        ledger.record("baidu");
+        ledger.record("aliyun");
+
+        assertEquals(1, ledger.usedToday("baidu"));
+        assertEquals(3, ledger.usedThisMonth("baidu"));
+        assertEquals(1, ledger.usedThisMonth("aliyun"));
+        assertEquals(0, ledger.usedThisMonth("tencent"));
+    }
+
+    @Test
+    void monthlyUsageResetsOnNewMonth() {
+        QuotaLedger ledger = start(LocalDate.of(2026, 1, 31));
+        ledger.record("baidu");
+        ledger.record("baidu");
+        assertEquals(2, ledger.usedThisMonth("baidu"));
+
+        setToday(ledger, LocalDate.of(2026, 2, 1));
+        assertEquals(LocalDate.of(2026, 2, 1), ledger.now().toLocalDate());
+        assertEquals(0, ledger.usedToday("baidu"));
+        assertEquals(0, ledger.usedThisMonth("baidu"));
+
+        ledger.record("baidu");
+        assertEquals(1, ledger.usedThisMonth("baidu"));
+    }
+
+    @Test
+    void usageSurvivesRestart() {
+        LocalDate today = LocalDate.of(2026, 5, 20);
+        QuotaLedger first = start(today.minusDays(1));
+        first.record("baidu");
+        setToday(first, today);
+        first.record("baidu");
+        first.record("baidu");
+
+        QuotaLedger restarted = start(today);
+        assertEquals(2, restarted.usedToday("baidu"));
+        assertEquals(3, restarted.usedThisMonth("baidu"));
+
+        restarted.record("baidu");
+        QuotaLedger again = start(today);
+        assertEquals(3, again.usedToday("baidu"));
+        assertEquals(4, again.usedThisMonth("baidu"));
+    }
+
+    @Test
+    void restartCompactsOldMonthsAndMergesDays() throws Exception {
+        Path file = tempDir.resolve("quota.log");
+        Files.write(file, Arrays.asList(
+                "2026-01-15,baidu,7",
+                "2026-03-02,baidu,1",
+                "2026-03-02,baidu,1",
+                "2026-04-10,baidu,1",
+                "broken line",
+                "2026-04-10,aliyun,x"), StandardCharsets.UTF_8);
+
+        QuotaLedger ledger = start(LocalDate.of(2026, 4, 10));
+
+        assertEquals(1, ledger.usedThisMonth("baidu"));
+        assertEquals(0, ledger.usedThisMonth("aliyun"));
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.contains("2026-03-02,baidu,2"));
+        assertTrue(lines.contains("2026-04-10,baidu,1"));
+        assertFalse(lines.contains("2026-01-15,baidu,7"));
+    }
+
+    @Test
+    void worksWithoutLedgerFile() {
+        config.setQuotaLedgerFile("");
+        QuotaLedger ledger = start(LocalDate.of(2026, 6, 1));
+        ledger.record("baidu");
+
+        assertEquals(1, ledger.usedToday("baidu"));
+        QuotaLedger restarted = start(LocalDate.of(2026, 6, 1));
+        assertEquals(0, restarted.usedToday("baidu"));
+    }
+}
@@ -0,0 +1,178 @@
+package com.prospect.giraffe.material.service.watermark.impl;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import com.prospect.giraffe.material.service.MemoryBudget;
+import com.prospect.giraffe.material.service.image.ImageBufferPool;
+import com.prospect.giraffe.material.service.image.ImagePayload;
+import com.prospect.giraffe.material.service.image.ImageTranscodeService;
+import com.prospect.giraffe.material.service.image.TranscodeResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LocalWatermarkAdapter Test
+ *
+ * @author giraffe
+ */
+class LocalWatermarkAdapterTest {
+
+    private static final long MB = 1024L * 1024L;
+
+    @TempDir
+    Path workDir;
+
+    private WatermarkRemovalConfig.TemplateConfig template;
+
+    private MemoryBudget memoryBudget;
+
+    private ImageTranscodeService transcodeService;
+
+    private LocalWatermarkAdapter adapter;
+
+    private BufferedImage watermark;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DownloadConfig downloadConfig = new DownloadConfig();
+        downloadConfig.setMemoryBudget(8 * MB);
+        downloadConfig.setTranscodeThreads(1);
+        memoryBudget = new MemoryBudget();
+        ReflectionTestUtils.setField(memoryBudget, "downloadConfig", downloadConfig);
+        memoryBudget.init();
+        ImageBufferPool bufferPool = new ImageBufferPool();
+        ReflectionTestUtils.setField(bufferPool, "downloadConfig", downloadConfig);
+        transcodeService = new ImageTranscodeService();
+        ReflectionTestUtils.setField(transcodeService, "downloadConfig", downloadConfig);
+        ReflectionTestUtils.setField(transcodeService, "memoryBudget", memoryBudget);
+        ReflectionTestUtils.setField(transcodeService, "imageBufferPool", bufferPool);
+        transcodeService.init();
+
+        watermark = new BufferedImage(60, 20, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = watermark.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(2, 2, 6, 16);
+            graphics.fillOval(14, 4, 12, 12);
+            graphics.fillRect(32, 8, 24, 4);
+        } finally {
+            graphics.dispose();
+        }
+        File templateFile = workDir.resolve("template.png").toFile();
+        ImageIO.write(watermark, "png", templateFile);
+
+        WatermarkRemovalConfig config = new WatermarkRemovalConfig();
+        template = new WatermarkRemovalConfig.TemplateConfig();
+        template.setName("test");
+        template.setSites(Collections.singletonList("example.com"));
+        template.setPath(templateFile.getPath());
+        config.getLocal().setEnabled(true);
+        config.getLocal().setTemplates(Collections.singletonList(template));
+        adapter = new LocalWatermarkAdapter();
+        ReflectionTestUtils.setField(adapter, "config", config);
+        ReflectionTestUtils.setField(adapter, "downloadConfig", downloadConfig);
+        adapter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        adapter.destroy();
+        transcodeService.destroy();
+    }
+
+    private File stampedImage(String name, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = 60 + x * 100 / width + random.nextInt(9) - 4;
+                image.setRGB(x, y, new Color(value, value, value).getRGB());
+            }
+        }
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.6f));
+            graphics.drawImage(watermark, width - watermark.getWidth() - 12, height - watermark.getHeight() - 12, null);
+        } finally {
+            graphics.dispose();
+        }
+        File file = workDir.resolve(name).toFile();
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    private static ImagePayload fromSite(File file, String site) {
+        return ImagePayload.ofFile(file).fromSource("https://img." + site + "/a.png", "https://www." + site + "/album");
+    }
+
+    @Test
+    void inpaintingDoesNotWaitForBlockedTranscodeThreads() throws Exception {
+        File input = stampedImage("photo.png", 400, 300);
+        ImagePayload payload = fromSite(input, "example.com");
+        // 与去水印服务一样，先按适配器的估算持有额度
+        MemoryBudget.Reservation removal = memoryBudget.reserve(adapter.memoryEstimate(payload));
+        MemoryBudget.Reservation other = memoryBudget.reserve(4 * MB);
+
+        // 唯一的转码线程等待内存额度（800x600 转换约需 3.7 MB，剩余额度不足）
+        File conversionSource = workDir.resolve("convert.part").toFile();
+        ImageIO.write(new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB), "png", conversionSource);
+        CompletableFuture<TranscodeResult> conversion = transcodeService.submit(
+                ImagePayload.ofFile(conversionSource, "convert.png"), workDir.resolve("convert.jpg").toFile(), true, false, null);
+
+        try {
+            File output = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return adapter.removeWatermark(payload, workDir.resolve("cleaned.png"));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }).get(30, TimeUnit.SECONDS);
+            assertTrue(output.exists());
+            assertFalse(conversion.isDone());
+        } finally {
+            removal.close();
+            other.close();
+        }
+        conversion.get(30, TimeUnit.SECONDS);
+        assertTrue(workDir.resolve("convert.jpg").toFile().exists());
+    }
+
+    @Test
+    void templatesOfOtherSitesAreNotTried() throws Exception {
+        File input = stampedImage("other.png", 400, 300);
+
+        Exception e = assertThrows(Exception.class,
+                () -> adapter.removeWatermark(fromSite(input, "another.org"), workDir.resolve("cleaned.png")));
+        assertTrue(e.getMessage().contains("没有适用于该站点的水印模板"));
+
+        template.setSites(Collections.emptyList());
+        assertTrue(adapter.removeWatermark(fromSite(input, "another.org"), workDir.resolve("cleaned.png")).exists());
+    }
+
+    @Test
+    void memoryEstimateFollowsPixelCount() throws Exception {
+        File input = stampedImage("estimate.png", 400, 300);
+
+        assertEquals(400L * 300L * 12L, adapter.memoryEstimate(ImagePayload.ofFile(input)));
+    }
+}
@@ -0,0 +1,275 @@
+package com.prospect.giraffe.material.service.watermark.impl;
+
+import com.prospect.giraffe.material.config.DownloadConfig;
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import com.prospect.giraffe.material.service.image.ImagePayload;
+import com.prospect.giraffe.material.service.watermark.IWatermarkRemovalAdapter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 去水印适配器吞吐量基准：本地模板修复与云端适配器（百度，指向本机桩服务）对比
+ * 桩服务立即返回原图，云端结果只包含客户端开销（Base64 编解码、请求构造、响应解析），真实服务商的处理时间另计；
+ * 可用 -Dbenchmark.latency 给桩服务加固定延迟模拟网络往返。
+ * 默认不执行，运行方式：mvn test -Dtest=WatermarkAdapterBenchmarkTest -Dbenchmark=true
+ * 可选参数：-Dbenchmark.images=20 -Dbenchmark.width=1280 -Dbenchmark.height=853 -Dbenchmark.latency=0
+ *
+ * @author giraffe
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class WatermarkAdapterBenchmarkTest {
+
+    private static final int MARGIN = 24;
+
+    @TempDir
+    Path workDir;
+
+    private HttpServer stubServer;
+
+    private ExecutorService stubExecutor;
+
+    private LocalWatermarkAdapter localAdapter;
+
+    private BaiduWatermarkAdapter baiduAdapter;
+
+    private BufferedImage watermark;
+
+    private byte[] stubResponseImage = new byte[0];
+
+    @BeforeEach
+    void setUp() throws Exception {
+        watermark = watermark();
+        Path templateFile = workDir.resolve("template.png");
+        ImageIO.write(watermark, "png", templateFile.toFile());
+
+        WatermarkRemovalConfig config = new WatermarkRemovalConfig();
+        WatermarkRemovalConfig.TemplateConfig template = new WatermarkRemovalConfig.TemplateConfig();
+        template.setName("bench");
+        template.setSites(Collections.singletonList("example.com"));
+        template.setPath(templateFile.toString());
+        config.getLocal().setEnabled(true);
+        config.getLocal().setTemplates(Collections.singletonList(template));
+        config.getBaidu().setEnabled(true);
+        config.getBaidu().setApiKey("bench");
+        config.getBaidu().setSecretKey("bench");
+
+        localAdapter = new LocalWatermarkAdapter();
+        ReflectionTestUtils.setField(localAdapter, "config", config);
+        ReflectionTestUtils.setField(localAdapter, "downloadConfig", new DownloadConfig());
+        localAdapter.init();
+
+        startStubServer(Long.getLong("benchmark.latency", 0L));
+        int port = stubServer.getAddress().getPort();
+        // 服务商地址写死为 https，请求在发出前改到本机桩服务
+        OkHttpClient stubClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    Request request = chain.request();
+                    HttpUrl url = request.url().newBuilder().scheme("http").host("127.0.0.1").port(port).build();
+                    return chain.proceed(request.newBuilder().url(url).build());
+                })
+                .build();
+        baiduAdapter = new BaiduWatermarkAdapter();
+        ReflectionTestUtils.setField(baiduAdapter, "config", config);
+        ReflectionTestUtils.setField(baiduAdapter, "sharedHttpClient", stubClient);
+        baiduAdapter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (stubServer != null) {
+            stubServer.stop(0);
+            stubExecutor.shutdownNow();
+        }
+        localAdapter.destroy();
+    }
+
+    @Test
+    void localVersusCloudThroughput() throws Exception {
+        int images = Integer.getInteger("benchmark.images", 20);
+        int width = Integer.getInteger("benchmark.width", 1280);
+        int height = Integer.getInteger("benchmark.height", 853);
+
+        BufferedImage clean = sample(width, height);
+        BufferedImage stamped = copy(clean);
+        int left = width - watermark.getWidth() - MARGIN;
+        int top = height - watermark.getHeight() - MARGIN;
+        Graphics2D graphics = stamped.createGraphics();
+        try {
+            graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.6f));
+            graphics.drawImage(watermark, left, top, null);
+        } finally {
+            graphics.dispose();
+        }
+        File sample = workDir.resolve("sample.png").toFile();
+        ImageIO.write(stamped, "png", sample);
+        stubResponseImage = Files.readAllBytes(sample.toPath());
+
+        System.out.printf("去水印基准: %d 张 %dx%d PNG, 文件 %d KB, 桩服务延迟 %d ms, CPU=%d%n", images, width, height,
+                sample.length() / 1024, Long.getLong("benchmark.latency", 0L), Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %10s %12s %12s%n", "服务商", "耗时(ms)", "ms/张", "图片/秒");
+        for (IWatermarkRemovalAdapter adapter : new IWatermarkRemovalAdapter[]{localAdapter, baiduAdapter}) {
+            String provider = adapter.getProviderName();
+            Path outputDir = Files.createDirectories(workDir.resolve("out-" + provider));
+            // 预热，使 JIT、连接与 Token 获取不计入结果
+            run(adapter, sample, outputDir, Math.max(2, images / 10));
+            long start = System.nanoTime();
+            File output = run(adapter, sample, outputDir, images);
+            long elapsedMillis = Math.max(1L, (System.nanoTime() - start) / 1_000_000L);
+            System.out.printf("%-8s %10d %12.1f %12.1f%n", provider, elapsedMillis,
+                    (double) elapsedMillis / images, images * 1000.0 / elapsedMillis);
+
+            if (adapter == localAdapter) {
+                BufferedImage cleaned = ImageIO.read(output);
+                int regionWidth = watermark.getWidth() + MARGIN;
+                int regionHeight = watermark.getHeight() + MARGIN;
+                double before = meanAbsError(clean, stamped, width - regionWidth, height - regionHeight, regionWidth, regionHeight);
+                double after = meanAbsError(clean, cleaned, width - regionWidth, height - regionHeight, regionWidth, regionHeight);
+                System.out.printf("local 水印角落平均误差: %.2f -> %.2f%n", before, after);
+                assertTrue(after < before);
+            }
+        }
+    }
+
+    private static File run(IWatermarkRemovalAdapter adapter, File sample, Path outputDir, int images) throws Exception {
+        File output = null;
+        for (int i = 0; i < images; i++) {
+            ImagePayload input = ImagePayload.ofFile(sample)
+                    .fromSource("https://img.example.com/photo/" + i + ".png", "https://www.example.com/album");
+            output = adapter.removeWatermark(input, outputDir.resolve(i + ".png"));
+        }
+        return output;
+    }
+
+    /**
+     * 模拟百度接口：Token 接口返回固定 Token，去水印接口读完请求体后返回预先编码好的图片
+     */
+    private void startStubServer(long latencyMillis) throws IOException {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.createContext("/oauth/2.0/token", exchange ->
+                respond(exchange, "{\"access_token\":\"bench\",\"expires_in\":2592000}"));
+        stubServer.createContext("/rest/2.0/image-process/v1/remove_watermark", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] chunk = new byte[8192];
+                while (body.read(chunk) != -1) {
+                    // 读完请求体
+                }
+            }
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange, "{\"log_id\":1,\"image\":\"" + Base64.getEncoder().encodeToString(stubResponseImage) + "\"}");
+        });
+        stubExecutor = Executors.newFixedThreadPool(4);
+        stubServer.setExecutor(stubExecutor);
+        stubServer.start();
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * 半透明文字状的水印：几个条块和圆点
+     */
+    private static BufferedImage watermark() {
+        BufferedImage image = new BufferedImage(120, 36, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            for (int x = 4; x < 112; x += 22) {
+                graphics.fillRect(x, 4, 5, 28);
+                graphics.fillRect(x, 4, 16, 5);
+                graphics.fillOval(x + 8, 16, 10, 10);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * 渐变背景加随机色块，接近照片的纹理
+     */
+    private static BufferedImage sample(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            Random random = new Random(42);
+            for (int y = 0; y < height; y += 4) {
+                graphics.setColor(new Color(40 + y * 120 / height, 90, 160 - y * 100 / height));
+                graphics.fillRect(0, y, width, 4);
+            }
+            for (int i = 0; i < 300; i++) {
+                graphics.setColor(new Color(random.nextInt(200), random.nextInt(200), random.nextInt(200)));
+                graphics.fillOval(random.nextInt(width), random.nextInt(height), 10 + random.nextInt(80), 10 + random.nextInt(80));
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static BufferedImage copy(BufferedImage source) {
+        BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = copy.createGraphics();
+        try {
+            graphics.drawImage(source, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return copy;
+    }
+
+    private static double meanAbsError(BufferedImage expected, BufferedImage actual, int x0, int y0, int width, int height) {
+        double sum = 0;
+        for (int y = y0; y < y0 + height; y++) {
+            for (int x = x0; x < x0 + width; x++) {
+                int a = expected.getRGB(x, y);
+                int b = actual.getRGB(x, y);
+                sum += Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF))
+                        + Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF))
+                        + Math.abs((a & 0xFF) - (b & 0xFF));
+            }
+        }
+        return sum / (3.0 * width * height);
+    }
+}
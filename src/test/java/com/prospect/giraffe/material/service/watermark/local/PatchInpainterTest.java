@@ -0,0 +1,124 @@
+package com.prospect.giraffe.material.service.watermark.local;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PatchInpainter Test
+ *
+ * @author giraffe
+ */
+class PatchInpainterTest {
+
+    private static final int WIDTH = 160;
+
+    private static final int HEIGHT = 120;
+
+    /**
+     * 竖条纹理加轻微噪声，修复时需要找到相位一致的图块
+     */
+    private static int[] texture(long seed) {
+        Random random = new Random(seed);
+        int[] argb = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int value = (int) Math.round(120 + 50 * Math.sin(x * Math.PI / 6)) + random.nextInt(7) - 3;
+                argb[y * WIDTH + x] = 0xFF000000 | value << 16 | value << 8 | value;
+            }
+        }
+        return argb;
+    }
+
+    /**
+     * 在矩形内打一个白色水印，返回对应的掩码
+     */
+    private static boolean[] stamp(int[] argb, Rectangle box) {
+        boolean[] hole = new boolean[argb.length];
+        for (int y = box.y; y < box.y + box.height; y++) {
+            for (int x = box.x; x < box.x + box.width; x++) {
+                hole[y * WIDTH + x] = true;
+                argb[y * WIDTH + x] = 0xFFFFFFFF;
+            }
+        }
+        return hole;
+    }
+
+    private static double meanAbsError(int[] expected, int[] actual, boolean[] hole) {
+        double sum = 0;
+        int count = 0;
+        for (int i = 0; i < hole.length; i++) {
+            if (hole[i]) {
+                sum += Math.abs((expected[i] & 0xFF) - (actual[i] & 0xFF));
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    private static void run(List<Callable<Void>> tasks) throws Exception {
+        for (Callable<Void> task : tasks) {
+            task.call();
+        }
+    }
+
+    @Test
+    void reconstructsTextureInsideHole() throws Exception {
+        int[] clean = texture(1L);
+        int[] argb = clean.clone();
+        Rectangle box = new Rectangle(60, 50, 40, 14);
+        boolean[] hole = stamp(argb, box);
+        double before = meanAbsError(clean, argb, hole);
+
+        run(PatchInpainter.tileTasks(argb, WIDTH, HEIGHT, hole.clone(), box, 3, 24, 16));
+
+        double after = meanAbsError(clean, argb, hole);
+        assertTrue(after < 12, "修复后平均误差: " + after);
+        assertTrue(after < before / 8, "修复前 " + before + ", 修复后 " + after);
+    }
+
+    @Test
+    void pixelsOutsideHoleAreUntouched() throws Exception {
+        int[] clean = texture(2L);
+        int[] argb = clean.clone();
+        Rectangle box = new Rectangle(20, 30, 24, 10);
+        boolean[] hole = stamp(argb, box);
+
+        run(PatchInpainter.tileTasks(argb, WIDTH, HEIGHT, hole.clone(), box, 3, 24, 8));
+
+        for (int i = 0; i < argb.length; i++) {
+            if (!hole[i]) {
+                assertEquals(clean[i], argb[i]);
+            }
+        }
+    }
+
+    @Test
+    void resultDoesNotDependOnTileOrder() throws Exception {
+        int[] clean = texture(3L);
+        Rectangle box = new Rectangle(50, 40, 48, 12);
+
+        int[] inOrder = clean.clone();
+        boolean[] hole = stamp(inOrder, box);
+        run(PatchInpainter.tileTasks(inOrder, WIDTH, HEIGHT, hole.clone(), box, 3, 24, 16));
+
+        int[] reversed = clean.clone();
+        stamp(reversed, box);
+        List<Callable<Void>> tasks = new ArrayList<>(
+                PatchInpainter.tileTasks(reversed, WIDTH, HEIGHT, hole.clone(), box, 3, 24, 16));
+        Collections.reverse(tasks);
+        run(tasks);
+
+        for (int i = 0; i < inOrder.length; i++) {
+            assertEquals(inOrder[i], reversed[i]);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.prospect.giraffe.material.service.watermark.local;
+
+import com.prospect.giraffe.material.config.WatermarkRemovalConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TemplateMatcher Test
+ *
+ * @author giraffe
+ */
+class TemplateMatcherTest {
+
+    private static final int WIDTH = 320;
+
+    private static final int HEIGHT = 240;
+
+    /**
+     * 默认匹配阈值
+     */
+    private static final double MIN_SCORE = new WatermarkRemovalConfig.TemplateConfig().getMinScore();
+
+    @TempDir
+    Path tempDir;
+
+    private WatermarkTemplate template;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        WatermarkRemovalConfig.TemplateConfig config = new WatermarkRemovalConfig.TemplateConfig();
+        config.setName("test");
+        config.setPath(writeTemplate(tempDir).toString());
+        template = WatermarkTemplate.load(config);
+    }
+
+    /**
+     * 48x16 的透明 PNG，不透明部分是几个条块和圆点
+     */
+    static Path writeTemplate(Path dir) throws Exception {
+        BufferedImage image = new BufferedImage(48, 16, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(2, 2, 4, 12);
+            graphics.fillRect(2, 2, 12, 3);
+            graphics.fillOval(18, 4, 9, 9);
+            graphics.fillRect(31, 6, 14, 3);
+            graphics.fillRect(36, 1, 3, 14);
+        } finally {
+            graphics.dispose();
+        }
+        Path path = dir.resolve("template.png");
+        ImageIO.write(image, "png", path.toFile());
+        return path;
+    }
+
+    /**
+     * 渐变背景加轻微噪声
+     */
+    static int[] background(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = Math.min(255, Math.max(0, 60 + x * 100 / width + y * 40 / height + random.nextInt(17) - 8));
+                argb[y * width + x] = 0xFF000000 | value << 16 | value << 8 | value;
+            }
+        }
+        return argb;
+    }
+
+    /**
+     * 按模板掩码把白色水印以给定不透明度叠加到图片上
+     */
+    static void stamp(int[] argb, int width, WatermarkTemplate.Scaled scaled, int left, int top, double opacity) {
+        boolean[] mask = scaled.getMask();
+        for (int y = 0; y < scaled.getHeight(); y++) {
+            for (int x = 0; x < scaled.getWidth(); x++) {
+                if (!mask[y * scaled.getWidth() + x]) {
+                    continue;
+                }
+                int index = (top + y) * width + left + x;
+                int value = (int) Math.round((argb[index] & 0xFF) * (1 - opacity) + 255 * opacity);
+                argb[index] = 0xFF000000 | value << 16 | value << 8 | value;
+            }
+        }
+    }
+
+    static float[] gray(int[] argb) {
+        float[] gray = new float[argb.length];
+        for (int i = 0; i < argb.length; i++) {
+            gray[i] = WatermarkTemplate.luma(argb[i]);
+        }
+        return gray;
+    }
+
+    @Test
+    void findsWatermarkInExpectedRegion() {
+        WatermarkTemplate.Scaled scaled = template.scaledFor(WIDTH);
+        int[] argb = background(WIDTH, HEIGHT, 1L);
+        stamp(argb, WIDTH, scaled, 261, 213, 0.6);
+
+        TemplateMatcher.Match match = TemplateMatcher.find(gray(argb), WIDTH, HEIGHT, scaled, "bottom-right", 0.3);
+
+        assertEquals(261, match.getX());
+        assertEquals(213, match.getY());
+        assertTrue(match.getScore() >= MIN_SCORE, "score=" + match.getScore());
+    }
+
+    @Test
+    void faintWatermarkStillMatches() {
+        WatermarkTemplate.Scaled scaled = template.scaledFor(WIDTH);
+        int[] argb = background(WIDTH, HEIGHT, 2L);
+        stamp(argb, WIDTH, scaled, 230, 190, 0.3);
+
+        TemplateMatcher.Match match = TemplateMatcher.find(gray(argb), WIDTH, HEIGHT, scaled, "bottom-right", 0.3);
+
+        assertEquals(230, match.getX());
+        assertEquals(190, match.getY());
+        assertTrue(match.getScore() >= MIN_SCORE, "score=" + match.getScore());
+    }
+
+    @Test
+    void imageWithoutWatermarkStaysBelowThreshold() {
+        WatermarkTemplate.Scaled scaled = template.scaledFor(WIDTH);
+        int[] argb = background(WIDTH, HEIGHT, 3L);
+
+        TemplateMatcher.Match match = TemplateMatcher.find(gray(argb), WIDTH, HEIGHT, scaled, "any", 0.3);
+
+        assertTrue(match.getScore() < MIN_SCORE, "score=" + match.getScore());
+    }
+
+    @Test
+    void watermarkOutsideRegionIsNotFound() {
+        WatermarkTemplate.Scaled scaled = template.scaledFor(WIDTH);
+        int[] argb = background(WIDTH, HEIGHT, 4L);
+        stamp(argb, WIDTH, scaled, 10, 10, 0.6);
+
+        TemplateMatcher.Match match = TemplateMatcher.find(gray(argb), WIDTH, HEIGHT, scaled, "bottom-right", 0.3);
+
+        assertTrue(match.getScore() < MIN_SCORE, "score=" + match.getScore());
+    }
+
+    @Test
+    void templateIsScaledWithReferenceWidth() throws Exception {
+        WatermarkRemovalConfig.TemplateConfig config = template.getConfig();
+        config.setReferenceWidth(WIDTH / 2);
+        WatermarkTemplate scaledTemplate = WatermarkTemplate.load(config);
+        WatermarkTemplate.Scaled scaled = scaledTemplate.scaledFor(WIDTH);
+        assertEquals(96, scaled.getWidth());
+        assertEquals(32, scaled.getHeight());
+
+        int[] argb = background(WIDTH, HEIGHT, 5L);
+        stamp(argb, WIDTH, scaled, 200, 180, 0.6);
+        TemplateMatcher.Match match = TemplateMatcher.find(gray(argb), WIDTH, HEIGHT, scaled, "bottom-right", 0.4);
+
+        assertEquals(200, match.getX());
+        assertEquals(180, match.getY());
+    }
+
+    @Test
+    void templateLargerThanImageHasNoMatch() {
+        WatermarkTemplate.Scaled scaled = template.scaledFor(WIDTH);
+        int[] argb = background(32, 8, 6L);
+
+        assertNull(TemplateMatcher.find(gray(argb), 32, 8, scaled, "any", 1.0));
+    }
+}